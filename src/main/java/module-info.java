@@ -1,17 +1,22 @@
 module uk.ac.soton.comp1206 {
     requires java.scripting;
+    requires java.net.http;
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.media;
     requires javafx.graphics;
     requires org.apache.logging.log4j;
-    //requires nv.websocket.client;
+    requires nv.websocket.client;
     opens uk.ac.soton.comp1206.ui to javafx.fxml;
     exports uk.ac.soton.comp1206;
     exports uk.ac.soton.comp1206.ui;
-//    exports uk.ac.soton.comp1206.network;
+    exports uk.ac.soton.comp1206.network;
     exports uk.ac.soton.comp1206.scene;
     exports uk.ac.soton.comp1206.event;
     exports uk.ac.soton.comp1206.component;
     exports uk.ac.soton.comp1206.game;
+    exports uk.ac.soton.comp1206.sim;
+    exports uk.ac.soton.comp1206.replay;
+    exports uk.ac.soton.comp1206.ai;
+    exports uk.ac.soton.comp1206.scores;
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package uk.ac.soton.comp1206;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import uk.ac.soton.comp1206.audio.Multimedia;
+import uk.ac.soton.comp1206.audio.SoundEffects;
+import uk.ac.soton.comp1206.scores.ScoreStore;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
+import java.time.Duration;
+import java.time.Instant;
+
 /**
  * JavaFX Application class
  */
@@ -27,6 +32,7 @@ public class App extends Application {
     private static App instance;
     private static final Logger logger = LogManager.getLogger(App.class);
     private Stage stage;
+    private GameWindow gameWindow;
 
     /**
      * Start the game
@@ -43,11 +49,32 @@ public class App extends Application {
      */
     @Override
     public void start(Stage stage) {
+        long started = System.nanoTime();
         instance = this;
         this.stage = stage;
 
         //Open game window
         openGame();
+        measureFirstFrame(started);
+    }
+
+    /**
+     * Log how long it took until the first frame was shown, from the start of the JavaFX application and from the
+     * start of the process
+     * @param started when the application started, in nanoseconds
+     */
+    private void measureFirstFrame(long started) {
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                long sinceStart = (System.nanoTime() - started) / 1_000_000;
+                long sinceLaunch = ProcessHandle.current().info().startInstant()
+                        .map((launched) -> Duration.between(launched, Instant.now()).toMillis())
+                        .orElse(-1L);
+                logger.info("First frame {}ms after start, {}ms after launch", sinceStart, sinceLaunch);
+            }
+        }.start();
     }
 
     /**
@@ -57,17 +84,25 @@ public class App extends Application {
         logger.info("Opening game window");
 
         //Change the width and height in this class to change the base rendering resolution for all game parts
-        var gameWindow = new GameWindow(stage,width,height);
+        gameWindow = new GameWindow(stage,width,height);
 
         //Display the GameWindow
         stage.show();
     }
 
     /**
-     * Shutdown the game
+     * Shutdown the game. Every way of quitting ends up here, so the last scores are always saved before exiting.
      */
     public void shutdown() {
         logger.info("Shutting down");
+        SoundEffects.getShared().dispose();
+        try {
+            ScoreStore.getShared().flush();
+        } catch (Exception e) {
+            logger.error("Could not save the last scores: " + e);
+        }
+        if (gameWindow != null)
+            gameWindow.closeNetwork();
         System.exit(0);
     }
 
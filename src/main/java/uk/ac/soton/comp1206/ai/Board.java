@@ -0,0 +1,188 @@
+package uk.ac.soton.comp1206.ai;
+
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.PlacementTable;
+
+/**
+ * A Board is a bare copy of the occupancy of a Grid, used to try out placements while searching for moves. It only
+ * knows which blocks are filled, not their colour, has no listeners and can be reused, so a search can try millions
+ * of placements without creating any objects.
+ */
+public class Board {
+
+    /**
+     * Number of columns
+     */
+    private final int cols;
+
+    /**
+     * Number of rows
+     */
+    private final int rows;
+
+    /**
+     * Mask of a full row
+     */
+    private final long full;
+
+    /**
+     * One bitmask per row, row y at index y + 1 with an empty row above and below, like inside the Grid
+     */
+    private final long[] occupancy;
+
+    /**
+     * The placement masks for boards of this size
+     */
+    private final PlacementTable placements;
+
+    /**
+     * Create a new, empty board
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    public Board(int cols, int rows) {
+        this.cols = cols;
+        this.rows = rows;
+        this.full = -1L >>> (Grid.MAX_SIZE - cols);
+        this.occupancy = new long[rows + 2];
+        this.placements = PlacementTable.forSize(cols, rows);
+    }
+
+    /**
+     * Take a copy of the occupancy of a grid
+     * @param grid the grid
+     * @return the board
+     */
+    public static Board of(Grid grid) {
+        var board = new Board(grid.getCols(), grid.getRows());
+        for (int y = 0; y < grid.getRows(); y++)
+            board.occupancy[y + 1] = grid.getRowMask(y);
+        return board;
+    }
+
+    /**
+     * Overwrite this board with another board of the same size
+     * @param other board to copy
+     */
+    public void copyFrom(Board other) {
+        System.arraycopy(other.occupancy, 0, occupancy, 0, occupancy.length);
+    }
+
+    /**
+     * Check whether this board still looks like the given grid
+     * @param grid the grid
+     * @return whether the same blocks are filled
+     */
+    public boolean matches(Grid grid) {
+        if (grid.getCols() != cols || grid.getRows() != rows)
+            return false;
+        for (int y = 0; y < rows; y++)
+            if (grid.getRowMask(y) != occupancy[y + 1])
+                return false;
+        return true;
+    }
+
+    /**
+     * Check whether a shape fits at the given position
+     * @param shape shape index, see PlacementTable
+     * @param x column
+     * @param y row
+     * @return whether the shape fits
+     */
+    public boolean fits(int shape, int x, int y) {
+        return placements.fits(occupancy, shape, x, y);
+    }
+
+    /**
+     * Place a shape, which has to fit, and clear every line/row it finishes
+     * @param shape shape index, see PlacementTable
+     * @param x column
+     * @param y row
+     * @return number of lines/rows cleared
+     */
+    public int place(int shape, int x, int y) {
+        long above = placements.getMask(shape, x, 0);
+        long centre = placements.getMask(shape, x, 1);
+        long below = placements.getMask(shape, x, 2);
+        occupancy[y] |= above;
+        occupancy[y + 1] |= centre;
+        occupancy[y + 2] |= below;
+
+        //Only the rows and columns the shape touched can have become full
+        long fullRows = 0;
+        for (int row = Math.max(y - 1, 0); row <= Math.min(y + 1, rows - 1); row++)
+            if (occupancy[row + 1] == full)
+                fullRows |= 1L << row;
+
+        long fullCols = above | centre | below;
+        for (int row = 1; row <= rows && fullCols != 0; row++)
+            fullCols &= occupancy[row];
+
+        long clearRows = fullRows;
+        while (clearRows != 0) {
+            occupancy[Long.numberOfTrailingZeros(clearRows) + 1] = 0;
+            clearRows &= clearRows - 1;
+        }
+        if (fullCols != 0)
+            for (int row = 1; row <= rows; row++)
+                occupancy[row] &= ~fullCols;
+
+        return Long.bitCount(fullRows) + Long.bitCount(fullCols);
+    }
+
+    /**
+     * Take back a placement which did not clear anything
+     * @param shape shape index, see PlacementTable
+     * @param x column
+     * @param y row
+     */
+    public void remove(int shape, int x, int y) {
+        occupancy[y] &= ~placements.getMask(shape, x, 0);
+        occupancy[y + 1] &= ~placements.getMask(shape, x, 1);
+        occupancy[y + 2] &= ~placements.getMask(shape, x, 2);
+    }
+
+    /**
+     * Get one of the three row masks of a shape centred in the given column
+     * @param shape shape index, see PlacementTable
+     * @param x column of the centre
+     * @param row 0 for the row above the centre, 1 for the centre row, 2 for the row below
+     * @return bitmask of the columns covered in that row
+     */
+    public long getMask(int shape, int x, int row) {
+        return placements.getMask(shape, x, row);
+    }
+
+    /**
+     * Get the occupancy of a row
+     * @param y row
+     * @return bitmask with bit x set when column x is filled
+     */
+    public long getRow(int y) {
+        return occupancy[y + 1];
+    }
+
+    /**
+     * Get the mask of a full row
+     * @return bitmask with a bit for every column
+     */
+    public long getFull() {
+        return full;
+    }
+
+    /**
+     * Get the number of columns
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,104 @@
+package uk.ac.soton.comp1206.ai;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Move;
+import uk.ac.soton.comp1206.game.PlacementTable;
+
+import java.util.Arrays;
+
+/**
+ * Lists the legal placements of a position for the searches. A placement is packed into an int as
+ * swap << 18 | shape << 12 | y << 6 | x, where swap is 1 when the following piece is placed instead of the current one.
+ */
+final class Candidates {
+
+    /**
+     * The distinct rotations of every piece, by shape index
+     */
+    private static final int[][] SHAPES = new int[PlacementTable.SHAPES][];
+
+    static {
+        for (int index = 0; index < PlacementTable.SHAPES; index++) {
+            GamePiece gamePiece = GamePiece.fromIndex(index);
+            int[] shapes = new int[4];
+            int count = 0;
+            rotations:
+            for (int rotations = 0; rotations < 4; rotations++) {
+                GamePiece rotated = gamePiece.rotate(rotations);
+                for (int i = 0; i < count; i++)
+                    if (GamePiece.fromIndex(shapes[i]).getShape() == rotated.getShape())
+                        continue rotations;
+                shapes[count++] = rotated.getIndex();
+            }
+            SHAPES[index] = Arrays.copyOf(shapes, count);
+        }
+    }
+
+    private Candidates() {
+    }
+
+    /**
+     * Find every legal placement of the current and following piece
+     * @param board the board
+     * @param currentPiece the current piece
+     * @param followingPiece the following piece
+     * @return the placements, packed
+     */
+    static int[] of(Board board, GamePiece currentPiece, GamePiece followingPiece) {
+        int[] candidates = new int[64];
+        int count = 0;
+        for (int swap = 0; swap < 2; swap++) {
+            //Swapping for the same piece changes nothing
+            if (swap == 1 && followingPiece.getPiece() == currentPiece.getPiece())
+                break;
+            for (int shape : shapes(swap == 0 ? currentPiece : followingPiece))
+                for (int y = 0; y < board.getRows(); y++)
+                    for (int x = 0; x < board.getCols(); x++) {
+                        if (!board.fits(shape, x, y))
+                            continue;
+                        if (count == candidates.length)
+                            candidates = Arrays.copyOf(candidates, count * 2);
+                        candidates[count++] = swap << 18 | shape << 12 | y << 6 | x;
+                    }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    /**
+     * Get the shapes of a piece in each of its rotations, leaving out rotations which look the same as an earlier one
+     * @param gamePiece the piece
+     * @return shape indexes, shared, do not modify
+     */
+    static int[] shapes(GamePiece gamePiece) {
+        return SHAPES[gamePiece.getIndex()];
+    }
+
+    /**
+     * Turn a placement into the move which plays it
+     * @param candidate the placement
+     * @param currentPiece the current piece
+     * @param followingPiece the following piece
+     * @return the move
+     */
+    static Move toMove(int candidate, GamePiece currentPiece, GamePiece followingPiece) {
+        GamePiece placed = swap(candidate) ? followingPiece : currentPiece;
+        int rotations = Math.floorMod(shape(candidate) - placed.getIndex(), 4);
+        return new Move(x(candidate), y(candidate), rotations, swap(candidate));
+    }
+
+    static boolean swap(int candidate) {
+        return (candidate >>> 18 & 1) != 0;
+    }
+
+    static int shape(int candidate) {
+        return candidate >>> 12 & 0x3F;
+    }
+
+    static int y(int candidate) {
+        return candidate >>> 6 & 0x3F;
+    }
+
+    static int x(int candidate) {
+        return candidate & 0x3F;
+    }
+}
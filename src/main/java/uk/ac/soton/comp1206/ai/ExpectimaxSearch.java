@@ -0,0 +1,302 @@
+package uk.ac.soton.comp1206.ai;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A deep lookahead search for automated play. It alternates between two kinds of position: at a choice the player
+ * places the current or the following piece, and at a chance step a new following piece is drawn, each of the
+ * GamePiece.PIECES pieces equally likely. A choice is worth its best move, a chance step the average over every piece
+ * that could be drawn, and the positions at the bottom of the search are rated with the Heuristic.
+ *
+ * Below the first level only the most promising moves of a choice, as rated by the Heuristic, are searched further.
+ * Values are cached in a TranspositionTable, since the same board is reached by placing the same pieces in a
+ * different order. The search deepens one piece at a time until it reaches the maximum depth or has rated more
+ * positions than its node budget allows, and then plays the move of the deepest search it finished.
+ *
+ * With a pool the search is fork/join parallel: choices fork a task per move searched and chance steps a task per piece
+ * drawn. Without one, everything runs on the calling thread.
+ */
+public class ExpectimaxSearch {
+
+    private static final Logger logger = LogManager.getLogger(ExpectimaxSearch.class);
+
+    /**
+     * Value of a choice where neither piece can be placed anywhere
+     */
+    private static final double STUCK = -1_000_000;
+
+    private final Heuristic heuristic;
+    private final int maxDepth;
+    private final int width;
+    private final long nodeBudget;
+    private final TranspositionTable table;
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new search
+     * @param heuristic the heuristic to rate positions with
+     * @param maxDepth the most pieces to look ahead
+     * @param width the number of moves of a choice searched further below the first level
+     * @param nodeBudget the number of positions to rate before settling for the last finished depth
+     * @param table the table to cache values in
+     * @param pool the pool to run on, or null to run on the calling thread
+     */
+    public ExpectimaxSearch(Heuristic heuristic, int maxDepth, int width, long nodeBudget, TranspositionTable table,
+                            ForkJoinPool pool) {
+        if (maxDepth < 1 || maxDepth > Byte.MAX_VALUE)
+            throw new IllegalArgumentException("Depth must be between 1 and " + Byte.MAX_VALUE + ": " + maxDepth);
+        this.heuristic = heuristic;
+        this.maxDepth = maxDepth;
+        this.width = width;
+        this.nodeBudget = nodeBudget;
+        this.table = table;
+        this.pool = pool;
+    }
+
+    /**
+     * Search for the best move from a position
+     * @param board the board
+     * @param currentPiece the current piece
+     * @param followingPiece the following piece
+     * @return the hint
+     */
+    public Hint search(Board board, GamePiece currentPiece, GamePiece followingPiece) {
+        long started = System.nanoTime();
+        table.newSearch();
+        long hash = Zobrist.hash(board);
+        var nodes = new LongAdder();
+
+        Hint hint = null;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            //The first level always finishes, so there is always a move
+            long budget = depth == 1 ? Long.MAX_VALUE : nodeBudget;
+            var root = new Choice(new Budget(nodes, budget), board, hash, currentPiece, followingPiece, depth, true);
+            double value = pool != null ? pool.invoke(root) : root.invoke();
+            if (nodes.sum() > budget)
+                break;
+
+            var move = root.best < 0 ? null : Candidates.toMove(root.best, currentPiece, followingPiece);
+            int evaluated = (int) Math.min(nodes.sum(), Integer.MAX_VALUE);
+            hint = new Hint(move, value, board, currentPiece, followingPiece, evaluated, depth == maxDepth);
+            logger.debug("Depth {}: {}", depth, hint);
+            if (move == null)
+                break;
+        }
+
+        logger.debug("Searched {} positions in {}ms, table hits {}, misses {}, evictions {}", nodes.sum(),
+                (System.nanoTime() - started) / 1_000_000, table.getHits(), table.getMisses(), table.getEvictions());
+        return hint;
+    }
+
+    /**
+     * Counts the positions rated by one depth of a search, shared between all its tasks. The count is a LongAdder, so
+     * tasks on different threads do not all write to the same counter, and whether the budget ran out is a flag which
+     * is only written once, so checking it costs a plain read.
+     */
+    private static class Budget {
+
+        private final LongAdder nodes;
+        private final long limit;
+        private volatile boolean exhausted;
+
+        private Budget(LongAdder nodes, long limit) {
+            this.nodes = nodes;
+            this.limit = limit;
+            this.exhausted = nodes.sum() > limit;
+        }
+
+        /**
+         * Count rated positions
+         * @param count number of positions
+         */
+        private void spend(int count) {
+            nodes.add(count);
+            if (!exhausted && nodes.sum() > limit)
+                exhausted = true;
+        }
+
+        /**
+         * Check whether the budget ran out. Values worked out after that are incomplete and must not be kept.
+         * @return whether the budget ran out
+         */
+        private boolean exhausted() {
+            return exhausted;
+        }
+    }
+
+    /**
+     * Fork all tasks and wait for them, or run them one after the other without a pool
+     * @param tasks the tasks
+     * @param depth the depth of the position the tasks belong to, positions close to the bottom are not worth forking
+     */
+    private void run(List<? extends ForkJoinTask<Double>> tasks, int depth) {
+        if (pool != null && depth >= 2)
+            ForkJoinTask.invokeAll(tasks);
+        else
+            for (var task : tasks)
+                task.invoke();
+    }
+
+    /**
+     * A position where the player chooses which piece to place and where
+     */
+    private class Choice extends RecursiveTask<Double> {
+
+        private final Budget budget;
+        private final Board board;
+        private final long hash;
+        private final GamePiece currentPiece;
+        private final GamePiece followingPiece;
+        private final int depth;
+
+        /**
+         * Whether this is the position searched from, which is always searched so the best move is known
+         */
+        private final boolean root;
+
+        /**
+         * The best move found, packed as by Candidates, or -1 if nothing fits
+         */
+        private int best = -1;
+
+        private Choice(Budget budget, Board board, long hash, GamePiece currentPiece, GamePiece followingPiece,
+                       int depth, boolean root) {
+            this.budget = budget;
+            this.board = board;
+            this.hash = hash;
+            this.currentPiece = currentPiece;
+            this.followingPiece = followingPiece;
+            this.depth = depth;
+            this.root = root;
+        }
+
+        @Override
+        protected Double compute() {
+            if (budget.exhausted())
+                return STUCK;
+
+            long key = Zobrist.choice(hash, currentPiece, followingPiece, depth);
+            double cached = table.get(key, depth);
+            if (!Double.isNaN(cached) && !root)
+                return cached;
+
+            int[] candidates = Candidates.of(board, currentPiece, followingPiece);
+            int count = candidates.length;
+            if (count == 0) {
+                table.put(key, depth, STUCK);
+                return STUCK;
+            }
+
+            var rating = new Rating(heuristic, board);
+            double[] ratings = new double[count];
+            for (int i = 0; i < count; i++)
+                ratings[i] = rating.rate(Candidates.shape(candidates[i]), Candidates.x(candidates[i]),
+                        Candidates.y(candidates[i]));
+            budget.spend(count);
+
+            double value;
+            if (depth == 1) {
+                //At the bottom only the best move counts
+                int chosen = 0;
+                for (int i = 1; i < count; i++)
+                    if (ratings[i] > ratings[chosen])
+                        chosen = i;
+                best = candidates[chosen];
+                value = ratings[chosen];
+            } else {
+                //Look further ahead on the most promising moves only
+                Integer[] order = new Integer[count];
+                for (int i = 0; i < count; i++)
+                    order[i] = i;
+                Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+
+                int searched = Math.min(width, count);
+                List<Chance> children = new ArrayList<>(searched);
+                int[] cleared = new int[searched];
+                for (int i = 0; i < searched; i++) {
+                    int candidate = candidates[order[i]];
+                    int shape = Candidates.shape(candidate);
+                    int x = Candidates.x(candidate);
+                    int y = Candidates.y(candidate);
+
+                    var after = new Board(board.getCols(), board.getRows());
+                    after.copyFrom(board);
+                    cleared[i] = after.place(shape, x, y);
+                    long afterHash = cleared[i] == 0 ? hash ^ Zobrist.placement(board, shape, x, y)
+                            : Zobrist.hash(after);
+
+                    //Whichever piece was not placed is the current piece next
+                    var nextPiece = Candidates.swap(candidate) ? currentPiece : followingPiece;
+                    children.add(new Chance(budget, after, afterHash, nextPiece, depth - 1));
+                }
+                run(children, depth);
+
+                value = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < searched; i++) {
+                    double childValue = heuristic.evaluateLines(cleared[i]) + children.get(i).join();
+                    if (childValue > value) {
+                        value = childValue;
+                        best = candidates[order[i]];
+                    }
+                }
+            }
+
+            if (!budget.exhausted())
+                table.put(key, depth, value);
+            return value;
+        }
+    }
+
+    /**
+     * A position where the following piece is still to be drawn
+     */
+    private class Chance extends RecursiveTask<Double> {
+
+        private final Budget budget;
+        private final Board board;
+        private final long hash;
+        private final GamePiece currentPiece;
+        private final int depth;
+
+        private Chance(Budget budget, Board board, long hash, GamePiece currentPiece, int depth) {
+            this.budget = budget;
+            this.board = board;
+            this.hash = hash;
+            this.currentPiece = currentPiece;
+            this.depth = depth;
+        }
+
+        @Override
+        protected Double compute() {
+            long key = Zobrist.chance(hash, currentPiece, depth);
+            double cached = table.get(key, depth);
+            if (!Double.isNaN(cached))
+                return cached;
+
+            List<Choice> children = new ArrayList<>(GamePiece.PIECES);
+            for (int piece = 0; piece < GamePiece.PIECES; piece++)
+                children.add(new Choice(budget, board, hash, currentPiece, GamePiece.createPiece(piece), depth,
+                        false));
+            run(children, depth);
+
+            double value = 0;
+            for (var child : children)
+                value += child.join();
+            value /= GamePiece.PIECES;
+
+            if (!budget.exhausted())
+                table.put(key, depth, value);
+            return value;
+        }
+    }
+}
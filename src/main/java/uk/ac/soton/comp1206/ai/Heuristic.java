@@ -0,0 +1,82 @@
+package uk.ac.soton.comp1206.ai;
+
+/**
+ * The Heuristic rates how good a board is after a placement. It rewards cleared lines/rows and punishes holes (empty
+ * blocks closed in on all four sides, which only a Dot can fill), fragmentation (the number of sides where an empty
+ * block meets a filled block or the edge) and filled blocks. Higher is better.
+ */
+public class Heuristic {
+
+    /**
+     * The weights the hint engine uses unless told otherwise
+     */
+    public static final Heuristic DEFAULT = new Heuristic(20, 6, 0.6, 0.5);
+
+    private final double lines;
+    private final double holes;
+    private final double fragmentation;
+    private final double filled;
+
+    /**
+     * Create a new heuristic with the given weights
+     * @param lines reward per line/row cleared
+     * @param holes penalty per hole
+     * @param fragmentation penalty per side of an empty block which is closed off
+     * @param filled penalty per filled block
+     */
+    public Heuristic(double lines, double holes, double fragmentation, double filled) {
+        this.lines = lines;
+        this.holes = holes;
+        this.fragmentation = fragmentation;
+        this.filled = filled;
+    }
+
+    /**
+     * Rate a board
+     * @param board the board after placing and clearing
+     * @param cleared number of lines/rows the placement cleared
+     * @return the rating, higher is better
+     */
+    public double evaluate(Board board, int cleared) {
+        double rating = evaluateLines(cleared);
+        for (int y = 0; y < board.getRows(); y++)
+            rating += evaluateRow(board, y);
+        return rating;
+    }
+
+    /**
+     * Rate the lines/rows cleared by a placement
+     * @param cleared number of lines/rows cleared
+     * @return the part of the rating for clearing them
+     */
+    public double evaluateLines(int cleared) {
+        return cleared * lines;
+    }
+
+    /**
+     * Rate a single row of a board. The rating of a row only depends on the row itself and the rows directly above and
+     * below it, so after a placement which clears nothing only the rows around it have to be rated again.
+     * @param board the board
+     * @param y the row
+     * @return the part of the rating for this row
+     */
+    public double evaluateRow(Board board, int y) {
+        int rows = board.getRows();
+        long full = board.getFull();
+        long row = board.getRow(y);
+        long empty = ~row & full;
+        if (empty == 0)
+            return -board.getCols() * filled;
+
+        //Bit x is set when the neighbour of x on that side is filled or the edge of the board
+        long left = (row << 1 | 1) & full;
+        long right = row >>> 1 | 1L << (board.getCols() - 1);
+        long up = y == 0 ? full : board.getRow(y - 1);
+        long down = y == rows - 1 ? full : board.getRow(y + 1);
+
+        int holeCount = Long.bitCount(empty & left & right & up & down);
+        int closedSides = Long.bitCount(empty & left) + Long.bitCount(empty & right)
+                + Long.bitCount(empty & up) + Long.bitCount(empty & down);
+        return -holeCount * holes - closedSides * fragmentation - Long.bitCount(row) * filled;
+    }
+}
@@ -0,0 +1,95 @@
+package uk.ac.soton.comp1206.ai;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Move;
+
+/**
+ * A Hint is the move the HintEngine suggests, together with the position it was worked out for. Searches run in the
+ * background, so by the time a hint arrives the player may already have moved on; isFor() tells whether it still
+ * applies.
+ */
+public class Hint {
+
+    private final Move move;
+    private final double score;
+    private final Board board;
+    private final GamePiece currentPiece;
+    private final GamePiece followingPiece;
+    private final int evaluated;
+    private final boolean complete;
+
+    /**
+     * Create a new Hint
+     * @param move the suggested move
+     * @param score the rating of the move
+     * @param board the board the search started from
+     * @param currentPiece the current piece the search started from
+     * @param followingPiece the following piece the search started from
+     * @param evaluated number of positions rated
+     * @param complete whether the search looked at everything before running out of time
+     */
+    public Hint(Move move, double score, Board board, GamePiece currentPiece, GamePiece followingPiece, int evaluated,
+                boolean complete) {
+        this.move = move;
+        this.score = score;
+        this.board = board;
+        this.currentPiece = currentPiece;
+        this.followingPiece = followingPiece;
+        this.evaluated = evaluated;
+        this.complete = complete;
+    }
+
+    /**
+     * Check whether this hint still applies to a game, i.e. the board and pieces have not changed since it was
+     * asked for
+     * @param game the game
+     * @return whether the hint applies
+     */
+    public boolean isFor(Game game) {
+        return game.getCurrentPiece() == currentPiece && game.getFollowingPiece() == followingPiece
+                && board.matches(game.getGrid());
+    }
+
+    /**
+     * Get the suggested move
+     * @return the move, or null if no piece fits anywhere
+     */
+    public Move getMove() {
+        return move;
+    }
+
+    /**
+     * Get the rating of the suggested move
+     * @return rating, higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Get the number of positions rated
+     * @return number of positions
+     */
+    public int getEvaluated() {
+        return evaluated;
+    }
+
+    /**
+     * Check whether the search finished before running out of time
+     * @return whether every candidate was looked at in full
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Return a string representation of this hint
+     * @return string representation
+     */
+    @Override
+    public String toString() {
+        return "Hint [move = " + move + ", score = " + score + ", evaluated = " + evaluated + ", complete = " + complete
+                + "]";
+    }
+}
@@ -0,0 +1,211 @@
+package uk.ac.soton.comp1206.ai;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Move;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The HintEngine works out the best move for a position: where to place the current piece, in which rotation, and
+ * whether to swap it for the following piece first.
+ *
+ * The search happens in two passes. The first pass rates every legal placement of both pieces in every distinct
+ * rotation with the Heuristic. The second pass goes through those placements from best to worst and looks one piece
+ * further ahead: a placement is worth as much as the best placement of the piece that comes after it. The first pass
+ * always finishes; the second stops when the time budget runs out, and the best of the placements it got through wins.
+ * Both passes are shared between worker threads, each pulling candidates off a common counter and working on its own
+ * copy of the board.
+ *
+ * The game is only touched to take a snapshot, which is done on the calling thread, so suggest() can be called from the
+ * JavaFX thread and the search runs in the background.
+ */
+public class HintEngine {
+
+    private static final Logger logger = LogManager.getLogger(HintEngine.class);
+
+    /**
+     * Rating of a placement after which the next piece cannot be placed anywhere
+     */
+    private static final double STUCK = -1_000_000;
+
+    /**
+     * Number of candidates a worker takes at a time in the first pass
+     */
+    private static final int CHUNK = 64;
+
+    /**
+     * Runs searches, one at a time, so the workers are not starved by the searches waiting for them
+     */
+    private static final ExecutorService searches = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "Hint Engine");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The heuristic to rate boards with
+     */
+    private final Heuristic heuristic;
+
+    /**
+     * Time allowed per search, in nanoseconds
+     */
+    private final long budget;
+
+    /**
+     * The pool the workers run on
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Create a new HintEngine using the common pool
+     * @param heuristic the heuristic to rate boards with
+     * @param budgetMillis time allowed per search in milliseconds, Long.MAX_VALUE for no limit
+     */
+    public HintEngine(Heuristic heuristic, long budgetMillis) {
+        this(heuristic, budgetMillis, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new HintEngine
+     * @param heuristic the heuristic to rate boards with
+     * @param budgetMillis time allowed per search in milliseconds
+     * @param pool the pool to run the workers on
+     */
+    public HintEngine(Heuristic heuristic, long budgetMillis, ForkJoinPool pool) {
+        this.heuristic = heuristic;
+        this.budget = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.pool = pool;
+    }
+
+    /**
+     * Work out a hint for a game in the background. Must be called on the thread the game runs on.
+     * @param game the game
+     * @return the hint, completed on a background thread
+     */
+    public CompletableFuture<Hint> suggest(Game game) {
+        Board board = Board.of(game.getGrid());
+        GamePiece currentPiece = game.getCurrentPiece();
+        GamePiece followingPiece = game.getFollowingPiece();
+        return CompletableFuture.supplyAsync(() -> {
+            long deadline = budget == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + budget;
+            return search(board, currentPiece, followingPiece, true, deadline);
+        }, searches);
+    }
+
+    /**
+     * Search for the best move from a position
+     * @param board the board
+     * @param currentPiece the current piece
+     * @param followingPiece the following piece
+     * @param parallel whether to share the search between the workers, or run it all on the calling thread
+     * @param deadline System.nanoTime() at which to stop looking further ahead
+     * @return the hint
+     */
+    public Hint search(Board board, GamePiece currentPiece, GamePiece followingPiece, boolean parallel, long deadline) {
+        long started = System.nanoTime();
+
+        int[] candidates = Candidates.of(board, currentPiece, followingPiece);
+        int count = candidates.length;
+        if (count == 0)
+            return new Hint(null, STUCK, board, currentPiece, followingPiece, 0, true);
+
+        //First pass: rate every placement on its own
+        double[] ratings = new double[count];
+        AtomicInteger next = new AtomicInteger();
+        run(parallel, () -> {
+            Rating rating = new Rating(heuristic, board);
+            int from;
+            while ((from = next.getAndAdd(CHUNK)) < count) {
+                for (int i = from; i < Math.min(from + CHUNK, count); i++) {
+                    int candidate = candidates[i];
+                    ratings[i] = rating.rate(Candidates.shape(candidate), Candidates.x(candidate),
+                            Candidates.y(candidate));
+                }
+            }
+        });
+
+        //Second pass: from best to worst, add the best placement of the piece that comes next
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(ratings[b], ratings[a]));
+
+        double[] lookahead = new double[count];
+        boolean[] done = new boolean[count];
+        AtomicInteger position = new AtomicInteger();
+        AtomicInteger evaluated = new AtomicInteger(count);
+        run(parallel, () -> {
+            Board after = new Board(board.getCols(), board.getRows());
+            int p;
+            while (System.nanoTime() < deadline && (p = position.getAndIncrement()) < count) {
+                int i = order[p];
+                int candidate = candidates[i];
+                after.copyFrom(board);
+                int cleared = after.place(Candidates.shape(candidate), Candidates.x(candidate),
+                        Candidates.y(candidate));
+                Rating rating = new Rating(heuristic, after);
+
+                //Whichever piece was not placed is the current piece next
+                GamePiece nextPiece = Candidates.swap(candidate) ? currentPiece : followingPiece;
+                double best = STUCK;
+                int tried = 0;
+                for (int shape : Candidates.shapes(nextPiece)) {
+                    for (int y = 0; y < board.getRows(); y++)
+                        for (int x = 0; x < board.getCols(); x++) {
+                            if (!after.fits(shape, x, y))
+                                continue;
+                            best = Math.max(best, rating.rate(shape, x, y));
+                            tried++;
+                        }
+                }
+                lookahead[i] = heuristic.evaluateLines(cleared) + best;
+                evaluated.addAndGet(tried);
+                done[i] = true;
+            }
+        });
+
+        //Only compare placements the second pass got to, which are always the best of the first pass
+        int chosen = order[0];
+        int refined = 0;
+        for (int i = 0; i < count; i++) {
+            if (!done[i])
+                continue;
+            refined++;
+            if (!done[chosen] || lookahead[i] > lookahead[chosen])
+                chosen = i;
+        }
+
+        Move move = Candidates.toMove(candidates[chosen], currentPiece, followingPiece);
+        double score = done[chosen] ? lookahead[chosen] : ratings[chosen];
+
+        logger.debug("Searched {} candidates, {} looked ahead, {} positions in {}ms", count, refined, evaluated.get(),
+                (System.nanoTime() - started) / 1_000_000);
+        return new Hint(move, score, board, currentPiece, followingPiece, evaluated.get(), refined == count);
+    }
+
+    /**
+     * Run a worker on every thread of the pool and wait for all of them, or just once on this thread
+     * @param parallel whether to use the pool
+     * @param worker the worker
+     */
+    private void run(boolean parallel, Runnable worker) {
+        if (!parallel) {
+            worker.run();
+            return;
+        }
+        CompletableFuture<?>[] workers = new CompletableFuture<?>[pool.getParallelism()];
+        for (int i = 0; i < workers.length; i++)
+            workers[i] = CompletableFuture.runAsync(worker, pool);
+        CompletableFuture.allOf(workers).join();
+    }
+}
@@ -0,0 +1,58 @@
+package uk.ac.soton.comp1206.ai;
+
+/**
+ * Rates placements on a board, one after the other. Keeps the rating of every row of the board, so a placement which
+ * clears nothing only needs the rows around it rated again, and is taken back afterwards instead of copying the whole
+ * board for every placement. Not thread safe, every thread needs its own.
+ */
+class Rating {
+
+    private final Heuristic heuristic;
+    private final Board board;
+    private final Board scratch;
+    private final double[] rows;
+    private final double total;
+
+    /**
+     * Rate placements on a board. The board must not change while this is in use.
+     * @param heuristic the heuristic to rate with
+     * @param board the board
+     */
+    Rating(Heuristic heuristic, Board board) {
+        this.heuristic = heuristic;
+        this.board = board;
+        this.scratch = new Board(board.getCols(), board.getRows());
+        scratch.copyFrom(board);
+        this.rows = new double[board.getRows()];
+        double total = 0;
+        for (int y = 0; y < rows.length; y++) {
+            rows[y] = heuristic.evaluateRow(board, y);
+            total += rows[y];
+        }
+        this.total = total;
+    }
+
+    /**
+     * Rate a placement, which has to fit
+     * @param shape shape index
+     * @param x column
+     * @param y row
+     * @return the rating of the board after placing and clearing
+     */
+    double rate(int shape, int x, int y) {
+        int cleared = scratch.place(shape, x, y);
+        if (cleared > 0) {
+            //Clearing can change any row, so rate the whole board and copy it back
+            double rating = heuristic.evaluate(scratch, cleared);
+            scratch.copyFrom(board);
+            return rating;
+        }
+
+        //The placement changed rows y - 1 to y + 1, which changes the rating of y - 2 to y + 2
+        double rating = total;
+        for (int row = Math.max(y - 2, 0); row <= Math.min(y + 2, rows.length - 1); row++)
+            rating += heuristic.evaluateRow(scratch, row) - rows[row];
+        scratch.remove(shape, x, y);
+        return rating;
+    }
+}
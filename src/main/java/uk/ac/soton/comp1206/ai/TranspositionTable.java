@@ -0,0 +1,157 @@
+package uk.ac.soton.comp1206.ai;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size cache of the values of search positions, keyed by Zobrist hash, which is shared by all threads of a
+ * search without locking.
+ *
+ * The table never grows: it holds a power of two number of entries of 16 bytes each, in buckets of two. The first entry
+ * of a bucket keeps whichever position was searched deepest, unless it was stored by an earlier search; the second
+ * entry always takes the newest position. An entry stores its key XORed with its data, so an entry which one thread
+ * read while another was writing it simply does not match, instead of handing out the wrong value.
+ */
+public class TranspositionTable {
+
+    /**
+     * Entry keys, XORed with their data
+     */
+    private final long[] keys;
+
+    /**
+     * Entry data: the value as a float in the low 32 bits, then 8 bits of depth and 8 bits of generation
+     */
+    private final long[] data;
+
+    /**
+     * Mask turning a hash into a bucket
+     */
+    private final int buckets;
+
+    /**
+     * Generation of the current search, entries from older searches are replaced first
+     */
+    private volatile int generation = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a new table
+     * @param maxBytes most memory the table may use, rounded down to a power of two number of entries
+     */
+    public TranspositionTable(long maxBytes) {
+        int entries = Integer.highestOneBit((int) Math.min(Math.max(maxBytes / 16, 2), 1 << 30));
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.buckets = entries / 2 - 1;
+    }
+
+    /**
+     * Start a new search. Entries from earlier searches stay usable, but are replaced first.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * Look up the value of a position
+     * @param key the key of the position
+     * @param depth the depth the position is searched to, entries searched less deep are ignored
+     * @return the value, or NaN if the table does not know it
+     */
+    public double get(long key, int depth) {
+        int slot = bucket(key);
+        for (int i = slot; i < slot + 2; i++) {
+            long entry = data[i];
+            if ((keys[i] ^ entry) == key && depth(entry) >= depth) {
+                hits.increment();
+                return Float.intBitsToFloat((int) entry);
+            }
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * Store the value of a position
+     * @param key the key of the position
+     * @param depth the depth the position was searched to
+     * @param value the value
+     */
+    public void put(long key, int depth, double value) {
+        int generation = this.generation;
+        long entry = Integer.toUnsignedLong(Float.floatToIntBits((float) value)) | (long) depth << 32
+                | (long) generation << 40;
+
+        int slot = bucket(key);
+        long deepest = data[slot];
+        boolean same = (keys[slot] ^ deepest) == key;
+        if (!same && depth(deepest) > depth && generation(deepest) == generation) {
+            //Keep the deep entry, the newest entry goes second
+            slot++;
+            long old = data[slot];
+            if (old != 0 && (keys[slot] ^ old) != key)
+                evictions.increment();
+        } else if (!same && deepest != 0) {
+            evictions.increment();
+        }
+        data[slot] = entry;
+        keys[slot] = key ^ entry;
+    }
+
+    /**
+     * Forget everything
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * Get the number of entries this table can hold
+     * @return number of entries
+     */
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    /**
+     * Get the number of lookups that found a value
+     * @return number of hits
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that did not find a value
+     * @return number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of entries replaced by a different position
+     * @return number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private int bucket(long key) {
+        //The low bits of the key pick the bucket
+        return ((int) key & buckets) * 2;
+    }
+
+    private static int depth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    private static int generation(long entry) {
+        return (int) (entry >>> 40) & 0xFF;
+    }
+}
@@ -0,0 +1,102 @@
+package uk.ac.soton.comp1206.ai;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist hashing of search positions. Every block, every piece in the current and in the following slot, every search
+ * depth and the chance step have a fixed random key, and a position hashes to the XOR of the keys of everything in it.
+ * Placing a piece which clears nothing only XORs in the keys of the blocks it covers, so hashes are updated as the
+ * search goes instead of being worked out from the whole board.
+ */
+public final class Zobrist {
+
+    private static final long[] BLOCKS = new long[Grid.MAX_SIZE * Grid.MAX_SIZE];
+    private static final long[] CURRENT = new long[GamePiece.PIECES];
+    private static final long[] FOLLOWING = new long[GamePiece.PIECES];
+    private static final long[] DEPTHS = new long[Byte.MAX_VALUE + 1];
+    private static final long CHANCE;
+
+    static {
+        //Fixed seed, so hashes are the same on every run
+        var random = new SplittableRandom(0x7E7EC5L);
+        for (int i = 0; i < BLOCKS.length; i++)
+            BLOCKS[i] = random.nextLong();
+        for (int i = 0; i < GamePiece.PIECES; i++) {
+            CURRENT[i] = random.nextLong();
+            FOLLOWING[i] = random.nextLong();
+        }
+        for (int i = 0; i < DEPTHS.length; i++)
+            DEPTHS[i] = random.nextLong();
+        CHANCE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Hash the blocks of a board
+     * @param board the board
+     * @return the hash
+     */
+    public static long hash(Board board) {
+        long hash = 0;
+        for (int y = 0; y < board.getRows(); y++)
+            hash ^= row(y, board.getRow(y));
+        return hash;
+    }
+
+    /**
+     * Hash some blocks of a row
+     * @param y the row
+     * @param mask bitmask of the blocks
+     * @return the hash
+     */
+    public static long row(int y, long mask) {
+        long hash = 0;
+        while (mask != 0) {
+            hash ^= BLOCKS[y * Grid.MAX_SIZE + Long.numberOfTrailingZeros(mask)];
+            mask &= mask - 1;
+        }
+        return hash;
+    }
+
+    /**
+     * Hash the blocks a placement covers. XOR this into the hash of a board to get the hash after a placement which
+     * cleared nothing.
+     * @param board the board
+     * @param shape shape index
+     * @param x column
+     * @param y row
+     * @return the hash
+     */
+    public static long placement(Board board, int shape, int x, int y) {
+        return row(y - 1, board.getMask(shape, x, 0)) ^ row(y, board.getMask(shape, x, 1))
+                ^ row(y + 1, board.getMask(shape, x, 2));
+    }
+
+    /**
+     * Get the key of a position where the player chooses a move
+     * @param board hash of the board
+     * @param currentPiece the current piece
+     * @param followingPiece the following piece
+     * @param depth number of pieces still to place
+     * @return the key
+     */
+    public static long choice(long board, GamePiece currentPiece, GamePiece followingPiece, int depth) {
+        return board ^ CURRENT[currentPiece.getPiece()] ^ FOLLOWING[followingPiece.getPiece()] ^ DEPTHS[depth];
+    }
+
+    /**
+     * Get the key of a position where the next piece is still to be drawn
+     * @param board hash of the board
+     * @param currentPiece the piece which will be current
+     * @param depth number of pieces still to place
+     * @return the key
+     */
+    public static long chance(long board, GamePiece currentPiece, int depth) {
+        return board ^ CURRENT[currentPiece.getPiece()] ^ DEPTHS[depth] ^ CHANCE;
+    }
+}
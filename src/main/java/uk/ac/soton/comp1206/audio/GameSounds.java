@@ -0,0 +1,48 @@
+package uk.ac.soton.comp1206.audio;
+
+import uk.ac.soton.comp1206.event.GameListener;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.LineClear;
+
+/**
+ * Plays the sound effects of a game. Attach it to a Game to hear what is happening, leave it off to run the game
+ * silently.
+ */
+public class GameSounds implements GameListener {
+
+    @Override
+    public void piecePlaced(GamePiece gamePiece, int x, int y) {
+        Multimedia.playAudio("place.wav");
+    }
+
+    @Override
+    public void placementFailed(GamePiece gamePiece, int x, int y) {
+        Multimedia.playAudio("fail.wav");
+    }
+
+    @Override
+    public void pieceRotated(GamePiece gamePiece, int rotations) {
+        Multimedia.playAudio("rotate.wav");
+    }
+
+    @Override
+    public void piecesSwapped() {
+        Multimedia.playAudio("rotate.wav");
+    }
+
+    @Override
+    public void linesCleared(LineClear lineClear) {
+        Multimedia.playAudio("explode.wav");
+        Multimedia.playAudio("clear.wav");
+    }
+
+    @Override
+    public void levelChanged(int level) {
+        Multimedia.playAudio("level.wav");
+    }
+
+    @Override
+    public void lifeLost(int lives) {
+        Multimedia.playAudio("lifelose.wav");
+    }
+}
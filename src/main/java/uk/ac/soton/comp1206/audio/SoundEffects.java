@@ -0,0 +1,309 @@
+package uk.ac.soton.comp1206.audio;
+
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ui.AssetManager;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SoundEffects plays short sound effects from a pool of players which are loaded once and played again and again,
+ * instead of loading a new Media and MediaPlayer for every effect.
+ *
+ * Every effect gets at most maxVoices players, so the same effect can overlap itself a few times. When all of them are
+ * busy, the one which started the longest time ago is cut off and started again. No player is ever thrown away while
+ * the pool is in use, so the native memory the pool holds is bounded by the number of effects times maxVoices, and it
+ * is all released by dispose().
+ *
+ * The time from asking for an effect until its player reports that it is playing is measured for every effect played.
+ */
+public class SoundEffects {
+
+    private static final Logger logger = LogManager.getLogger(SoundEffects.class);
+
+    /**
+     * The effects every game uses, loaded in the background by preload()
+     */
+    public static final String[] EFFECTS = {
+            "place.wav", "fail.wav", "rotate.wav", "explode.wav", "clear.wav", "level.wav", "lifelose.wav",
+            "transition.wav"
+    };
+
+    /**
+     * The pool shared by the whole game
+     */
+    private static SoundEffects shared;
+
+    /**
+     * The most players a single effect can have
+     */
+    private final int maxVoices;
+
+    /**
+     * The loaded effects by file name
+     */
+    private final Map<String, Effect> effects = new HashMap<>();
+
+    /**
+     * Number of effects whose latency was measured
+     */
+    private long measured = 0;
+
+    /**
+     * Total latency of every measured effect, in nanoseconds
+     */
+    private long totalLatency = 0;
+
+    /**
+     * Highest latency measured, in nanoseconds
+     */
+    private long maxLatency = 0;
+
+    /**
+     * Whether the pool was disposed
+     */
+    private boolean disposed = false;
+
+    /**
+     * Create a new, empty pool
+     * @param maxVoices the most players a single effect can have
+     */
+    public SoundEffects(int maxVoices) {
+        if (maxVoices < 1)
+            throw new IllegalArgumentException("Need at least one voice per effect: " + maxVoices);
+        this.maxVoices = maxVoices;
+    }
+
+    /**
+     * Get the pool shared by the whole game, with up to 4 voices per effect
+     * @return the shared pool
+     */
+    public static synchronized SoundEffects getShared() {
+        if (shared == null)
+            shared = new SoundEffects(4);
+        return shared;
+    }
+
+    /**
+     * Load the given effects in the background with the AssetManager, so the first time they are played does not have
+     * to wait for them
+     * @param names file names of the effects in /sounds/
+     */
+    public void preload(String... names) {
+        for (String name : names)
+            AssetManager.getShared().load("effect:" + name, AssetManager.Priority.NORMAL, () -> effect(name));
+    }
+
+    /**
+     * Play an effect once, on a free voice or on the oldest one if they are all busy
+     * @param name file name of the effect in /sounds/
+     */
+    public void play(String name) {
+        long triggered = System.nanoTime();
+        Effect effect = effect(name);
+        if (effect == null)
+            return;
+
+        synchronized (this) {
+            if (disposed)
+                return;
+            Voice voice = effect.take();
+            voice.triggered = triggered;
+            voice.started = triggered;
+            voice.busy = true;
+            voice.player.stop();
+            voice.player.play();
+        }
+    }
+
+    /**
+     * Stop and release every player. Effects played afterwards are ignored.
+     */
+    public synchronized void dispose() {
+        disposed = true;
+        for (Effect effect : effects.values())
+            for (int i = 0; i < effect.count; i++)
+                effect.voices[i].player.dispose();
+        effects.clear();
+        logger.info("Disposed sound effects, mean latency {}ms, max latency {}ms",
+                getMeanLatency(), maxLatency / 1_000_000.0);
+    }
+
+    /**
+     * Get the number of effects whose latency was measured
+     * @return number of measured effects
+     */
+    public synchronized long getMeasured() {
+        return measured;
+    }
+
+    /**
+     * Get the mean time from play() until the effect was playing
+     * @return mean latency in milliseconds
+     */
+    public synchronized double getMeanLatency() {
+        return measured == 0 ? 0 : totalLatency / 1_000_000.0 / measured;
+    }
+
+    /**
+     * Get the highest time from play() until the effect was playing
+     * @return max latency in milliseconds
+     */
+    public synchronized double getMaxLatency() {
+        return maxLatency / 1_000_000.0;
+    }
+
+    /**
+     * Get the number of players in the pool
+     * @return number of voices over all effects
+     */
+    public synchronized int getVoices() {
+        int voices = 0;
+        for (Effect effect : effects.values())
+            voices += effect.count;
+        return voices;
+    }
+
+    /**
+     * Get an effect, loading it the first time it is asked for. Loading happens outside the lock, so a preload does not
+     * hold up effects which are already loaded.
+     * @param name file name of the effect in /sounds/
+     * @return the effect, or null if there is no such file
+     */
+    private Effect effect(String name) {
+        synchronized (this) {
+            Effect effect = effects.get(name);
+            if (effect != null || disposed)
+                return effect;
+        }
+
+        URL url = SoundEffects.class.getResource("/sounds/" + name);
+        if (url == null) {
+            logger.error("No such sound effect: " + name);
+            return null;
+        }
+        Effect loaded = new Effect(name, new Media(url.toExternalForm()));
+        //Load the first voice now, more only when effects overlap
+        loaded.add();
+
+        synchronized (this) {
+            Effect effect = effects.get(name);
+            if (effect == null && !disposed) {
+                effects.put(name, loaded);
+                return loaded;
+            }
+            //Somebody else was quicker
+            loaded.voices[0].player.dispose();
+            return effect;
+        }
+    }
+
+    /**
+     * Record how long a voice took to start playing
+     * @param voice the voice
+     */
+    private synchronized void playing(Voice voice) {
+        if (voice.triggered == 0)
+            return;
+        long latency = System.nanoTime() - voice.triggered;
+        voice.triggered = 0;
+        measured++;
+        totalLatency += latency;
+        maxLatency = Math.max(maxLatency, latency);
+        logger.debug("Sound effect {} playing after {}ms", voice.effect.name, latency / 1_000_000.0);
+    }
+
+    /**
+     * Free a voice once its effect is over
+     * @param voice the voice
+     */
+    private synchronized void finished(Voice voice) {
+        voice.busy = false;
+        if (!disposed)
+            voice.player.stop();
+    }
+
+    /**
+     * A loaded effect and its voices
+     */
+    private class Effect {
+
+        private final String name;
+        private final Media media;
+
+        /**
+         * The players of this effect, only the first count are created
+         */
+        private final Voice[] voices = new Voice[maxVoices];
+        private int count = 0;
+
+        private Effect(String name, Media media) {
+            this.name = name;
+            this.media = media;
+        }
+
+        /**
+         * Create another voice
+         * @return the new voice
+         */
+        private Voice add() {
+            Voice voice = new Voice(this, new MediaPlayer(media));
+            voices[count++] = voice;
+            return voice;
+        }
+
+        /**
+         * Get a voice to play on: a free one, a new one while there are fewer than maxVoices, or else the oldest
+         * @return the voice
+         */
+        private Voice take() {
+            Voice oldest = null;
+            for (int i = 0; i < count; i++) {
+                Voice voice = voices[i];
+                if (!voice.busy)
+                    return voice;
+                if (oldest == null || voice.started < oldest.started)
+                    oldest = voice;
+            }
+            if (count < voices.length)
+                return add();
+            logger.debug("Stealing the oldest voice of {}", name);
+            return oldest;
+        }
+    }
+
+    /**
+     * A single player of an effect
+     */
+    private class Voice {
+
+        private final Effect effect;
+        private final MediaPlayer player;
+
+        /**
+         * Whether the voice is playing or about to
+         */
+        private boolean busy = false;
+
+        /**
+         * When the voice was last started, in nanoseconds
+         */
+        private long started = 0;
+
+        /**
+         * When play() was called for the voice, 0 once it is playing
+         */
+        private long triggered = 0;
+
+        private Voice(Effect effect, MediaPlayer player) {
+            this.effect = effect;
+            this.player = player;
+            player.setOnPlaying(() -> playing(this));
+            player.setOnEndOfMedia(() -> finished(this));
+        }
+    }
+}
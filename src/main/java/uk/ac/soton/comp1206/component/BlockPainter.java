@@ -0,0 +1,101 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Paints single blocks onto any canvas, so a GameBlock painting itself and a CanvasBoard painting a whole board look
+ * exactly the same.
+ */
+public final class BlockPainter {
+
+    /**
+     * Colour of the shading on filled blocks
+     */
+    private static final Color SHADE = Color.web("grey", 0.5);
+
+    /**
+     * Number of frames a fade out takes
+     */
+    public static final int FADE_FRAMES = 21;
+
+    private BlockPainter() {
+    }
+
+    /**
+     * Paint a block
+     * @param gc where to paint
+     * @param x left edge
+     * @param y top edge
+     * @param width width of the block
+     * @param height height of the block
+     * @param value value of the block, 0 when empty
+     * @param hasIndicator whether to put the aim indicator on top
+     */
+    public static void paint(GraphicsContext gc, double x, double y, double width, double height, int value,
+                             boolean hasIndicator) {
+        //Clear
+        gc.clearRect(x, y, width, height);
+
+        //Fill
+        gc.setFill(value == 0 ? Color.WHITE : GameBlock.COLOURS[value]);
+        gc.fillRect(x, y, width, height);
+
+        //Border
+        gc.setStroke(Color.BLACK);
+        gc.strokeRect(x, y, width, height);
+
+        //Shade the top right half of filled blocks
+        if (value != 0) {
+            gc.setFill(SHADE);
+            gc.beginPath();
+            gc.moveTo(x, y);
+            gc.lineTo(x + width, y);
+            gc.lineTo(x + width, y + height);
+            gc.closePath();
+            gc.fill();
+        }
+
+        if (hasIndicator)
+            paintIndicator(gc, x, y, width, height);
+    }
+
+    /**
+     * Put a grey somewhat oblique circle in the middle of a block
+     * @param gc where to paint
+     * @param x left edge
+     * @param y top edge
+     * @param width width of the block
+     * @param height height of the block
+     */
+    public static void paintIndicator(GraphicsContext gc, double x, double y, double width, double height) {
+        gc.setGlobalAlpha(0.5);
+        gc.setFill(Color.GRAY);
+        gc.fillOval(x + width / 4, y + height / 4, width / 2, height / 2);
+        gc.setGlobalAlpha(1);
+    }
+
+    /**
+     * Paint one frame of the fade out of a cleared block. Frames are painted on top of each other: the block blinks in
+     * its colour and then fades to white over frames 5 to 19, and frame 20 leaves it plain white.
+     * @param gc where to paint
+     * @param x left edge
+     * @param y top edge
+     * @param width width of the block
+     * @param height height of the block
+     * @param colour colour the block had before it was cleared
+     * @param frame the frame, from 0 to FADE_FRAMES - 1
+     */
+    public static void paintFade(GraphicsContext gc, double x, double y, double width, double height, Color colour,
+                                 int frame) {
+        double opacity = 0.075;
+        if (frame < 5 || frame == FADE_FRAMES - 1)
+            opacity = 1;
+        gc.setGlobalAlpha(opacity);
+        gc.setFill(frame < 5 && frame > 1 ? colour : Color.WHITE);
+        gc.fillRect(x, y, width, height);
+        gc.setGlobalAlpha(1);
+        gc.setStroke(Color.BLACK);
+        gc.strokeRect(x, y, width, height);
+    }
+}
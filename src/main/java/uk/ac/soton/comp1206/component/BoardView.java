@@ -0,0 +1,45 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.Node;
+import uk.ac.soton.comp1206.event.CellClickedListener;
+import uk.ac.soton.comp1206.game.LineClear;
+
+/**
+ * A BoardView shows a Grid on screen. The GameBoard does so with a GameBlock per block, the CanvasBoard paints the
+ * whole board on a single canvas. Scenes which only need to show a board, aim at blocks and react to clicks can use
+ * either through this interface.
+ */
+public interface BoardView {
+
+    /**
+     * Show or hide the aim indicator on a block
+     * @param x column
+     * @param y row
+     * @param hasIndicator whether to show the indicator
+     */
+    public void setIndicator(int x, int y, boolean hasIndicator);
+
+    /**
+     * Fade out every block on the cleared lines/rows
+     * @param lineClear the lines/rows that were cleared
+     */
+    public void fadeOut(LineClear lineClear);
+
+    /**
+     * Set the listener to handle an event when a block is clicked
+     * @param listener listener to add
+     */
+    public void setOnCellClicked(CellClickedListener listener);
+
+    /**
+     * Get the node to put into the scene
+     * @return the node showing the board
+     */
+    public Node getNode();
+
+    /**
+     * Stop following the grid and cancel any fades, once the board is not shown any more. The grid keeps its
+     * listeners, so a board which is not detached stays alive as long as the grid does.
+     */
+    public void detach();
+}
@@ -0,0 +1,274 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseEvent;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.CellClickedListener;
+import uk.ac.soton.comp1206.event.GridListener;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.GridChange;
+import uk.ac.soton.comp1206.game.LineClear;
+
+/**
+ * A CanvasBoard shows a Grid on a single Canvas, instead of a GameBlock per block like the GameBoard. It looks the
+ * same, but the scene graph only gets one node however large the board is.
+ *
+ * Changes to the grid only mark their block as dirty (see DirtyBlocks). Once per pulse, only the dirty blocks are
+ * painted again; when
+ * there is nothing left to paint the board stops listening to pulses. Fading blocks are painted by the FadeAnimator
+ * until their fade is over. Clicks are mapped back to the block under the mouse.
+ */
+public class CanvasBoard extends Canvas implements BoardView, GridListener, FadeAnimator.Target {
+
+    private static final Logger logger = LogManager.getLogger(CanvasBoard.class);
+
+    /**
+     * The grid this board shows
+     */
+    private final Grid grid;
+
+    private final int cols;
+    private final int rows;
+    private final double blockWidth;
+    private final double blockHeight;
+
+    /**
+     * The blocks which need painting on the next pulse
+     */
+    private final DirtyBlocks dirty;
+
+    /**
+     * Bit x of indicators[y] is set when the block shows the aim indicator
+     */
+    private final long[] indicators;
+
+    /**
+     * Bit x of fading[y] is set while the block is fading out
+     */
+    private final long[] fading;
+
+    /**
+     * Whether the painter is listening to pulses
+     */
+    private boolean painting = false;
+
+    /**
+     * Paints whatever changed, once per pulse
+     */
+    private final AnimationTimer painter = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            paintDirty();
+        }
+    };
+
+    /**
+     * Paints a block with whatever it holds
+     */
+    private final DirtyBlocks.Painter blockPainter = this::paintBlock;
+
+    /**
+     * The listener to call when a block is clicked
+     */
+    private CellClickedListener cellClickedListener;
+
+    /**
+     * Create a new CanvasBoard showing the given grid
+     * @param grid the grid
+     * @param width the visual width
+     * @param height the visual height
+     */
+    public CanvasBoard(Grid grid, double width, double height) {
+        super(width, height);
+        logger.info("Building canvas board: {} x {}", grid.getCols(), grid.getRows());
+        this.grid = grid;
+        this.cols = grid.getCols();
+        this.rows = grid.getRows();
+        this.blockWidth = width / cols;
+        this.blockHeight = height / rows;
+        this.dirty = new DirtyBlocks(rows);
+        this.indicators = new long[rows];
+        this.fading = new long[rows];
+
+        //Everything needs painting at first
+        for (int y = 0; y < rows; y++)
+            dirty.markRow(y, -1L >>> (Grid.MAX_SIZE - cols));
+        requestPaint();
+
+        grid.addListener(this);
+        setOnMouseClicked(this::clicked);
+    }
+
+    /**
+     * Mark a changed block as dirty. A block which gets filled while it is still fading out stops fading.
+     * @param x column of the block
+     * @param y row of the block
+     * @param value the new value of the block
+     */
+    @Override
+    public void cellChanged(int x, int y, int value) {
+        if (value != 0 && (fading[y] >>> x & 1) != 0)
+            FadeAnimator.getShared().cancel(this, x, y);
+        markDirty(x, y);
+    }
+
+    /**
+     * Mark every block of a committed batch as dirty at once
+     * @param change the changed blocks
+     */
+    @Override
+    public void cellsChanged(GridChange change) {
+        long rows = change.getRows();
+        while (rows != 0) {
+            int y = Long.numberOfTrailingZeros(rows);
+            long refilled = change.getRow(y) & fading[y] & grid.getRowMask(y);
+            while (refilled != 0) {
+                FadeAnimator.getShared().cancel(this, Long.numberOfTrailingZeros(refilled), y);
+                refilled &= refilled - 1;
+            }
+            rows &= rows - 1;
+        }
+        dirty.mark(change);
+        requestPaint();
+    }
+
+    /**
+     * Show or hide the aim indicator on a block
+     * @param x column
+     * @param y row
+     * @param hasIndicator whether to show the indicator
+     */
+    @Override
+    public void setIndicator(int x, int y, boolean hasIndicator) {
+        if (hasIndicator)
+            indicators[y] |= 1L << x;
+        else
+            indicators[y] &= ~(1L << x);
+        markDirty(x, y);
+    }
+
+    /**
+     * Fade out every block on the cleared lines/rows, blocks where a line and a row cross only once
+     * @param lineClear the lines/rows that were cleared
+     */
+    @Override
+    public void fadeOut(LineClear lineClear) {
+        for (int y = 0; y < rows; y++) {
+            long cleared = (lineClear.getRows() >>> y & 1) != 0 ? -1L >>> (Grid.MAX_SIZE - cols)
+                    : lineClear.getColumns();
+            while (cleared != 0) {
+                int x = Long.numberOfTrailingZeros(cleared);
+                fading[y] |= 1L << x;
+                FadeAnimator.getShared().start(this, x, y, grid.get(x, y));
+                cleared &= cleared - 1;
+            }
+        }
+    }
+
+    /**
+     * Paint a frame of the fade out of a block
+     * @param x column
+     * @param y row
+     * @param value value the block had before it was cleared
+     * @param frame the frame
+     */
+    @Override
+    public void paintFade(int x, int y, int value, int frame) {
+        BlockPainter.paintFade(getGraphicsContext2D(), x * blockWidth, y * blockHeight, blockWidth, blockHeight,
+                GameBlock.COLOURS[value], frame);
+    }
+
+    /**
+     * Paint whatever a block holds once it stopped fading, on the next pulse
+     * @param x column
+     * @param y row
+     */
+    @Override
+    public void fadeFinished(int x, int y) {
+        fading[y] &= ~(1L << x);
+        markDirty(x, y);
+    }
+
+    /**
+     * Set the listener to handle an event when a block is clicked
+     * @param listener listener to add
+     */
+    @Override
+    public void setOnCellClicked(CellClickedListener listener) {
+        this.cellClickedListener = listener;
+    }
+
+    /**
+     * Get the node to put into the scene
+     * @return this canvas
+     */
+    @Override
+    public Node getNode() {
+        return this;
+    }
+
+    /**
+     * Stop listening to the grid and to pulses
+     */
+    @Override
+    public void detach() {
+        grid.removeListener(this);
+        FadeAnimator.getShared().cancelAll(this);
+        painter.stop();
+        painting = false;
+    }
+
+    /**
+     * Work out which block was clicked and call the attached listener
+     * @param event mouse event
+     */
+    private void clicked(MouseEvent event) {
+        int x = Math.min(Math.max((int) (event.getX() / blockWidth), 0), cols - 1);
+        int y = Math.min(Math.max((int) (event.getY() / blockHeight), 0), rows - 1);
+        logger.info("Block clicked: {}, {}", x, y);
+
+        if (cellClickedListener != null)
+            cellClickedListener.cellClicked(new GameBlockCoordinate(x, y));
+    }
+
+    private void markDirty(int x, int y) {
+        dirty.mark(x, y);
+        requestPaint();
+    }
+
+    /**
+     * Start listening to pulses, if not already
+     */
+    private void requestPaint() {
+        if (!painting) {
+            painting = true;
+            painter.start();
+        }
+    }
+
+    /**
+     * Paint the dirty blocks, and stop listening to pulses once there is nothing left to do
+     */
+    private void paintDirty() {
+        //Fading blocks are painted by their fade until it is over
+        if (dirty.paint(fading, blockPainter) == 0) {
+            painter.stop();
+            painting = false;
+        }
+    }
+
+    /**
+     * Paint a block with whatever it holds
+     * @param x column
+     * @param y row
+     */
+    private void paintBlock(int x, int y) {
+        GraphicsContext gc = getGraphicsContext2D();
+        TileCache.getShared().paint(gc, x * blockWidth, y * blockHeight, blockWidth, blockHeight, grid.get(x, y),
+                (indicators[y] >>> x & 1) != 0);
+    }
+}
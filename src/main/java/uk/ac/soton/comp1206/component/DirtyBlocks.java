@@ -0,0 +1,106 @@
+package uk.ac.soton.comp1206.component;
+
+import uk.ac.soton.comp1206.game.GridChange;
+
+/**
+ * The blocks of a board which need painting again, one bitmask per row plus a bitmask of the rows with any dirty
+ * blocks. Painting them only goes through the dirty rows, so the work follows the blocks which changed and not the size
+ * of the board.
+ *
+ * This is kept apart from the CanvasBoard, which needs a screen, so the ScalingBenchmark can measure the same repaint
+ * work without one.
+ */
+public class DirtyBlocks {
+
+    /**
+     * Paints a single block
+     */
+    public interface Painter {
+
+        /**
+         * Paint a block
+         * @param x column
+         * @param y row
+         */
+        void paint(int x, int y);
+    }
+
+    /**
+     * Bit x of blocks[y] is set when the block needs painting
+     */
+    private final long[] blocks;
+
+    /**
+     * Bit y is set when row y has any dirty blocks
+     */
+    private long rows = 0;
+
+    /**
+     * Create a new set of dirty blocks, with nothing dirty yet
+     * @param rows number of rows of the board
+     */
+    public DirtyBlocks(int rows) {
+        this.blocks = new long[rows];
+    }
+
+    /**
+     * Mark a block as dirty
+     * @param x column
+     * @param y row
+     */
+    public void mark(int x, int y) {
+        blocks[y] |= 1L << x;
+        rows |= 1L << y;
+    }
+
+    /**
+     * Mark some blocks of a row as dirty
+     * @param y row
+     * @param columns bitmask of the columns
+     */
+    public void markRow(int y, long columns) {
+        if (columns == 0)
+            return;
+        blocks[y] |= columns;
+        rows |= 1L << y;
+    }
+
+    /**
+     * Mark every block of a committed change as dirty
+     * @param change the changed blocks
+     */
+    public void mark(GridChange change) {
+        long changed = change.getRows();
+        while (changed != 0) {
+            int y = Long.numberOfTrailingZeros(changed);
+            markRow(y, change.getRow(y));
+            changed &= changed - 1;
+        }
+    }
+
+    /**
+     * Paint every dirty block which is not held back, the ones held back stay dirty
+     * @param held bit x of held[y] is set when the block must not be painted yet, for example while it is fading
+     * @param painter paints a block
+     * @return number of blocks painted
+     */
+    public int paint(long[] held, Painter painter) {
+        int painted = 0;
+        long remaining = rows;
+        while (remaining != 0) {
+            int y = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+
+            long row = blocks[y] & ~held[y];
+            blocks[y] &= held[y];
+            if (blocks[y] == 0)
+                rows &= ~(1L << y);
+            while (row != 0) {
+                painter.paint(Long.numberOfTrailingZeros(row), y);
+                painted++;
+                row &= row - 1;
+            }
+        }
+        return painted;
+    }
+}
@@ -0,0 +1,276 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.animation.AnimationTimer;
+import javafx.util.Duration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.game.Grid;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The FadeAnimator runs every fade out of cleared blocks, on every board, from a single pulse handler. Each pulse it
+ * works out which frame every fade has reached and asks the board to paint the frames in between, so a fade takes the
+ * same time whatever the frame rate. It only listens to pulses while something is fading.
+ *
+ * Fades are kept in plain arrays which only grow when more blocks fade at once than ever before, so running them does
+ * not create any objects. Every board with blocks fading has an index from each of its blocks to its fade, so finding
+ * the fade of a block does not depend on how many blocks are fading.
+ */
+public class FadeAnimator {
+
+    private static final Logger logger = LogManager.getLogger(FadeAnimator.class);
+
+    /**
+     * Something which shows fading blocks, usually a board
+     */
+    public interface Target {
+
+        /**
+         * Paint a frame of a fading block on top of the frames before it
+         * @param x column
+         * @param y row
+         * @param value value the block had before it was cleared
+         * @param frame the frame, from 0 to BlockPainter.FADE_FRAMES - 1
+         */
+        void paintFade(int x, int y, int value, int frame);
+
+        /**
+         * A block finished fading, or its fade was cancelled
+         * @param x column
+         * @param y row
+         */
+        void fadeFinished(int x, int y);
+    }
+
+    /**
+     * The animator shared by all boards
+     */
+    private static final FadeAnimator shared = new FadeAnimator();
+
+    /**
+     * Blocks of a row in an index, every grid fits
+     */
+    private static final int STRIDE = Grid.MAX_SIZE;
+
+    /**
+     * Where an index keeps the number of fades of its board
+     */
+    private static final int FADING = STRIDE * STRIDE;
+
+    private Target[] targets = new Target[64];
+    private int[] xs = new int[64];
+    private int[] ys = new int[64];
+    private int[] values = new int[64];
+
+    /**
+     * Pulse time each fade started at, -1 until its first pulse
+     */
+    private long[] starts = new long[64];
+
+    /**
+     * Last frame painted for each fade, -1 before the first
+     */
+    private int[] painted = new int[64];
+
+    /**
+     * Number of fades running
+     */
+    private int count = 0;
+
+    /**
+     * For every board with blocks fading, the fade of each block plus one at y * STRIDE + x, 0 when it is not fading
+     */
+    private final Map<Target, int[]> indices = new IdentityHashMap<>();
+
+    /**
+     * An index no board uses any more, all zeros, kept for the next board so fading does not create one every time
+     */
+    private int[] spare;
+
+    /**
+     * How long a fade takes, in nanoseconds
+     */
+    private long duration = 350_000_000L;
+
+    private boolean running = false;
+
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            advance(now);
+        }
+    };
+
+    /**
+     * Get the animator shared by all boards
+     * @return the shared animator
+     */
+    public static FadeAnimator getShared() {
+        return shared;
+    }
+
+    /**
+     * Set how long a fade takes, used for fades started from now on
+     * @param duration the duration
+     */
+    public void setDuration(Duration duration) {
+        this.duration = Math.max((long) (duration.toMillis() * 1_000_000), 1);
+    }
+
+    /**
+     * Start fading a block. A block which is already fading starts again from the beginning.
+     * @param target the board showing the block
+     * @param x column
+     * @param y row
+     * @param value value the block had before it was cleared
+     */
+    public void start(Target target, int x, int y, int value) {
+        int[] index = indices.get(target);
+        if (index == null) {
+            index = spare != null ? spare : new int[FADING + 1];
+            spare = null;
+            indices.put(target, index);
+        }
+        int i = index[y * STRIDE + x] - 1;
+        if (i < 0) {
+            if (count == targets.length)
+                grow();
+            i = count++;
+            index[y * STRIDE + x] = i + 1;
+            index[FADING]++;
+        }
+        targets[i] = target;
+        xs[i] = x;
+        ys[i] = y;
+        values[i] = value;
+        starts[i] = -1;
+        painted[i] = -1;
+
+        if (!running) {
+            running = true;
+            timer.start();
+        }
+    }
+
+    /**
+     * Stop a block fading, for example because it was filled again before the fade was over
+     * @param target the board showing the block
+     * @param x column
+     * @param y row
+     * @return whether the block was fading
+     */
+    public boolean cancel(Target target, int x, int y) {
+        int i = find(target, x, y);
+        if (i < 0)
+            return false;
+        remove(i);
+        target.fadeFinished(x, y);
+        return true;
+    }
+
+    /**
+     * Stop every fade of a board, for example because it is not shown any more
+     * @param target the board
+     */
+    public void cancelAll(Target target) {
+        for (int i = count - 1; i >= 0; i--)
+            if (targets[i] == target) {
+                int x = xs[i];
+                int y = ys[i];
+                remove(i);
+                target.fadeFinished(x, y);
+            }
+    }
+
+    /**
+     * Check whether a block is fading
+     * @param target the board showing the block
+     * @param x column
+     * @param y row
+     * @return whether the block is fading
+     */
+    public boolean isFading(Target target, int x, int y) {
+        return find(target, x, y) >= 0;
+    }
+
+    /**
+     * Paint every frame each fade reached since the last pulse, and finish the fades which are over
+     * @param now time of the pulse in nanoseconds
+     */
+    private void advance(long now) {
+        int last = BlockPainter.FADE_FRAMES - 1;
+        for (int i = count - 1; i >= 0; i--) {
+            if (starts[i] < 0)
+                starts[i] = now;
+            int frame = (int) Math.min((now - starts[i]) * BlockPainter.FADE_FRAMES / duration, last);
+
+            //Frames are painted on top of each other, so paint any that were skipped too
+            Target target = targets[i];
+            while (painted[i] < frame)
+                target.paintFade(xs[i], ys[i], values[i], ++painted[i]);
+
+            if (frame == last) {
+                int x = xs[i];
+                int y = ys[i];
+                remove(i);
+                target.fadeFinished(x, y);
+            }
+        }
+
+        if (count == 0) {
+            timer.stop();
+            running = false;
+        }
+    }
+
+    /**
+     * Find the fade of a block
+     * @param target the board showing the block
+     * @param x column
+     * @param y row
+     * @return index of the fade, or -1 if the block is not fading
+     */
+    private int find(Target target, int x, int y) {
+        int[] index = indices.get(target);
+        return index == null ? -1 : index[y * STRIDE + x] - 1;
+    }
+
+    /**
+     * Remove a fade by moving the last one into its place
+     * @param i index of the fade
+     */
+    private void remove(int i) {
+        int[] index = indices.get(targets[i]);
+        index[ys[i] * STRIDE + xs[i]] = 0;
+        //A board with nothing fading is let go of, its index is all zeros again
+        if (--index[FADING] == 0) {
+            indices.remove(targets[i]);
+            spare = index;
+        }
+
+        count--;
+        targets[i] = targets[count];
+        xs[i] = xs[count];
+        ys[i] = ys[count];
+        values[i] = values[count];
+        starts[i] = starts[count];
+        painted[i] = painted[count];
+        targets[count] = null;
+        if (i < count)
+            indices.get(targets[i])[ys[i] * STRIDE + xs[i]] = i + 1;
+    }
+
+    private void grow() {
+        int size = targets.length * 2;
+        logger.debug("Growing fades to {}", size);
+        targets = Arrays.copyOf(targets, size);
+        xs = Arrays.copyOf(xs, size);
+        ys = Arrays.copyOf(ys, size);
+        values = Arrays.copyOf(values, size);
+        starts = Arrays.copyOf(starts, size);
+        painted = Arrays.copyOf(painted, size);
+    }
+}
@@ -1,15 +1,10 @@
 package uk.ac.soton.comp1206.component;
 
-import javafx.animation.AnimationTimer;
-import javafx.animation.PauseTransition;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.value.ObservableValue;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
 import javafx.scene.canvas.Canvas;
-import javafx.scene.paint.*;
-import javafx.scene.shape.Circle;
+import javafx.scene.paint.Color;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -102,6 +97,12 @@ public class GameBlock extends Canvas {
      * @param newValue the new value
      */
     private void updateValue(ObservableValue<? extends Number> observable, Number oldValue, Number newValue) {
+        //A block filled again while it is still fading stops fading, an emptied one is painted once its fade is over
+        if (FadeAnimator.getShared().isFading(gameBoard, x, y)) {
+            if (newValue.intValue() != 0)
+                FadeAnimator.getShared().cancel(gameBoard, x, y);
+            return;
+        }
         paint();
     }
 
@@ -109,109 +110,16 @@ public class GameBlock extends Canvas {
      * Handle painting of the block canvas
      */
     public void paint() {
-        //If the block is empty, paint as empty
-        if(value.get() == 0) {
-            paintEmpty();
-        } else {
-            //If the block is not empty, paint with the colour represented by the value
-            paintColor(COLOURS[value.get()]);
-        }
-        paintIndicator();
-    }
-
-    /**
-     * Paint this canvas empty
-     */
-    private void paintEmpty() {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
-        //Fill
-        gc.setFill(Color.WHITE);
-        gc.fillRect(0,0, width, height);
-
-
-        //Border
-        gc.setStroke(Color.BLACK);
-        gc.strokeRect(0,0,width,height);
-    }
-
-    /**
-     * Paint this canvas with the given colour
-     * @param colour the colour to paint
-     */
-    private void paintColor(Paint colour) {
-        var gc = getGraphicsContext2D();
-
-        //Clear
-        gc.clearRect(0,0,width,height);
-
-        //Colour fill
-        gc.setFill(colour);
-        gc.fillRect(0,0, width, height);
-
-        //Border
-        gc.setStroke(Color.BLACK);
-        gc.strokeRect(0,0,width,height);
-
-        double[] triangle1 = {0, getWidth(), getWidth()};
-        double[] triangle2 = {0, 0, getHeight()};
-
-        gc.setFill(Color.web("grey", 0.5));
-        gc.fillPolygon(triangle1, triangle2, 3);
+        TileCache.getShared().paint(getGraphicsContext2D(), 0, 0, width, height, value.get(), hasIndicator);
     }
 
-
-
     /**
-     * put a grey somewhat oblique circle in the middle of the tile
+     * Paint a frame of the fade out of this block on top of what is already painted
+     * @param value the value the block had before it was cleared
+     * @param frame the frame, from 0 to BlockPainter.FADE_FRAMES - 1
      */
-    private void paintIndicator() {
-        if (hasIndicator){
-            var gc = getGraphicsContext2D();
-
-            gc.setGlobalAlpha(0.5);
-            gc.setFill(Color.GRAY);
-            gc.fillOval(width / 4, height / 4, width / 2, height / 2);
-            gc.setGlobalAlpha(1);
-        }
-    }
-
-    /**
-     * ugly implementation, just put a white tile on top of it and stack them,
-     * after some Time make it none transparent it will be gone.
-     * At the beginning make it blink one time
-     * always make the surroundings black
-     */
-    public void fadeOut() {
-        var gc = getGraphicsContext2D();
-
-
-        final int[] counter = {0};
-        AnimationTimer animationTimer = new AnimationTimer() {
-            @Override
-            public void handle(long l) {
-                double opacity = 0.075;
-                if (counter[0] < 5 || counter[0] == 20)
-                    opacity = 1;
-                gc.setGlobalAlpha(opacity);
-                gc.setFill(Color.WHITE);
-                if (counter[0] < 5 && counter[0] > 1)
-                    gc.setFill(COLOURS[value.get()]);
-                gc.fillRect(0,0, width, height);
-                gc.setGlobalAlpha(1);
-                gc.setStroke(Color.BLACK);
-                gc.strokeRect(0,0,width,height);
-
-                counter[0]++;
-                if (counter[0] > 20) {
-                    this.stop();
-                }
-            }
-        };
-        animationTimer.start();
+    public void paintFade(int value, int frame) {
+        BlockPainter.paintFade(getGraphicsContext2D(), 0, 0, width, height, COLOURS[value], frame);
     }
 
     /**
@@ -1,13 +1,14 @@
 package uk.ac.soton.comp1206.component;
 
+import javafx.scene.Node;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.GridPane;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.event.BlockClickedListener;
+import uk.ac.soton.comp1206.event.CellClickedListener;
 import uk.ac.soton.comp1206.game.Grid;
-
-import java.util.Set;
+import uk.ac.soton.comp1206.game.LineClear;
 
 /**
  * A GameBoard is a visual component to represent the visual GameBoard.
@@ -19,7 +20,7 @@ import java.util.Set;
  * The GameBoard is only a visual representation and should not contain game logic or model logic in it, which should
  * take place in the Grid.
  */
-public class GameBoard extends GridPane {
+public class GameBoard extends GridPane implements BoardView, FadeAnimator.Target {
 
     private static final Logger logger = LogManager.getLogger(GameBoard.class);
 
@@ -48,6 +49,11 @@ public class GameBoard extends GridPane {
      */
     final Grid grid;
 
+    /**
+     * The JavaFX properties the blocks are bound to, kept in sync with the grid
+     */
+    final GridPropertyView gridView;
+
     /**
      * The blocks inside the grid
      */
@@ -58,6 +64,11 @@ public class GameBoard extends GridPane {
      */
     BlockClickedListener blockClickedListener;
 
+    /**
+     * The listener to call with the position when a block is clicked
+     */
+    CellClickedListener cellClickedListener;
+
 
     /**
      * Create a new GameBoard, based off a given grid, with a visual width and height.
@@ -71,6 +82,7 @@ public class GameBoard extends GridPane {
         this.width = width;
         this.height = height;
         this.grid = grid;
+        this.gridView = new GridPropertyView(grid);
 
         //Build the GameBoard
         build();
@@ -91,6 +103,7 @@ public class GameBoard extends GridPane {
         this.width = width;
         this.height = height;
         this.grid = new Grid(cols,rows);
+        this.gridView = new GridPropertyView(grid);
 
         //Build the GameBoard
         build();
@@ -145,7 +158,7 @@ public class GameBoard extends GridPane {
         blocks[x][y] = block;
 
         //Link the GameBlock component to the corresponding value in the Grid
-        block.bind(grid.getGridProperty(x,y));
+        block.bind(gridView.getGridProperty(x,y));
 
         //Add a mouse click handler to the block to trigger GameBoard blockClicked method
         block.setOnMouseClicked((e) -> blockClicked(e, block));
@@ -153,12 +166,46 @@ public class GameBoard extends GridPane {
         return block;
     }
 
-    public void fadeOut(Set<GameBlockCoordinate> blockSet) {
-        for (GameBlockCoordinate blockCoordinate: blockSet) {
-            GameBlock block = this.getBlock(blockCoordinate.getX(), blockCoordinate.getY());
-            block.fadeOut();
+    /**
+     * fade out every block on the cleared lines/rows, blocks where a line and a row cross only once
+     * @param lineClear the lines/rows that were cleared
+     */
+    @Override
+    public void fadeOut(LineClear lineClear) {
+        //Only visit the cleared blocks, not the whole board
+        for (int y = 0; y < rows; y++) {
+            long cleared = (lineClear.getRows() >>> y & 1) != 0 ? -1L >>> (Grid.MAX_SIZE - cols)
+                    : lineClear.getColumns();
+            while (cleared != 0) {
+                int x = Long.numberOfTrailingZeros(cleared);
+                FadeAnimator.getShared().start(this, x, y, blocks[x][y].getValue());
+                cleared &= cleared - 1;
+            }
         }
     }
+
+    /**
+     * Paint a frame of the fade out of a block
+     * @param x column
+     * @param y row
+     * @param value value the block had before it was cleared
+     * @param frame the frame
+     */
+    @Override
+    public void paintFade(int x, int y, int value, int frame) {
+        blocks[x][y].paintFade(value, frame);
+    }
+
+    /**
+     * Paint a block as it is once it stopped fading
+     * @param x column
+     * @param y row
+     */
+    @Override
+    public void fadeFinished(int x, int y) {
+        blocks[x][y].paint();
+    }
+
     /**
      * Set the listener to handle an event when a block is clicked
      * @param listener listener to add
@@ -167,6 +214,44 @@ public class GameBoard extends GridPane {
         this.blockClickedListener = listener;
     }
 
+    /**
+     * Set the listener to handle an event when a block is clicked, which only gets the position of the block
+     * @param listener listener to add
+     */
+    @Override
+    public void setOnCellClicked(CellClickedListener listener) {
+        this.cellClickedListener = listener;
+    }
+
+    /**
+     * Show or hide the aim indicator on a block
+     * @param x column
+     * @param y row
+     * @param hasIndicator whether to show the indicator
+     */
+    @Override
+    public void setIndicator(int x, int y, boolean hasIndicator) {
+        blocks[x][y].setHasIndicator(hasIndicator);
+    }
+
+    /**
+     * Get the node to put into the scene
+     * @return this board
+     */
+    @Override
+    public Node getNode() {
+        return this;
+    }
+
+    /**
+     * Stop listening to the grid and cancel the fades of this board
+     */
+    @Override
+    public void detach() {
+        gridView.detach();
+        FadeAnimator.getShared().cancelAll(this);
+    }
+
     /**
      * Triggered when a block is clicked. Call the attached listener.
      * @param event mouse event
@@ -178,6 +263,9 @@ public class GameBoard extends GridPane {
         if(blockClickedListener != null) {
             blockClickedListener.blockClicked(block);
         }
+        if(cellClickedListener != null) {
+            cellClickedListener.cellClicked(new GameBlockCoordinate(block.getX(), block.getY()));
+        }
     }
 
 }
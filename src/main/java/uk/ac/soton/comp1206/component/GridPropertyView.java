@@ -0,0 +1,67 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import uk.ac.soton.comp1206.event.GridListener;
+import uk.ac.soton.comp1206.game.Grid;
+
+/**
+ * A JavaFX view on top of a Grid. The Grid itself only holds primitive values, this class hands out an IntegerProperty
+ * per block which can be bound to, for example by a GameBlock.
+ *
+ * Properties are only created when somebody asks for them and are only updated when the Grid reports a change.
+ */
+public class GridPropertyView implements GridListener {
+
+    /**
+     * The grid this view represents
+     */
+    private final Grid grid;
+
+    /**
+     * The properties handed out so far, null where nobody asked yet
+     */
+    private final IntegerProperty[][] properties;
+
+    /**
+     * Create a new view on the given grid and start listening to its changes
+     * @param grid grid to view
+     */
+    public GridPropertyView(Grid grid) {
+        this.grid = grid;
+        this.properties = new IntegerProperty[grid.getCols()][grid.getRows()];
+
+        grid.addListener(this);
+    }
+
+    /**
+     * Get the Integer property for a given row and column index. Can be used for binding.
+     * @param x column
+     * @param y row
+     * @return the IntegerProperty at the given x and y in the grid
+     */
+    public IntegerProperty getGridProperty(int x, int y) {
+        if (properties[x][y] == null)
+            properties[x][y] = new SimpleIntegerProperty(grid.get(x, y));
+        return properties[x][y];
+    }
+
+    /**
+     * Keep the property of a changed block in sync with the grid
+     * @param x column of the block
+     * @param y row of the block
+     * @param value the new value of the block
+     */
+    @Override
+    public void cellChanged(int x, int y, int value) {
+        if (properties[x][y] != null)
+            properties[x][y].set(value);
+    }
+
+    /**
+     * Stop listening to the grid
+     */
+    public void detach() {
+        grid.removeListener(this);
+    }
+}
@@ -29,19 +29,21 @@ public class PieceBoard extends GameBoard{
      */
     public void nextPiece(GamePiece gamePiece) {
         logger.info("displaying new Piece " + gamePiece);
-        // each gamePiece e.g. the L game piece has a value & a block[][]. The value is L's value &
-        // the block[][] is the gamepiece 'L' 2d grid array which represents it's shape so we need to get BOTH
+        // each gamePiece e.g. the L game piece has a value & a shape. The value is L's value &
+        // the shape is the gamepiece 'L' 3x3 grid which represents it's shape so we need to get BOTH
         int value = gamePiece.getValue();
-        int [][] blocks = gamePiece.getBlocks();
 
+        //swap the whole piece at once
+        this.grid.begin();
         for (int i = 0; i < 3; i++)
             for (int j = 0; j < 3; j++)
                 //put in piece
-                if (blocks[i][j] > 0)
+                if (gamePiece.hasBlock(i, j))
                     this.grid.set(i, j, value);
                 //clear otherwise
                 else
                     this.grid.set(i, j, 0);
+        this.grid.commit();
     }
     
 
@@ -0,0 +1,134 @@
+package uk.ac.soton.comp1206.component;
+
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Transform;
+import javafx.stage.Screen;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The TileCache holds every block, in every colour with and without the aim indicator, painted once into an image per
+ * block size. Painting a block is then a single image draw instead of filling, stroking and shading it again.
+ *
+ * A canvas keeps its own pixels at its size times the output scale of the screen, however the GamePane scales it
+ * afterwards, so tiles are painted at exactly that resolution. A new set is only painted for a block size or output
+ * scale that has not been seen yet, and only the most recently used sets are kept.
+ */
+public class TileCache {
+
+    private static final Logger logger = LogManager.getLogger(TileCache.class);
+
+    /**
+     * Most block sizes to keep tiles for
+     */
+    private static final int MAX_SIZES = 8;
+
+    /**
+     * The cache shared by all boards
+     */
+    private static final TileCache shared = new TileCache();
+
+    /**
+     * Tile sets by block size, most recently used first. There are only ever a few, so finding one is a short scan
+     * which does not create any objects.
+     */
+    private final List<Tiles> tiles = new ArrayList<>();
+
+    /**
+     * Get the cache shared by all boards
+     * @return the shared cache
+     */
+    public static TileCache getShared() {
+        return shared;
+    }
+
+    /**
+     * Paint a block. Has to be called on the JavaFX thread.
+     * @param gc where to paint
+     * @param x left edge
+     * @param y top edge
+     * @param width width of the block
+     * @param height height of the block
+     * @param value value of the block, 0 when empty
+     * @param hasIndicator whether to put the aim indicator on top
+     */
+    public void paint(GraphicsContext gc, double x, double y, double width, double height, int value,
+                      boolean hasIndicator) {
+        Image[] images = get(width, height);
+        gc.drawImage(images[hasIndicator ? value + GameBlock.COLOURS.length : value], x, y, width, height);
+    }
+
+    /**
+     * Get the tiles of a block size, painting them if needed
+     * @param width width of the block
+     * @param height height of the block
+     * @return the tiles, one per value without the indicator followed by one per value with it
+     */
+    private Image[] get(double width, double height) {
+        double scale = Screen.getPrimary().getOutputScaleX();
+        for (int i = 0; i < tiles.size(); i++) {
+            Tiles set = tiles.get(i);
+            if (set.width == width && set.height == height && set.scale == scale) {
+                if (i > 0)
+                    tiles.add(0, tiles.remove(i));
+                return set.images;
+            }
+        }
+
+        Tiles set = new Tiles(width, height, scale, render(width, height, scale));
+        tiles.add(0, set);
+        if (tiles.size() > MAX_SIZES)
+            tiles.remove(tiles.size() - 1);
+        return set.images;
+    }
+
+    /**
+     * Paint every tile of a block size
+     * @param width width of the block
+     * @param height height of the block
+     * @param scale output scale of the screen
+     * @return the tiles
+     */
+    private static Image[] render(double width, double height, double scale) {
+        logger.info("Painting tiles: {} x {} at scale {}", width, height, scale);
+        int values = GameBlock.COLOURS.length;
+        Image[] set = new Image[values * 2];
+
+        var canvas = new Canvas(width, height);
+        var gc = canvas.getGraphicsContext2D();
+        var parameters = new SnapshotParameters();
+        parameters.setFill(Color.TRANSPARENT);
+        parameters.setTransform(Transform.scale(scale, scale));
+
+        for (int i = 0; i < set.length; i++) {
+            BlockPainter.paint(gc, 0, 0, width, height, i % values, i >= values);
+            set[i] = canvas.snapshot(parameters, null);
+        }
+        return set;
+    }
+
+    /**
+     * The tiles of one block size
+     */
+    private static class Tiles {
+
+        private final double width;
+        private final double height;
+        private final double scale;
+        private final Image[] images;
+
+        private Tiles(double width, double height, double scale, Image[] images) {
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+            this.images = images;
+        }
+    }
+}
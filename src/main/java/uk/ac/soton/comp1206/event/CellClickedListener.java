@@ -0,0 +1,16 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+
+/**
+ * The Cell Clicked listener is used to handle the event when a block of a BoardView is clicked. Unlike the
+ * BlockClickedListener it only passes the position, since not every board is made of GameBlocks.
+ */
+public interface CellClickedListener {
+
+    /**
+     * Handle a cell clicked event
+     * @param coordinate the column and row that was clicked
+     */
+    public void cellClicked(GameBlockCoordinate coordinate);
+}
@@ -0,0 +1,76 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.LineClear;
+
+/**
+ * The Game Listener receives everything that happens inside a Game. The Game does not know about the UI or audio, so
+ * scenes, sounds and anything else that wants to follow a game attach one of these.
+ *
+ * Every method does nothing by default, so a listener only needs to implement the events it cares about.
+ */
+public interface GameListener {
+
+    /**
+     * A piece was placed on the grid
+     * @param gamePiece the piece that was placed
+     * @param x column of the centre of the piece
+     * @param y row of the centre of the piece
+     */
+    default void piecePlaced(GamePiece gamePiece, int x, int y) {}
+
+    /**
+     * A piece could not be placed where the player wanted to put it
+     * @param gamePiece the piece
+     * @param x column of the centre of the piece
+     * @param y row of the centre of the piece
+     */
+    default void placementFailed(GamePiece gamePiece, int x, int y) {}
+
+    /**
+     * The current piece was rotated
+     * @param gamePiece the piece after rotating
+     * @param rotations number of quarter turns to the right
+     */
+    default void pieceRotated(GamePiece gamePiece, int rotations) {}
+
+    /**
+     * The current and the following piece were swapped
+     */
+    default void piecesSwapped() {}
+
+    /**
+     * Lines/rows were finished and are being cleared
+     * @param lineClear the lines/rows that were cleared
+     */
+    default void linesCleared(LineClear lineClear) {}
+
+    /**
+     * The score or the multiplier changed
+     * @param score the new score
+     * @param multiplier the new multiplier
+     */
+    default void scoreChanged(int score, int multiplier) {}
+
+    /**
+     * The level went up
+     * @param level the new level
+     */
+    default void levelChanged(int level) {}
+
+    /**
+     * The timer ran out and a life was lost
+     * @param lives lives left
+     */
+    default void lifeLost(int lives) {}
+
+    /**
+     * The last life was lost
+     */
+    default void gameOver() {}
+
+    /**
+     * The game was stopped before it was over, for example because the player left it
+     */
+    default void gameStopped() {}
+}
@@ -0,0 +1,42 @@
+package uk.ac.soton.comp1206.event;
+
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.GridChange;
+
+/**
+ * The Grid Listener is used to handle the event when a value inside a Grid changes. It passes the position of the block
+ * and its new value.
+ *
+ * Changes made in a batch (see Grid.begin()) are passed all at once when the batch is committed. By default they are
+ * handed to cellChanged one block at a time, listeners which can handle many blocks at once should override
+ * cellsChanged.
+ */
+public interface GridListener {
+
+    /**
+     * Handle a changed block
+     * @param x column of the block
+     * @param y row of the block
+     * @param value the new value of the block
+     */
+    public void cellChanged(int x, int y, int value);
+
+    /**
+     * Handle every block changed by a committed batch. The change is only valid during this call.
+     * @param change the changed blocks
+     */
+    public default void cellsChanged(GridChange change) {
+        Grid grid = change.getGrid();
+        long rows = change.getRows();
+        while (rows != 0) {
+            int y = Long.numberOfTrailingZeros(rows);
+            long row = change.getRow(y);
+            while (row != 0) {
+                int x = Long.numberOfTrailingZeros(row);
+                cellChanged(x, y, grid.get(x, y));
+                row &= row - 1;
+            }
+            rows &= rows - 1;
+        }
+    }
+}
@@ -1,10 +1,8 @@
 package uk.ac.soton.comp1206.event;
 
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
-
-import java.util.Set;
+import uk.ac.soton.comp1206.game.LineClear;
 
 public interface LineClearedListener {
 
-    public void clearLines(Set<GameBlockCoordinate> blockCoordinates);
+    public void clearLines(LineClear lineClear);
 }
@@ -1,26 +1,28 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import uk.ac.soton.comp1206.audio.Multimedia;
-import uk.ac.soton.comp1206.component.GameBlock;
-import uk.ac.soton.comp1206.component.GameBlockCoordinate;
+import uk.ac.soton.comp1206.event.GameListener;
 import uk.ac.soton.comp1206.event.GameLoopListener;
 import uk.ac.soton.comp1206.event.LineClearedListener;
 import uk.ac.soton.comp1206.event.NextPieceListener;
-import uk.ac.soton.comp1206.ui.GameWindow;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * The Game class handles the main logic, state and properties of the TetrECS game. Methods to manipulate the game state
  * and to handle actions made by the player should take place inside this class.
+ *
+ * The Game does not depend on JavaFX, audio or any threads. Time comes from a GameClock and everything that happens is
+ * reported to the attached listeners, so the same game can be played by the ChallengeScene or run headless in a
+ * simulation. Whoever drives the game is responsible for calling tick() (or gameLoop()) once the timer ran out, or
+ * lets a GameScheduler do it with schedule().
+ *
+ * Finished lines can be left on the grid for a moment before they are cleared, see setClearDelay(). The clear is then
+ * a step on the game's own timeline: tick() applies it once it is due, and it is applied straight away before the next
+ * piece is placed, so the grid is always consistent for the player.
  */
 public class Game {
 
@@ -41,6 +43,16 @@ public class Game {
      */
     protected final Grid grid;
 
+    /**
+     * Where the game gets the current time from
+     */
+    private final GameClock clock;
+
+    /**
+     * Where the pieces of this game come from
+     */
+    private final PieceSource pieceSource;
+
     /**
      * The current GamePiece which will be placed next
      */
@@ -53,21 +65,92 @@ public class Game {
 
     private LineClearedListener lineClearedListener;
 
-    private final IntegerProperty score = new SimpleIntegerProperty(this, "score", 0);
-    private final IntegerProperty level = new SimpleIntegerProperty(this, "level", 0);
-    private final IntegerProperty lives = new SimpleIntegerProperty(this, "lives", 3);
-    private final IntegerProperty multiplier = new SimpleIntegerProperty(this, "multiplier", 1);
+    /**
+     * Everyone following this game
+     */
+    private final List<GameListener> listeners = new ArrayList<>();
+
+    private int score = 0;
+    private int level = 0;
+    private int lives = 3;
+    private int multiplier = 1;
 
     private int timerDelay = 12_000;
-    private Timer timer = new Timer(true);
+
+    /**
+     * The time the current timer runs out at
+     */
+    private long deadline = Long.MAX_VALUE;
+
+    /**
+     * Runs tick() when the timer runs out, if the game is scheduled
+     */
+    private GameScheduler.Deadline timer;
+
+    /**
+     * How long finished lines stay on the grid before they are cleared, in milliseconds
+     */
+    private int clearDelay = 0;
+
+    /**
+     * The finished lines still waiting to be cleared, null if there are none
+     */
+    private LineClear pendingClear;
+
+    /**
+     * The time the pending clear is due at
+     */
+    private long clearAt = Long.MAX_VALUE;
+
+    /**
+     * Runs tick() when the pending clear is due, if the game is scheduled
+     */
+    private GameScheduler.Deadline clearStep;
+
     /**
      * Create a new game with the specified rows and columns. Creates a corresponding grid model.
      * @param cols number of columns
      * @param rows number of rows
      */
     public Game(int cols, int rows) {
+        this(cols, rows, GameClock.SYSTEM);
+    }
+
+    /**
+     * Create a new game with the specified rows and columns which takes its time from the given clock.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param clock clock to take the time from
+     */
+    public Game(int cols, int rows, GameClock clock) {
+        this(cols, rows, clock, new PieceSource());
+    }
+
+    /**
+     * Create a new game with the specified rows and columns which takes its time from the given clock and whose pieces
+     * always come in the same order for the same seed.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param clock clock to take the time from
+     * @param seed seed for the pieces
+     */
+    public Game(int cols, int rows, GameClock clock, long seed) {
+        this(cols, rows, clock, new PieceSource(seed));
+    }
+
+    /**
+     * Create a new game with the specified rows and columns which takes its time from the given clock and its pieces
+     * from the given source.
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param clock clock to take the time from
+     * @param pieceSource where the pieces come from
+     */
+    public Game(int cols, int rows, GameClock clock, PieceSource pieceSource) {
         this.cols = cols;
         this.rows = rows;
+        this.clock = clock;
+        this.pieceSource = pieceSource;
 
         //Create a new grid model to represent the game state
         this.grid = new Grid(cols,rows);
@@ -86,38 +169,44 @@ public class Game {
      */
     public void initialiseGame() {
         logger.info("Initialising game");
-        buildTimer();
+        if (gamePiece == null)
+            nextPiece();
+        resetTimer();
     }
 
     /**
      * Handle what should happen when a particular block is clicked
-     * @param gameBlock the block that was clicked
+     * @param x the column of the block that was clicked
+     * @param y the row of the block that was clicked
+     * @return whether the current piece was placed
      */
-    public void blockClicked(GameBlock gameBlock) {
-        //Get the position of this block
-        int x = gameBlock.getX();
-        int y = gameBlock.getY();
+    public boolean blockClicked(int x, int y) {
+        //lines finished by the last piece have to be gone before this one is placed
+        flushClear();
 
         //check whether this block can be placed
         if (!grid.canPlayPiece(this.gamePiece, x, y)) {
-            Multimedia.playAudio("fail.wav");
-            return;
+            for (GameListener listener : listeners)
+                listener.placementFailed(this.gamePiece, x, y);
+            return false;
         }
 
         //place the gamePiece, get a new one, and check whether columns should get deleted
         grid.playPiece(this.gamePiece, x, y);
-        Multimedia.playAudio("place.wav");
+        for (GameListener listener : listeners)
+            listener.piecePlaced(this.gamePiece, x, y);
         this.nextPiece();
-        this.afterPiece();
-        this.buildTimer();
+        this.afterPiece(x, y);
+        this.resetTimer();
+        return true;
     }
 
     /**
-     * Get a new GamePiece from the GamePiece class
-     * @return new random GamePiece
+     * Get a new GamePiece from the game's PieceSource
+     * @return the next GamePiece
      */
     public GamePiece spawnPiece() {
-        return GamePiece.createPiece((int) (Math.random()*15));
+        return GamePiece.createPiece(pieceSource.next());
     }
 
     /**
@@ -136,80 +225,97 @@ public class Game {
     }
 
     /**
-     * check whether a whole line/row is finished by checking whether we have the same amount of
-     * blocks as rows/columns if true increment the clearedLines,array for the whole line/row and
-     * at the end clear the grid at every point where the clearedLines array is bigger than 0
+     * check whether a line/row touched by the piece just placed at x and y is finished, using the fill counters the
+     * grid keeps. Only the three rows and columns around the centre of the piece can have become full. Every block on
+     * a finished line/row is cleared from the grid after the listeners were told about it, straight away or once the
+     * clear delay is over.
+     * @param x column the piece was placed at
+     * @param y row the piece was placed at
      */
-    public void afterPiece() {
-        int [][] clearedLines = new int [getCols()][getRows()];
-        int blocksPerCol = 0;
-        int lines = 0;
-        int blocks = 0;
+    public void afterPiece(int x, int y) {
+        long fullCols = 0;
+        long fullRows = 0;
 
         //check for columns
-        for (int i = 0; i < getCols(); i++) {
-            for (int j = 0; j < getRows(); j++){
-                if (grid.get(i, j) > 0)
-                    blocksPerCol++;
-            }
-            if (blocksPerCol == getCols()) {
-                for (int j = 0; j < getRows(); j++)
-                    clearedLines[i][j]++;
-                lines++;
-            }
-            blocksPerCol = 0;
-        }
+        for (int i = Math.max(x - 1, 0); i <= Math.min(x + 1, getCols() - 1); i++)
+            if (grid.isColumnFull(i))
+                fullCols |= 1L << i;
 
         //check for rows
-        for (int j = 0; j < getCols(); j++) {
-            for (int i = 0; i < getRows(); i++){
-                if (grid.get(i, j) > 0)
-                    blocksPerCol++;
-            }
-            if (blocksPerCol == getCols()) {
-                for (int i = 0; i < getRows(); i++)
-                    clearedLines[i][j]++;
-                lines++;
+        for (int j = Math.max(y - 1, 0); j <= Math.min(y + 1, getRows() - 1); j++)
+            if (grid.isRowFull(j))
+                fullRows |= 1L << j;
+
+        int lines = 0;
+        int blocks = 0;
+        if (fullCols != 0 || fullRows != 0) {
+            LineClear lineClear = new LineClear(fullRows, fullCols, getCols(), getRows());
+            lines = lineClear.getLines();
+            blocks = lineClear.getBlocks();
+
+            if (lineClearedListener != null)
+                lineClearedListener.clearLines(lineClear);
+            for (GameListener listener : listeners)
+                listener.linesCleared(lineClear);
+
+            //clear the grid, now or as a step on the timeline
+            flushClear();
+            if (clearDelay > 0) {
+                pendingClear = lineClear;
+                clearAt = clock.millis() + clearDelay;
+                if (clearStep != null)
+                    clearStep.arm(clearAt);
+            } else {
+                grid.clearLines(lineClear);
             }
-            blocksPerCol = 0;
         }
 
-        //clear the grid
-        Set<GameBlockCoordinate> blockCoordinates = new HashSet<>();
-        for (int i = 0; i < getCols(); i++)
-            for (int j = 0; j < getRows(); j++)
-                if (clearedLines[j][i] > 0) {
-                    blockCoordinates.add(new GameBlockCoordinate(j, i));
-                    blocks++;
-                }
-
-        lineClearedListener.clearLines(blockCoordinates);
-
         score(lines, blocks);
         changeMultiplier(lines > 0);
+        for (GameListener listener : listeners)
+            listener.scoreChanged(score, multiplier);
         changeLevel();
     }
 
+    /**
+     * Clear the finished lines waiting for the clear delay now, if there are any
+     */
+    public void flushClear() {
+        if (pendingClear == null)
+            return;
+        LineClear lineClear = pendingClear;
+        pendingClear = null;
+        clearAt = Long.MAX_VALUE;
+        if (clearStep != null)
+            clearStep.cancel();
+        grid.clearLines(lineClear);
+    }
+
+    /**
+     * Check whether finished lines are waiting to be cleared
+     * @return whether a clear is pending
+     */
+    public boolean isClearPending() {
+        return pendingClear != null;
+    }
+
     /**
      * @param lines amount of lines / rows cleared
      * @param blocks amount of blocks cleared
      */
     private void score(int lines, int blocks) {
-        score.set(score.get() + lines * blocks * 10 * multiplier.get());
+        score += lines * blocks * 10 * multiplier;
     }
 
     /**
-     * if a line is cleared increment and play clear sound, else reset
+     * if a line is cleared increment, else reset
      * @param isLinesCleared whether lines where cleared
      */
     private void changeMultiplier(boolean isLinesCleared) {
-        if (isLinesCleared) {
-            multiplier.set(multiplier.get() + 1);
-            Multimedia.playAudio("explode.wav");
-            Multimedia.playAudio("clear.wav");
-        }
+        if (isLinesCleared)
+            multiplier++;
         else
-            multiplier.set(1);
+            multiplier = 1;
     }
 
     /**
@@ -217,11 +323,12 @@ public class Game {
      * If it ever decreases something went wrong.
      */
     private void changeLevel() {
-        if (level.get() == score.get()/1000)
+        if (level == score/1000)
             return;
-        level.set(score.get()/1000);
-        timerDelay = Math.max(12_000 - (500 * level.get()), 2_500);
-        Multimedia.playAudio("level.wav");
+        level = score/1000;
+        timerDelay = Math.max(12_000 - (500 * level), 2_500);
+        for (GameListener listener : listeners)
+            listener.levelChanged(level);
     }
 
     /**
@@ -229,21 +336,25 @@ public class Game {
      * @param amountOfRotations 1 -> right, 3 -> left
      */
     public void rotateCurrentPiece(int amountOfRotations) {
-        gamePiece.rotate(amountOfRotations);
-        Multimedia.playAudio("rotate.wav");
-        nextPieceListener.nextPiece(this.gamePiece);
+        gamePiece = gamePiece.rotate(amountOfRotations);
+        for (GameListener listener : listeners)
+            listener.pieceRotated(this.gamePiece, amountOfRotations);
+        if(nextPieceListener != null)
+            nextPieceListener.nextPiece(this.gamePiece);
     }
 
     /**
-     * swap the Pieces by making use of a placeHolder and afterwards alarming the listeners
+     * swap the Pieces by making use of a placeHolder and afterwards alarming the listeners. Both pieces keep their
+     * rotation.
      */
     public void swapCurrentPiece() {
         logger.info("swapping Pieces");
 
-        GamePiece gamePiecePlaceholder = GamePiece.createPiece(gamePiece.getValue() - 1);
+        GamePiece gamePiecePlaceholder = gamePiece;
         this.gamePiece = followingPiece;
         followingPiece = gamePiecePlaceholder;
-        Multimedia.playAudio("rotate.wav");
+        for (GameListener listener : listeners)
+            listener.piecesSwapped();
 
         if(nextPieceListener != null)
             nextPieceListener.nextPiece(this.gamePiece);
@@ -252,34 +363,94 @@ public class Game {
     }
 
     /**
-     * if this method is called the old timer gets discarded, and we get a new one
-     * startGameLoop in ChallengeScene is added
-     * if this timer executes, it calls gameLoop.
+     * Let a scheduler call tick() whenever the timer runs out, instead of the caller
+     * @param scheduler the scheduler
+     * @param executor where to call tick(), which has to be the thread the game is played on
      */
-    public void buildTimer() {
-        gameLoopListener.startGameLoop(timerDelay, lives.get());
-        timer.cancel();
-        timer = new Timer(true);
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                Platform.runLater(() -> gameLoop());
-            }
-        }, timerDelay);
+    public void schedule(GameScheduler scheduler, Executor executor) {
+        if (timer != null)
+            timer.cancel();
+        if (clearStep != null)
+            clearStep.cancel();
+        timer = scheduler.createDeadline(clock, executor, this::tick);
+        clearStep = scheduler.createDeadline(clock, executor, this::tick);
+        if (deadline != Long.MAX_VALUE)
+            timer.arm(deadline);
+        if (clearAt != Long.MAX_VALUE)
+            clearStep.arm(clearAt);
     }
 
     /**
-     * decreases the lives, spawns a new piece, resets the multiplier and calls buildTimer again
+     * Stop the timer and any pending clear, for example when the game is left before it is over, and tell the
+     * listeners so they can finish whatever they were doing with the game
      */
-    private void gameLoop() {
-        lives.set(lives.get() - 1);
-        Multimedia.playAudio("lifelose.wav");
+    public void stop() {
+        logger.info("Stopping game");
+        deadline = Long.MAX_VALUE;
+        if (timer != null)
+            timer.cancel();
+        clearAt = Long.MAX_VALUE;
+        if (clearStep != null)
+            clearStep.cancel();
+        for (GameListener listener : listeners)
+            listener.gameStopped();
+    }
+
+    /**
+     * restart the timer from now, with the delay of the current level, and tell the gameLoopListener about it
+     */
+    public void resetTimer() {
+        deadline = clock.millis() + timerDelay;
+        if (timer != null)
+            timer.arm(deadline);
+        if (gameLoopListener != null)
+            gameLoopListener.startGameLoop(timerDelay, lives);
+    }
+
+    /**
+     * check the clock, clear the finished lines if they are due and run the game loop if the timer ran out
+     * @return whether the timer ran out
+     */
+    public boolean tick() {
+        long now = clock.millis();
+        if (now >= clearAt)
+            flushClear();
+        if (isOver() || now < deadline)
+            return false;
+        gameLoop();
+        return true;
+    }
+
+    /**
+     * decreases the lives, spawns a new piece, resets the multiplier and restarts the timer
+     */
+    public void gameLoop() {
+        lives--;
+        for (GameListener listener : listeners)
+            listener.lifeLost(lives);
         nextPiece();
         setMultiplier(1);
-        if (lives.get() != 0)
-            buildTimer();
-        else
-            gameLoopListener.startGameLoop(timerDelay, lives.get());
+        for (GameListener listener : listeners)
+            listener.scoreChanged(score, multiplier);
+        if (lives != 0)
+            resetTimer();
+        else {
+            deadline = Long.MAX_VALUE;
+            if (timer != null)
+                timer.cancel();
+            for (GameListener listener : listeners)
+                listener.gameOver();
+            if (gameLoopListener != null)
+                gameLoopListener.startGameLoop(timerDelay, lives);
+        }
+    }
+
+    /**
+     * Check whether all lives are lost
+     * @return whether the game is over
+     */
+    public boolean isOver() {
+        return lives <= 0;
     }
 
     /**
@@ -306,6 +477,71 @@ public class Game {
         return rows;
     }
 
+    /**
+     * Get the piece which will be placed next
+     * @return current piece
+     */
+    public GamePiece getCurrentPiece() {
+        return gamePiece;
+    }
+
+    /**
+     * Get the piece which comes after the current one
+     * @return following piece
+     */
+    public GamePiece getFollowingPiece() {
+        return followingPiece;
+    }
+
+    /**
+     * Get the clock this game takes its time from
+     * @return the clock
+     */
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Get where the pieces of this game come from
+     * @return the piece source
+     */
+    public PieceSource getPieceSource() {
+        return pieceSource;
+    }
+
+    /**
+     * Look at a piece coming after the following piece, without taking it
+     * @param depth 0 for the piece after the following piece, up to getPreview() - 1
+     * @return piece number
+     */
+    public int peekPiece(int depth) {
+        return pieceSource.peek(depth);
+    }
+
+    /**
+     * Get how many pieces after the following piece can be previewed
+     * @return preview depth
+     */
+    public int getPreview() {
+        return pieceSource.getPreview();
+    }
+
+    /**
+     * Add a listener which is told about everything happening in this game
+     * @param listener listener to add
+     */
+    public void addListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop telling the given listener about this game
+     * @param listener listener to remove
+     */
+    public void removeListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
     public void setNextPieceListener(NextPieceListener nextPieceListener){
         this.nextPieceListener = nextPieceListener;
     }
@@ -315,51 +551,35 @@ public class Game {
     }
 
     public int getScore() {
-        return score.get();
-    }
-
-    public IntegerProperty scoreProperty() {
         return score;
     }
 
     public void setScore(int score) {
-        this.score.set(score);
+        this.score = score;
     }
 
     public int getLevel() {
-        return level.get();
-    }
-
-    public IntegerProperty levelProperty() {
         return level;
     }
 
     public void setLevel(int level) {
-        this.level.set(level);
+        this.level = level;
     }
 
     public int getLives() {
-        return lives.get();
-    }
-
-    public IntegerProperty livesProperty() {
         return lives;
     }
 
     public void setLives(int lives) {
-        this.lives.set(lives);
-    }
-
-    public double getMultiplier() {
-        return multiplier.get();
+        this.lives = lives;
     }
 
-    public IntegerProperty multiplierProperty() {
+    public int getMultiplier() {
         return multiplier;
     }
 
     public void setMultiplier(int multiplier) {
-        this.multiplier.set(multiplier);
+        this.multiplier = multiplier;
     }
 
     public void setLineClearedListener(LineClearedListener lineClearedListener) {
@@ -374,6 +594,30 @@ public class Game {
         this.timerDelay = timerDelay;
     }
 
+    /**
+     * Get how long finished lines stay on the grid before they are cleared
+     * @return delay in milliseconds
+     */
+    public int getClearDelay() {
+        return clearDelay;
+    }
+
+    /**
+     * Set how long finished lines stay on the grid before they are cleared, 0 to clear them straight away
+     * @param clearDelay delay in milliseconds
+     */
+    public void setClearDelay(int clearDelay) {
+        this.clearDelay = clearDelay;
+    }
+
+    /**
+     * Get the time the current timer runs out at, according to the game's clock
+     * @return deadline in milliseconds
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
     public void setGameLoopListener(GameLoopListener gameLoopListener) {
         this.gameLoopListener = gameLoopListener;
     }
@@ -0,0 +1,19 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * The GameClock tells a Game what time it is. The default follows the system clock, but simulations and tests can
+ * supply their own clock to run the game as fast as they like.
+ */
+public interface GameClock {
+
+    /**
+     * A clock following the system time
+     */
+    GameClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * Get the current time
+     * @return time in milliseconds
+     */
+    long millis();
+}
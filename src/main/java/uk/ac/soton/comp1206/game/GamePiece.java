@@ -5,6 +5,9 @@ package uk.ac.soton.comp1206.game;
  *
  * The GamePiece class also contains a factory for producing a GamePiece of a particular shape, as specified by it's
  * number.
+ *
+ * GamePieces are immutable. Every piece exists exactly once in each of its four rotations, all created up front, and the
+ * factory and rotate() hand out those shared instances instead of building new ones.
  */
 public class GamePiece {
 
@@ -14,154 +17,157 @@ public class GamePiece {
     public static final int PIECES = 15;
 
     /**
-     * The 2D grid representation of the shape of this piece
+     * The names of all pieces, by piece number
      */
-    private int[][] blocks;
+    private static final String[] NAMES = {
+            "Line", "C", "Plus", "Dot", "Square", "L", "J", "S", "Z", "T", "X", "Corner", "Inverse Corner", "Diagonal",
+            "Double"
+    };
 
     /**
-     * The value of this piece
-     */
-    private final int value;
-
-    /**
-     * The name of this piece
+     * The block makeup of all pieces, by piece number, in their first rotation
      */
-    private final String name;
-
-    /**
-     * Create a new GamePiece of the specified piece number
-     * @param piece piece number
-     * @return the created GamePiece
-     */
-    public static GamePiece createPiece(int piece) {
-        switch (piece) {
+    private static final int[][][] SHAPES = {
             //Line
-            case 0 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Line", blocks, 1);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {0, 0, 0}},
             //C
-            case 1 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}};
-                return new GamePiece("C", blocks, 2);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {1, 0, 1}},
             //Plus
-            case 2 -> {
-                int[][] blocks = {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}};
-                return new GamePiece("Plus", blocks, 3);
-            }
-
+            {{0, 1, 0}, {1, 1, 1}, {0, 1, 0}},
             //Dot
-            case 3 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Dot", blocks, 4);
-            }
-
+            {{0, 0, 0}, {0, 1, 0}, {0, 0, 0}},
             //Square
-            case 4 -> {
-                int[][] blocks = {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Square", blocks, 5);
-            }
-
+            {{1, 1, 0}, {1, 1, 0}, {0, 0, 0}},
             //L
-            case 5 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}};
-                return new GamePiece("L", blocks, 6);
-            }
-
+            {{0, 0, 0}, {1, 1, 1}, {0, 0, 1}},
             //J
-            case 6 -> {
-                int[][] blocks = {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}};
-                return new GamePiece("J", blocks, 7);
-            }
-
+            {{0, 0, 1}, {1, 1, 1}, {0, 0, 0}},
             //S
-            case 7 -> {
-                int[][] blocks = {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}};
-                return new GamePiece("S", blocks, 8);
-            }
-
+            {{0, 0, 0}, {0, 1, 1}, {1, 1, 0}},
             //Z
-            case 8 -> {
-                int[][] blocks = {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}};
-                return new GamePiece("Z", blocks, 9);
-            }
-
+            {{1, 1, 0}, {0, 1, 1}, {0, 0, 0}},
             //T
-            case 9 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("T", blocks, 10);
-            }
-
+            {{1, 0, 0}, {1, 1, 0}, {1, 0, 0}},
             //X
-            case 10 -> {
-                int[][] blocks = {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}};
-                return new GamePiece("X", blocks, 11);
-            }
-
+            {{1, 0, 1}, {0, 1, 0}, {1, 0, 1}},
             //Corner
-            case 11 -> {
-                int[][] blocks = {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}};
-                return new GamePiece("Corner", blocks, 12);
-            }
-
+            {{0, 0, 0}, {1, 1, 0}, {1, 0, 0}},
             //Inverse Corner
-            case 12 -> {
-                int[][] blocks = {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Inverse Corner", blocks, 13);
-            }
-
+            {{1, 0, 0}, {1, 1, 0}, {0, 0, 0}},
             //Diagonal
-            case 13 -> {
-                int[][] blocks = {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}};
-                return new GamePiece("Diagonal", blocks, 14);
-            }
-
+            {{1, 0, 0}, {0, 1, 0}, {0, 0, 1}},
             //Double
-            case 14 -> {
-                int[][] blocks = {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}};
-                return new GamePiece("Double", blocks, 15);
+            {{0, 1, 0}, {0, 1, 0}, {0, 0, 0}}
+    };
+
+    /**
+     * Every piece in every rotation, indexed by piece number * 4 + rotation
+     */
+    private static final GamePiece[] ALL = new GamePiece[PIECES * 4];
+
+    static {
+        for (int piece = 0; piece < PIECES; piece++) {
+            int shape = 0;
+            for (int x = 0; x < 3; x++)
+                for (int y = 0; y < 3; y++)
+                    if (SHAPES[piece][x][y] != 0)
+                        shape |= bit(x, y);
+
+            for (int rotation = 0; rotation < 4; rotation++) {
+                ALL[piece * 4 + rotation] = new GamePiece(NAMES[piece], shape, piece + 1, rotation);
+                shape = rotateShape(shape);
             }
         }
+    }
 
-        //Not a valid piece number
-        throw new IndexOutOfBoundsException("No such piece: " + piece);
+    /**
+     * The shape of this piece, bit x * 3 + y is set when the block at x and y of its 3x3 grid is filled
+     */
+    private final int shape;
+
+    /**
+     * The value of this piece
+     */
+    private final int value;
+
+    /**
+     * The name of this piece
+     */
+    private final String name;
+
+    /**
+     * How many quarter turns this piece is rotated by, between 0 and 3
+     */
+    private final int rotation;
+
+    /**
+     * Get the GamePiece of the specified piece number
+     * @param piece piece number
+     * @return the GamePiece
+     */
+    public static GamePiece createPiece(int piece) {
+        return createPiece(piece, 0);
     }
 
     /**
-     * Create a new GamePiece of the specified piece number and rotation
+     * Get the GamePiece of the specified piece number and rotation
      * @param piece piece number
      * @param rotation number of times to rotate
-     * @return the created GamePiece
+     * @return the GamePiece
      */
     public static GamePiece createPiece(int piece, int rotation) {
-        var newPiece = createPiece(piece);
+        //Not a valid piece number
+        if (piece < 0 || piece >= PIECES)
+            throw new IndexOutOfBoundsException("No such piece: " + piece);
 
-        newPiece.rotate(rotation);
-        return newPiece;
+        return ALL[piece * 4 + Math.floorMod(rotation, 4)];
     }
 
     /**
-     * Create a new GamePiece with the given name, block makeup and value. Should not be called directly, only via the
-     * factory.
+     * Get the GamePiece with the given index, as returned by getIndex()
+     * @param index piece number * 4 + rotation
+     * @return the GamePiece
+     */
+    public static GamePiece fromIndex(int index) {
+        return ALL[index];
+    }
+
+    /**
+     * Create a new GamePiece with the given name, shape, value and rotation. Only called once per piece and rotation.
      * @param name name of the piece
-     * @param blocks block makeup of the piece
+     * @param shape block makeup of the piece as bits
      * @param value the value of this piece
+     * @param rotation quarter turns this piece is rotated by
      */
-    private GamePiece(String name, int[][] blocks, int value) {
+    private GamePiece(String name, int shape, int value, int rotation) {
         this.name = name;
-        this.blocks = blocks;
+        this.shape = shape;
         this.value = value;
+        this.rotation = rotation;
+    }
 
-        //Use the shape of the block to create a grid with either 0 (empty) or the value of this shape for each block.
-        for(int x = 0; x < blocks.length; x++) {
-            for (int y = 0; y < blocks[x].length; y++) {
-                if(blocks[x][y] == 0) continue;
-                blocks[x][y] = value;
-            }
-        }
+    /**
+     * Get the bit of a block in the 3x3 grid of a shape
+     * @param x column in the 3x3 grid
+     * @param y row in the 3x3 grid
+     * @return the bit
+     */
+    private static int bit(int x, int y) {
+        return 1 << (x * 3 + y);
+    }
+
+    /**
+     * Rotate a shape exactly once by rotating it's 3x3 grid, the block at x and y moves to 2 - y and x
+     * @param shape shape as bits
+     * @return rotated shape as bits
+     */
+    private static int rotateShape(int shape) {
+        int rotated = 0;
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++)
+                if ((shape & bit(x, y)) != 0)
+                    rotated |= bit(2 - y, x);
+        return rotated;
     }
 
     /**
@@ -173,41 +179,75 @@ public class GamePiece {
     }
 
     /**
-     * Get the block makeup of this piece
-     * @return 2D grid of the blocks representing the piece shape
+     * Get the number of this piece, as given to the factory
+     * @return piece number
      */
-    public int[][] getBlocks() {
-        return blocks;
+    public int getPiece() {
+        return value - 1;
     }
 
     /**
-     * Rotate this piece the given number of rotations
-     * @param rotations number of rotations
+     * Get how often this piece has been rotated
+     * @return quarter turns, between 0 and 3
      */
-    public void rotate(int rotations) {
-        for(int rotated = 0; rotated < rotations; rotated ++) {
-            rotate();
-        }
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * Get the index of this piece in this rotation, unique between all pieces and rotations
+     * @return piece number * 4 + rotation
+     */
+    public int getIndex() {
+        return getPiece() * 4 + rotation;
+    }
+
+    /**
+     * Get the shape of this piece as bits
+     * @return bit x * 3 + y is set when the block at x and y is filled
+     */
+    public int getShape() {
+        return shape;
     }
 
     /**
-     * Rotate this piece exactly once by rotating it's 3x3 grid
+     * Check whether a block of the 3x3 grid of this piece is filled
+     * @param x column in the 3x3 grid
+     * @param y row in the 3x3 grid
+     * @return whether the block is filled
      */
-    public void rotate() {
-        int[][] rotated = new int[blocks.length][blocks[0].length];
-        rotated[2][0] = blocks[0][0];
-        rotated[1][0] = blocks[0][1];
-        rotated[0][0] = blocks[0][2];
+    public boolean hasBlock(int x, int y) {
+        return (shape & bit(x, y)) != 0;
+    }
 
-        rotated[2][1] = blocks[1][0];
-        rotated[1][1] = blocks[1][1];
-        rotated[0][1] = blocks[1][2];
+    /**
+     * Get the block makeup of this piece. This is a new copy every time, prefer hasBlock().
+     * @return 2D grid of the blocks representing the piece shape, either 0 (empty) or the value of this piece
+     */
+    public int[][] getBlocks() {
+        int[][] blocks = new int[3][3];
+        for (int x = 0; x < 3; x++)
+            for (int y = 0; y < 3; y++)
+                if (hasBlock(x, y))
+                    blocks[x][y] = value;
+        return blocks;
+    }
 
-        rotated[2][2] = blocks[2][0];
-        rotated[1][2] = blocks[2][1];
-        rotated[0][2] = blocks[2][2];
+    /**
+     * Get this piece rotated the given number of rotations
+     * @param rotations number of rotations
+     * @return the rotated piece
+     */
+    public GamePiece rotate(int rotations) {
+        return ALL[getPiece() * 4 + Math.floorMod(rotation + rotations, 4)];
+    }
 
-        blocks = rotated;
+    /**
+     * Get this piece rotated exactly once
+     * @return the rotated piece
+     */
+    public GamePiece rotate() {
+        return rotate(1);
     }
 
 
@@ -0,0 +1,188 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The GameScheduler runs the timers of any number of games on one long-lived daemon thread, instead of every game
+ * starting a thread of its own. Each game gets a Deadline, which can be armed, re-armed and cancelled as often as needed
+ * without creating threads. When a deadline is reached, its callback is handed to the executor given for it, for
+ * example Platform::runLater to run it on the JavaFX thread.
+ *
+ * Deadlines are given in the time of a GameClock. The scheduler only uses real time to know when to look again; it runs
+ * the callback once the game's own clock says the deadline has passed.
+ */
+public class GameScheduler {
+
+    private static final Logger logger = LogManager.getLogger(GameScheduler.class);
+
+    /**
+     * The scheduler shared by all games, created when first needed
+     */
+    private static GameScheduler shared;
+
+    /**
+     * The thread all deadlines are scheduled on
+     */
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Create a new scheduler with its own thread
+     */
+    public GameScheduler() {
+        executor = new ScheduledThreadPoolExecutor(1, (runnable) -> {
+            Thread thread = new Thread(runnable, "Game Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //Deadlines are re-armed on every move, so do not let the cancelled ones pile up in the queue
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Get the scheduler shared by all games
+     * @return the shared scheduler
+     */
+    public static synchronized GameScheduler getShared() {
+        if (shared == null) {
+            logger.info("Starting shared game scheduler");
+            shared = new GameScheduler();
+        }
+        return shared;
+    }
+
+    /**
+     * Create a new deadline, which is not armed yet
+     * @param clock the clock the deadline is given in
+     * @param callbackExecutor where to run the callback
+     * @param callback what to run once the deadline is reached
+     * @return the deadline
+     */
+    public Deadline createDeadline(GameClock clock, Executor callbackExecutor, Runnable callback) {
+        return new Deadline(clock, callbackExecutor, callback);
+    }
+
+    /**
+     * Get the number of deadlines currently armed on this scheduler
+     * @return number of deadlines waiting
+     */
+    public int getPending() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stop the scheduler. Deadlines which are still armed never run.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A deadline of a single game
+     */
+    public class Deadline {
+
+        private final GameClock clock;
+        private final Executor callbackExecutor;
+        private final Runnable callback;
+
+        /**
+         * The time the deadline is armed for, Long.MAX_VALUE when not armed
+         */
+        private long at = Long.MAX_VALUE;
+
+        /**
+         * Counts every arm and cancel, so a callback which was already on its way when the deadline changed is dropped
+         */
+        private long generation = 0;
+
+        /**
+         * The scheduled check, if armed
+         */
+        private ScheduledFuture<?> future;
+
+        private Deadline(GameClock clock, Executor callbackExecutor, Runnable callback) {
+            this.clock = clock;
+            this.callbackExecutor = callbackExecutor;
+            this.callback = callback;
+        }
+
+        /**
+         * Arm the deadline for the given time, replacing the time it was armed for before
+         * @param at time according to the clock
+         */
+        public synchronized void arm(long at) {
+            cancel();
+            this.at = at;
+            schedule(generation);
+        }
+
+        /**
+         * Disarm the deadline, the callback does not run until it is armed again
+         */
+        public synchronized void cancel() {
+            generation++;
+            at = Long.MAX_VALUE;
+            if (future != null) {
+                future.cancel(false);
+                future = null;
+            }
+        }
+
+        /**
+         * Check whether the deadline is armed
+         * @return whether it is armed
+         */
+        public synchronized boolean isArmed() {
+            return at != Long.MAX_VALUE;
+        }
+
+        /**
+         * Get the time the deadline is armed for
+         * @return time according to the clock, Long.MAX_VALUE when not armed
+         */
+        public synchronized long getAt() {
+            return at;
+        }
+
+        /**
+         * Schedule a check for when the deadline should have been reached
+         * @param expected the generation the check belongs to
+         */
+        private void schedule(long expected) {
+            long delay = Math.max(at - clock.millis(), 0);
+            future = executor.schedule(() -> fire(expected), delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Check whether the deadline was reached, and if so hand the callback to the executor
+         * @param expected the generation the check belongs to
+         */
+        private void fire(long expected) {
+            synchronized (this) {
+                if (expected != generation)
+                    return;
+                //The game's clock is not there yet, look again later
+                if (clock.millis() < at) {
+                    schedule(expected);
+                    return;
+                }
+                future = null;
+                at = Long.MAX_VALUE;
+            }
+
+            callbackExecutor.execute(() -> {
+                synchronized (this) {
+                    if (expected != generation)
+                        return;
+                }
+                callback.run();
+            });
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package uk.ac.soton.comp1206.game;
 
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
+import uk.ac.soton.comp1206.event.GridListener;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The Grid is a model which holds the state of a game board. It is made up of a set of Integer values arranged in a 2D
  * arrow, with rows and columns.
  *
- * Each value inside the Grid is an IntegerProperty can be bound to enable modification and display of the contents of
- * the grid.
+ * The values are stored packed: the occupancy of every row is a long bitmask (bit x is set when column x is filled) and
+ * the colour of every cell is kept in a compact byte array. Nothing in here is a JavaFX property, observers such as the
+ * GridPropertyView register a GridListener and are told about a cell only when its value actually changes.
+ *
+ * Updates can be grouped into a batch with begin() and commit(). Listeners are then told once, when the batch is
+ * committed, about every block the batch changed, instead of once per block. Placing a piece and clearing lines are
+ * batches of their own.
  *
  * The Grid contains functions related to modifying the model, for example, placing a piece inside the grid.
  *
@@ -16,6 +23,11 @@ import javafx.beans.property.SimpleIntegerProperty;
  */
 public class Grid {
 
+    /**
+     * The biggest number of rows or columns a grid can have, every row has to fit into a single long
+     */
+    public static final int MAX_SIZE = Long.SIZE;
+
     /**
      * The number of columns in this grid
      */
@@ -27,9 +39,45 @@ public class Grid {
     private final int rows;
 
     /**
-     * The grid is a 2D arrow with rows and columns of SimpleIntegerProperties.
+     * One bitmask per row, bit x is set when the block in column x is filled. Row y is stored at index y + 1, with an
+     * always empty row above and below, so placements can read the rows around their centre without bounds checks.
+     */
+    private final long[] occupancy;
+
+    /**
+     * The precomputed masks of every placement on a grid of this size
+     */
+    private final PlacementTable placements;
+
+    /**
+     * The value of every block, stored row by row (index = y * cols + x)
+     */
+    private final byte[] values;
+
+    /**
+     * Number of filled blocks in every row
      */
-    private final SimpleIntegerProperty[][] grid;
+    private final int[] rowFill;
+
+    /**
+     * Number of filled blocks in every column
+     */
+    private final int[] colFill;
+
+    /**
+     * Everyone who wants to know when a value in this grid changes
+     */
+    private final List<GridListener> listeners = new ArrayList<>();
+
+    /**
+     * The blocks changed by the current batch
+     */
+    private final GridChange change;
+
+    /**
+     * Number of batches begun and not committed yet, batches can be nested
+     */
+    private int batches = 0;
 
     /**
      * Create a new Grid with the specified number of columns and rows and initialise them
@@ -37,18 +85,20 @@ public class Grid {
      * @param rows number of rows
      */
     public Grid(int cols, int rows) {
+        if (cols < 1 || cols > MAX_SIZE || rows < 1 || rows > MAX_SIZE)
+            throw new IllegalArgumentException("Grid must be between 1x1 and " + MAX_SIZE + "x" + MAX_SIZE + ": " + cols + "x" + rows);
+
         this.cols = cols;
         this.rows = rows;
 
-        //Create the grid itself
-        grid = new SimpleIntegerProperty[cols][rows];
+        //Every block starts empty
+        occupancy = new long[rows + 2];
+        values = new byte[cols * rows];
+        rowFill = new int[rows];
+        colFill = new int[cols];
 
-        //Add a SimpleIntegerProperty to every block in the grid
-        for(var y = 0; y < rows; y++) {
-            for(var x = 0; x < cols; x++) {
-                grid[x][y] = new SimpleIntegerProperty(0);
-            }
-        }
+        placements = PlacementTable.forSize(cols, rows);
+        change = new GridChange(this);
     }
 
     /**
@@ -60,17 +110,48 @@ public class Grid {
      * @return whether we can place the block
      */
     public boolean canPlayPiece(GamePiece gamePiece, int x, int y) {
-        //make sure we place the piece from its center
-        x = x - 1;
-        y = y - 1;
+        return placements.fits(occupancy, PlacementTable.shapeOf(gamePiece), x, y);
+    }
+
+    /**
+     * check whether a piece in a given shape (see PlacementTable) fits at the given position
+     * @param shape shape index
+     * @param x the x position
+     * @param y the y position
+     * @return whether the shape can be placed
+     */
+    public boolean canPlayShape(int shape, int x, int y) {
+        return placements.fits(occupancy, shape, x, y);
+    }
+
+    /**
+     * work out how many lines/rows would be finished by placing a shape at the given position, without placing it.
+     * The shape has to fit there.
+     * @param shape shape index
+     * @param x the x position
+     * @param y the y position
+     * @return number of lines/rows which would be finished
+     */
+    public int linesClearedBy(int shape, int x, int y) {
+        long full = -1L >>> (MAX_SIZE - cols);
+        long above = placements.getMask(shape, x, 0);
+        long centre = placements.getMask(shape, x, 1);
+        long below = placements.getMask(shape, x, 2);
 
-        int [][] blocks = gamePiece.getBlocks();
-        for (int i = 0; i < 3; i++)
-            for (int j = 0; j < 3; j++)
-                if (blocks[i][j] > 0 && get(x + i, y + j) != 0 )
-                    return false;
+        int lines = 0;
+        if (above != 0 && (occupancy[y] | above) == full)
+            lines++;
+        if (centre != 0 && (occupancy[y + 1] | centre) == full)
+            lines++;
+        if (below != 0 && (occupancy[y + 2] | below) == full)
+            lines++;
 
-        return true;
+        for (int i = Math.max(x - 1, 0); i <= Math.min(x + 1, cols - 1); i++) {
+            int covered = (int) ((above >>> i & 1) + (centre >>> i & 1) + (below >>> i & 1));
+            if (covered != 0 && colFill[i] + covered == rows)
+                lines++;
+        }
+        return lines;
     }
 
     /**
@@ -80,51 +161,189 @@ public class Grid {
      * @param y the y position
      */
     public void playPiece(GamePiece gamePiece, int x, int y) {
-        //make sure we place the piece from its center
-        x = x - 1;
-        y = y - 1;
+        int shape = PlacementTable.shapeOf(gamePiece);
+        if (!placements.isInside(shape, x, y))
+            throw new IndexOutOfBoundsException("Piece " + gamePiece + " does not fit at " + x + "," + y);
 
         int value = gamePiece.getValue();
-        int [][] blocks = gamePiece.getBlocks();
-        for (int i = 0; i < 3; i++)
-            for (int j = 0; j < 3; j++)
-                if (blocks[i][j] > 0)
-                    set(x + i, y + j, value);
+        begin();
+        try {
+            for (int row = 0; row < 3; row++) {
+                long mask = placements.getMask(shape, x, row);
+                while (mask != 0) {
+                    set(Long.numberOfTrailingZeros(mask), y + row - 1, value);
+                    mask &= mask - 1;
+                }
+            }
+        } finally {
+            commit();
+        }
     }
+
     /**
-     * Get the Integer property contained inside the grid at a given row and column index. Can be used for binding.
-     * @param x column
-     * @param y row
-     * @return the IntegerProperty at the given x and y in this grid
+     * empty every block on the finished lines/rows
+     * @param lineClear the lines/rows to clear
      */
-    public IntegerProperty getGridProperty(int x, int y) {
-        return grid[x][y];
+    public void clearLines(LineClear lineClear) {
+        begin();
+        try {
+            long fullRows = lineClear.getRows();
+            while (fullRows != 0) {
+                int y = Long.numberOfTrailingZeros(fullRows);
+                for (int x = 0; x < cols; x++)
+                    set(x, y, 0);
+                fullRows &= fullRows - 1;
+            }
+
+            long fullCols = lineClear.getColumns();
+            while (fullCols != 0) {
+                int x = Long.numberOfTrailingZeros(fullCols);
+                for (int y = 0; y < rows; y++)
+                    set(x, y, 0);
+                fullCols &= fullCols - 1;
+            }
+        } finally {
+            commit();
+        }
     }
 
     /**
-     * Update the value at the given x and y index within the grid
+     * Start a batch of updates. Until the matching commit(), changes are collected instead of being passed to the
+     * listeners. Batches can be nested, only committing the outermost one tells the listeners.
+     */
+    public void begin() {
+        batches++;
+    }
+
+    /**
+     * Finish a batch of updates. When this is the outermost batch, every listener is told once about all the blocks
+     * which changed during it. Listeners must not change the grid while they are being told.
+     */
+    public void commit() {
+        if (batches == 0)
+            throw new IllegalStateException("No batch to commit");
+        if (--batches > 0)
+            return;
+
+        try {
+            change.dropUnchanged();
+            if (!change.isEmpty())
+                for (GridListener listener : listeners)
+                    listener.cellsChanged(change);
+        } finally {
+            change.clear();
+        }
+    }
+
+    /**
+     * Update the value at the given x and y index within the grid. Listeners are only told if the value changed, and
+     * only once the batch is committed when inside a batch.
      * @param x column
      * @param y row
      * @param value the new value
+     * @throws IndexOutOfBoundsException if there is no such block
      */
     public void set(int x, int y, int value) {
-        grid[x][y].set(value);
+        if (x < 0 || x >= cols || y < 0 || y >= rows)
+            throw new IndexOutOfBoundsException("No block at " + x + "," + y + " in a " + cols + "x" + rows + " grid");
+
+        int index = y * cols + x;
+        if (values[index] == value)
+            return;
+
+        if (batches > 0)
+            change.add(x, y, values[index]);
+
+        //Keep the occupancy and the fill counters in step when a block gets filled or emptied
+        if (value == 0) {
+            occupancy[y + 1] &= ~(1L << x);
+            rowFill[y]--;
+            colFill[x]--;
+        } else if (values[index] == 0) {
+            occupancy[y + 1] |= 1L << x;
+            rowFill[y]++;
+            colFill[x]++;
+        }
+        values[index] = (byte) value;
+
+        if (batches == 0)
+            for (GridListener listener : listeners)
+                listener.cellChanged(x, y, value);
     }
 
     /**
      * Get the value represented at the given x and y index within the grid
      * @param x column
      * @param y row
-     * @return the value
+     * @return the value, or -1 if there is no such block
      */
     public int get(int x, int y) {
-        try {
-            //Get the value held in the property at the x and y index provided
-            return grid[x][y].get();
-        } catch (ArrayIndexOutOfBoundsException e) {
-            //No such index
+        //No such index
+        if (x < 0 || x >= cols || y < 0 || y >= rows)
             return -1;
-        }
+
+        return values[y * cols + x];
+    }
+
+    /**
+     * Get the occupancy of a whole row as a bitmask
+     * @param y row
+     * @return bitmask with bit x set when column x is filled
+     */
+    public long getRowMask(int y) {
+        return occupancy[y + 1];
+    }
+
+    /**
+     * Get how many blocks of a row are filled
+     * @param y row
+     * @return number of filled blocks
+     */
+    public int getRowFill(int y) {
+        return rowFill[y];
+    }
+
+    /**
+     * Get how many blocks of a column are filled
+     * @param x column
+     * @return number of filled blocks
+     */
+    public int getColumnFill(int x) {
+        return colFill[x];
+    }
+
+    /**
+     * Check whether every block of a row is filled
+     * @param y row
+     * @return whether the row is full
+     */
+    public boolean isRowFull(int y) {
+        return rowFill[y] == cols;
+    }
+
+    /**
+     * Check whether every block of a column is filled
+     * @param x column
+     * @return whether the column is full
+     */
+    public boolean isColumnFull(int x) {
+        return colFill[x] == rows;
+    }
+
+    /**
+     * Add a listener which is told whenever a value inside the grid changes
+     * @param listener listener to add
+     */
+    public void addListener(GridListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop telling the given listener about changes
+     * @param listener listener to remove
+     */
+    public void removeListener(GridListener listener) {
+        listeners.remove(listener);
     }
 
     /**
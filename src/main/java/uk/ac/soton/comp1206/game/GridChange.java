@@ -0,0 +1,146 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A GridChange is the set of blocks changed by one batch of updates to a Grid, see Grid.begin() and Grid.commit().
+ * The changed blocks are held as one bitmask per row, like the occupancy of the Grid itself.
+ *
+ * Every Grid reuses a single GridChange for all its batches, so it is only valid while the listeners are being told
+ * about it and must not be kept.
+ */
+public class GridChange {
+
+    /**
+     * The grid that changed
+     */
+    private final Grid grid;
+
+    /**
+     * One bitmask per row, bit x is set when the block in column x changed
+     */
+    private final long[] cells;
+
+    /**
+     * The value every changed block had before the batch, stored row by row (index = y * cols + x)
+     */
+    private final byte[] before;
+
+    /**
+     * Bit y is set when any block in row y changed
+     */
+    private long rows = 0;
+
+    /**
+     * Number of changed blocks
+     */
+    private int count = 0;
+
+    /**
+     * Create a new, empty change for the given grid
+     * @param grid the grid
+     */
+    GridChange(Grid grid) {
+        this.grid = grid;
+        this.cells = new long[grid.getRows()];
+        this.before = new byte[grid.getCols() * grid.getRows()];
+    }
+
+    /**
+     * Remember that a block is about to change, the first time it does in this batch
+     * @param x column
+     * @param y row
+     * @param value the value of the block before the change
+     */
+    void add(int x, int y, int value) {
+        if ((cells[y] >>> x & 1) != 0)
+            return;
+        cells[y] |= 1L << x;
+        before[y * grid.getCols() + x] = (byte) value;
+        rows |= 1L << y;
+        count++;
+    }
+
+    /**
+     * Forget the blocks which ended the batch with the value they started with, for example a block that was filled
+     * and emptied again
+     */
+    void dropUnchanged() {
+        long pending = rows;
+        while (pending != 0) {
+            int y = Long.numberOfTrailingZeros(pending);
+            long row = cells[y];
+            while (row != 0) {
+                int x = Long.numberOfTrailingZeros(row);
+                if (before[y * grid.getCols() + x] == grid.get(x, y)) {
+                    cells[y] &= ~(1L << x);
+                    count--;
+                }
+                row &= row - 1;
+            }
+            if (cells[y] == 0)
+                rows &= ~(1L << y);
+            pending &= pending - 1;
+        }
+    }
+
+    /**
+     * Empty the change, ready for the next batch
+     */
+    void clear() {
+        while (rows != 0) {
+            cells[Long.numberOfTrailingZeros(rows)] = 0;
+            rows &= rows - 1;
+        }
+        count = 0;
+    }
+
+    /**
+     * Get the grid that changed
+     * @return the grid
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Get the rows with changed blocks
+     * @return bitmask with bit y set when any block in row y changed
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the changed blocks of a row
+     * @param y row
+     * @return bitmask with bit x set when the block in column x changed
+     */
+    public long getRow(int y) {
+        return cells[y];
+    }
+
+    /**
+     * Check whether a block changed
+     * @param x column
+     * @param y row
+     * @return whether the block changed
+     */
+    public boolean contains(int x, int y) {
+        return (cells[y] >>> x & 1) != 0;
+    }
+
+    /**
+     * Get the number of changed blocks
+     * @return number of changed blocks
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Check whether no block changed
+     * @return whether the change is empty
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+}
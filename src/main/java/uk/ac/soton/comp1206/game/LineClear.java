@@ -0,0 +1,86 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A LineClear describes the lines/rows which were finished by a single placement. The finished rows and columns are
+ * held as bitmasks, so it works for any grid up to Grid.MAX_SIZE in either direction.
+ */
+public class LineClear {
+
+    /**
+     * Bit y is set when row y was finished
+     */
+    private final long rows;
+
+    /**
+     * Bit x is set when column x was finished
+     */
+    private final long cols;
+
+    /**
+     * Number of columns in the grid the lines were cleared from
+     */
+    private final int gridCols;
+
+    /**
+     * Number of rows in the grid the lines were cleared from
+     */
+    private final int gridRows;
+
+    /**
+     * Create a new LineClear
+     * @param rows bitmask of the finished rows
+     * @param cols bitmask of the finished columns
+     * @param gridCols number of columns in the grid
+     * @param gridRows number of rows in the grid
+     */
+    public LineClear(long rows, long cols, int gridCols, int gridRows) {
+        this.rows = rows;
+        this.cols = cols;
+        this.gridCols = gridCols;
+        this.gridRows = gridRows;
+    }
+
+    /**
+     * Get the finished rows
+     * @return bitmask with bit y set when row y was finished
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the finished columns
+     * @return bitmask with bit x set when column x was finished
+     */
+    public long getColumns() {
+        return cols;
+    }
+
+    /**
+     * Get the number of lines/rows which were finished
+     * @return number of lines
+     */
+    public int getLines() {
+        return Long.bitCount(rows) + Long.bitCount(cols);
+    }
+
+    /**
+     * Get the number of blocks which are cleared, counting blocks where a row and a column cross only once
+     * @return number of blocks
+     */
+    public int getBlocks() {
+        int fullRows = Long.bitCount(rows);
+        int fullCols = Long.bitCount(cols);
+        return fullRows * gridCols + fullCols * gridRows - fullRows * fullCols;
+    }
+
+    /**
+     * Check whether a block is cleared
+     * @param x column
+     * @param y row
+     * @return whether the block is on a finished line/row
+     */
+    public boolean contains(int x, int y) {
+        return (rows >>> y & 1) != 0 || (cols >>> x & 1) != 0;
+    }
+}
@@ -0,0 +1,46 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A GameClock which only moves when told to. Used to run games as fast as possible, for example in simulations, where
+ * waiting for a timer to run out is just a jump of the clock.
+ */
+public class ManualClock implements GameClock {
+
+    /**
+     * The current time
+     */
+    private long now;
+
+    /**
+     * Create a new clock starting at the given time
+     * @param start start time in milliseconds
+     */
+    public ManualClock(long start) {
+        this.now = start;
+    }
+
+    /**
+     * Get the current time
+     * @return time in milliseconds
+     */
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    /**
+     * Move the clock to the given time, it never goes backwards
+     * @param time time in milliseconds
+     */
+    public void set(long time) {
+        now = Math.max(now, time);
+    }
+
+    /**
+     * Move the clock forwards
+     * @param millis milliseconds to move by
+     */
+    public void advance(long millis) {
+        set(now + millis);
+    }
+}
@@ -0,0 +1,96 @@
+package uk.ac.soton.comp1206.game;
+
+/**
+ * A Move is what a player decides to do with the current piece: optionally swap it with the following piece, rotate it
+ * and place it centred on a block.
+ */
+public class Move {
+
+    /**
+     * Column to place the piece at
+     */
+    private final int x;
+
+    /**
+     * Row to place the piece at
+     */
+    private final int y;
+
+    /**
+     * Quarter turns to the right before placing
+     */
+    private final int rotations;
+
+    /**
+     * Whether to swap the current and following piece first
+     */
+    private final boolean swap;
+
+    /**
+     * Create a new Move
+     * @param x column to place the piece at
+     * @param y row to place the piece at
+     * @param rotations quarter turns to the right before placing
+     * @param swap whether to swap the current and following piece first
+     */
+    public Move(int x, int y, int rotations, boolean swap) {
+        this.x = x;
+        this.y = y;
+        this.rotations = rotations;
+        this.swap = swap;
+    }
+
+    /**
+     * Play this move in the given game
+     * @param game the game
+     * @return whether the piece was placed
+     */
+    public boolean play(Game game) {
+        if (swap)
+            game.swapCurrentPiece();
+        if (rotations > 0)
+            game.rotateCurrentPiece(rotations);
+        return game.blockClicked(x, y);
+    }
+
+    /**
+     * Get the column to place the piece at
+     * @return column
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Get the row to place the piece at
+     * @return row
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Get the quarter turns to the right before placing
+     * @return rotations
+     */
+    public int getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Get whether the current and following piece are swapped first
+     * @return whether to swap
+     */
+    public boolean isSwap() {
+        return swap;
+    }
+
+    /**
+     * Return a string representation of this move
+     * @return string representation
+     */
+    @Override
+    public String toString() {
+        return "Move [x = " + x + ", y = " + y + ", rotations = " + rotations + ", swap = " + swap + "]";
+    }
+}
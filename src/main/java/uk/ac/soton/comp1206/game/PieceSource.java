@@ -0,0 +1,166 @@
+package uk.ac.soton.comp1206.game;
+
+import java.util.SplittableRandom;
+
+/**
+ * The PieceSource decides which pieces a game gets and in which order. The same seed always gives the same pieces, and
+ * a source can be split into an independent source for another game or thread without any shared state. Every source
+ * knows its seed, so the pieces of any game can be dealt again, for example when playing back a replay.
+ *
+ * A source looks a number of pieces ahead, so the game can preview more than just the following piece. In bag mode every
+ * piece is dealt exactly once from a shuffled bag before the bag is refilled, instead of being drawn independently.
+ */
+public class PieceSource {
+
+    /**
+     * The seed this source started from
+     */
+    private final long seed;
+
+    /**
+     * Random numbers for this source only
+     */
+    private final SplittableRandom random;
+
+    /**
+     * Number of pieces known in advance
+     */
+    private final int preview;
+
+    /**
+     * Whether pieces are dealt from a shuffled bag
+     */
+    private final boolean bag;
+
+    /**
+     * The upcoming piece numbers, a ring buffer which always holds preview pieces
+     */
+    private final int[] upcoming;
+
+    /**
+     * Position of the next piece in upcoming
+     */
+    private int head = 0;
+
+    /**
+     * The current bag, only used in bag mode
+     */
+    private final int[] bagPieces = new int[GamePiece.PIECES];
+
+    /**
+     * Position of the next piece in the bag, the bag is empty when this reached the end
+     */
+    private int bagIndex = GamePiece.PIECES;
+
+    /**
+     * Create a new source which is different every time
+     */
+    public PieceSource() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Create a new source with the given seed which draws every piece independently and previews one piece
+     * @param seed seed of the source
+     */
+    public PieceSource(long seed) {
+        this(seed, 1, false);
+    }
+
+    /**
+     * Create a new source with the given seed
+     * @param seed seed of the source
+     * @param preview number of pieces to know in advance, at least one
+     * @param bag whether to deal pieces from a shuffled bag
+     */
+    public PieceSource(long seed, int preview, boolean bag) {
+        if (preview < 1)
+            throw new IllegalArgumentException("Preview must be at least 1: " + preview);
+
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+        this.preview = preview;
+        this.bag = bag;
+        this.upcoming = new int[preview];
+        for (int i = 0; i < preview; i++)
+            upcoming[i] = draw();
+    }
+
+    /**
+     * Create a new, independent source with the same settings. Its pieces are unrelated to the pieces of this source,
+     * but the same for every run starting from the same seed.
+     * @return the new source
+     */
+    public PieceSource split() {
+        return new PieceSource(random.nextLong(), preview, bag);
+    }
+
+    /**
+     * Take the next piece
+     * @return piece number
+     */
+    public int next() {
+        int piece = upcoming[head];
+        upcoming[head] = draw();
+        head = (head + 1) % preview;
+        return piece;
+    }
+
+    /**
+     * Look at an upcoming piece without taking it
+     * @param depth 0 for the piece next() returns, up to getPreview() - 1
+     * @return piece number
+     */
+    public int peek(int depth) {
+        if (depth < 0 || depth >= preview)
+            throw new IndexOutOfBoundsException("Can only preview " + preview + " pieces: " + depth);
+        return upcoming[(head + depth) % preview];
+    }
+
+    /**
+     * Get the seed this source started from
+     * @return seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the number of pieces known in advance
+     * @return preview depth
+     */
+    public int getPreview() {
+        return preview;
+    }
+
+    /**
+     * Check whether pieces are dealt from a shuffled bag
+     * @return whether in bag mode
+     */
+    public boolean isBag() {
+        return bag;
+    }
+
+    /**
+     * Draw a new piece number
+     * @return piece number
+     */
+    private int draw() {
+        if (!bag)
+            return random.nextInt(GamePiece.PIECES);
+
+        if (bagIndex == GamePiece.PIECES) {
+            //Refill and shuffle the bag
+            for (int i = 0; i < GamePiece.PIECES; i++)
+                bagPieces[i] = i;
+            for (int i = GamePiece.PIECES - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = bagPieces[i];
+                bagPieces[i] = bagPieces[j];
+                bagPieces[j] = swap;
+            }
+            bagIndex = 0;
+        }
+        return bagPieces[bagIndex++];
+    }
+}
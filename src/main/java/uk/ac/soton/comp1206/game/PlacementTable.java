@@ -0,0 +1,177 @@
+package uk.ac.soton.comp1206.game;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The PlacementTable holds the occupancy mask of every piece, in every rotation, at every position of a grid of a given
+ * size. It is built once per grid size and shared between all grids of that size.
+ *
+ * A placement is centred on the middle block of the piece's 3x3 shape, so it covers the row above, the row itself and
+ * the row below. For each piece, rotation and column the table stores those three row masks, and for each piece,
+ * rotation and column a bitmask of the rows where the whole piece stays inside the grid. Placements which overhang an
+ * edge are therefore rejected by looking up a single bit, and legality of the rest is an AND of the masks against the
+ * occupancy of the grid.
+ */
+public class PlacementTable {
+
+    private static final Logger logger = LogManager.getLogger(PlacementTable.class);
+
+    /**
+     * Number of different shapes, every piece in each of its four rotations
+     */
+    public static final int SHAPES = GamePiece.PIECES * 4;
+
+    /**
+     * Tables already built, keyed by grid size
+     */
+    private static final Map<Integer, PlacementTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Number of columns in the grids this table is for
+     */
+    private final int cols;
+
+    /**
+     * Number of rows in the grids this table is for
+     */
+    private final int rows;
+
+    /**
+     * Three row masks (row above, centre row, row below) for every shape and column.
+     * Index ((shape * cols) + x) * 3 + row
+     */
+    private final long[] masks;
+
+    /**
+     * For every shape and column, bit y is set when the piece centred on (x, y) lies inside the grid.
+     * Index (shape * cols) + x
+     */
+    private final long[] valid;
+
+    /**
+     * Get the table for grids of the given size, building it the first time it is needed
+     * @param cols number of columns
+     * @param rows number of rows
+     * @return the placement table
+     */
+    public static PlacementTable forSize(int cols, int rows) {
+        return tables.computeIfAbsent(cols * (Grid.MAX_SIZE + 1) + rows, (key) -> new PlacementTable(cols, rows));
+    }
+
+    /**
+     * Build the table for the given grid size
+     * @param cols number of columns
+     * @param rows number of rows
+     */
+    private PlacementTable(int cols, int rows) {
+        logger.info("Building placement table: {} x {}", cols, rows);
+        this.cols = cols;
+        this.rows = rows;
+        this.masks = new long[SHAPES * cols * 3];
+        this.valid = new long[SHAPES * cols];
+
+        for (int shape = 0; shape < SHAPES; shape++) {
+            GamePiece gamePiece = GamePiece.fromIndex(shape);
+
+            //Work out which offsets from the centre the piece actually uses
+            int minX = 1, maxX = -1, minY = 1, maxY = -1;
+            for (int i = 0; i < 3; i++)
+                for (int j = 0; j < 3; j++)
+                    if (gamePiece.hasBlock(i, j)) {
+                        minX = Math.min(minX, i - 1);
+                        maxX = Math.max(maxX, i - 1);
+                        minY = Math.min(minY, j - 1);
+                        maxY = Math.max(maxY, j - 1);
+                    }
+
+            //Rows where the piece does not overhang the top or bottom
+            long validRows = 0;
+            for (int y = 0; y < rows; y++)
+                if (y + minY >= 0 && y + maxY < rows)
+                    validRows |= 1L << y;
+
+            for (int x = 0; x < cols; x++) {
+                //Overhangs the left or right edge, leave it marked invalid
+                if (x + minX < 0 || x + maxX >= cols)
+                    continue;
+
+                int entry = shape * cols + x;
+                valid[entry] = validRows;
+                for (int i = 0; i < 3; i++)
+                    for (int j = 0; j < 3; j++)
+                        if (gamePiece.hasBlock(i, j))
+                            masks[entry * 3 + j] |= 1L << (x + i - 1);
+            }
+        }
+    }
+
+    /**
+     * Get the shape index of a piece in its current rotation
+     * @param gamePiece the piece
+     * @return shape index, between 0 and SHAPES - 1
+     */
+    public static int shapeOf(GamePiece gamePiece) {
+        return gamePiece.getIndex();
+    }
+
+    /**
+     * Check whether a shape centred at the given position lies inside the grid
+     * @param shape shape index
+     * @param x column of the centre
+     * @param y row of the centre
+     * @return whether the placement is inside the grid
+     */
+    public boolean isInside(int shape, int x, int y) {
+        if (x < 0 || x >= cols || y < 0 || y >= rows)
+            return false;
+        return (valid[shape * cols + x] >>> y & 1) != 0;
+    }
+
+    /**
+     * Check whether a shape can be placed centred at the given position
+     * @param occupancy occupancy of the grid, one mask per row with an empty row padded above and below
+     * @param shape shape index
+     * @param x column of the centre
+     * @param y row of the centre
+     * @return whether the placement is inside the grid and does not overlap anything
+     */
+    public boolean fits(long[] occupancy, int shape, int x, int y) {
+        if (!isInside(shape, x, y))
+            return false;
+
+        //Row y of the grid is at y + 1 in the padded occupancy, so the three rows covered start at y
+        int m = (shape * cols + x) * 3;
+        return ((occupancy[y] & masks[m]) | (occupancy[y + 1] & masks[m + 1]) | (occupancy[y + 2] & masks[m + 2])) == 0;
+    }
+
+    /**
+     * Get one of the three row masks of a shape centred in the given column
+     * @param shape shape index
+     * @param x column of the centre
+     * @param row 0 for the row above the centre, 1 for the centre row, 2 for the row below
+     * @return bitmask of the columns covered in that row
+     */
+    public long getMask(int shape, int x, int row) {
+        return masks[(shape * cols + x) * 3 + row];
+    }
+
+    /**
+     * Get the number of columns of the grids this table is for
+     * @return number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Get the number of rows of the grids this table is for
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+}
@@ -1,123 +1,442 @@
-//package uk.ac.soton.comp1206.network;
-//
-//import com.neovisionaries.ws.client.*;
-//import javafx.scene.control.Alert;
-//import org.apache.logging.log4j.LogManager;
-//import org.apache.logging.log4j.Logger;
-//import uk.ac.soton.comp1206.event.CommunicationsListener;
-//
-//import java.util.ArrayList;
-//import java.util.List;
-//
-///**
-// * Uses web sockets to talk to a web socket server and relays communication to attached listeners
-// *
-// * YOU DO NOT NEED TO WORRY ABOUT THIS CLASS! Leave it be :-)
-// */
-//public class Communicator {
-//
-//    private static final Logger logger = LogManager.getLogger(Communicator.class);
-//
-//    /**
-//     * Attached communication listeners listening to messages on this Communicator. Each will be sent any messages.
-//     */
-//    private final List<CommunicationsListener> handlers = new ArrayList<>();
-//
-//    private WebSocket ws = null;
-//
-//    /**
-//     * Create a new communicator to the given web socket server
-//     *
-//     * @param server server to connect to
-//     */
-//    public Communicator(String server) {
-//
-//        try {
-//            var socketFactory = new WebSocketFactory();
-//
-//            //Connect to the server
-//            ws = socketFactory.createSocket(server);
-//            ws.connect();
-//            logger.info("Connected to " + server);
-//
-//            //When a message is received, call the receive method
-//            ws.addListener(new WebSocketAdapter() {
-//                @Override
-//                public void onTextMessage(WebSocket websocket, String message) throws Exception {
-//                    Communicator.this.receive(websocket, message);
-//                }
-//                @Override
-//                public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) throws Exception {
-//                    logger.info("Ping? Pong!");
-//                }
-//            });
-//
-//            //Error handling
-//            ws.addListener(new WebSocketAdapter() {
-//                @Override
-//                public void onTextMessage(WebSocket websocket, String message) throws Exception {
-//                    if(message.startsWith("ERROR")) {
-//                        logger.error(message);
-//                    }
-//                }
-//                @Override
-//                public void handleCallbackError(WebSocket webSocket, Throwable throwable) throws Exception {
-//                    logger.error("Callback Error:" + throwable.getMessage());
-//                    throwable.printStackTrace();
-//                }
-//                @Override
-//                public void onError(WebSocket webSocket, WebSocketException e) throws Exception {
-//                    logger.error("Error:" + e.getMessage());
-//                    e.printStackTrace();
-//                }
-//            });
-//
-//        } catch (Exception e){
-//            logger.error("Socket error: " + e.getMessage());
-//            e.printStackTrace();
-//
-//            Alert error = new Alert(Alert.AlertType.ERROR,"Unable to communicate with the TetrECS server\n\n" + e.getMessage() + "\n\nPlease ensure you are connected to the VPN");
-//            error.showAndWait();
-//            System.exit(1);
-//        }
-//    }
-//
-//    /** Send a message to the server
-//     *
-//     * @param message Message to send
-//     */
-//    public void send(String message) {
-//        logger.info("Sending message: " + message);
-//
-//        ws.sendText(message);
-//    }
-//
-//    /**
-//     * Add a new listener to receive messages from the server
-//     * @param listener the listener to add
-//     */
-//    public void addListener(CommunicationsListener listener) {
-//        this.handlers.add(listener);
-//    }
-//
-//    /**
-//     * Clear all current listeners
-//     */
-//    public void clearListeners() {
-//        this.handlers.clear();
-//    }
-//
-//    /** Receive a message from the server. Relay to any attached listeners
-//     *
-//     * @param websocket the socket
-//     * @param message the message that was received
-//     */
-//    private void receive(WebSocket websocket, String message) {
-//        logger.info("Received: " + message);
-//
-//        for(CommunicationsListener handler : handlers) {
-//            handler.receiveCommunication(message);
-//        }
-//    }
-//
-//}
+package uk.ac.soton.comp1206.network;
+
+import com.neovisionaries.ws.client.WebSocket;
+import com.neovisionaries.ws.client.WebSocketAdapter;
+import com.neovisionaries.ws.client.WebSocketException;
+import com.neovisionaries.ws.client.WebSocketFactory;
+import com.neovisionaries.ws.client.WebSocketFrame;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.CommunicationsListener;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uses web sockets to talk to a web socket server and relays communication to attached listeners
+ *
+ * Nothing in here ever blocks the caller. Connecting, reconnecting and writing all happen on the Communicator's own
+ * thread: if the server cannot be reached, or the connection drops, it tries again with a growing delay, for as long as
+ * the Communicator is open.
+ *
+ * Messages sent are queued and written in batches, one flush of the socket for everything sent since the last one.
+ * Messages which only report the latest state, such as SCORE or BOARD, replace one still waiting in the queue instead of
+ * being queued again, so a slow or missing connection does not build up a backlog of stale updates. The replacement
+ * goes to the back of the queue, so it is still sent after everything queued before it, such as the JOIN a LIST is
+ * meant to see. The queue holds at most MAX_QUEUED messages. When it is full the oldest chat message is dropped, and
+ * when there is none to drop the new message is refused: commands such as JOIN or START are never dropped quietly.
+ *
+ * Received messages are handed to the listeners on the Executor given, for example Platform::runLater.
+ */
+public class Communicator {
+
+    private static final Logger logger = LogManager.getLogger(Communicator.class);
+
+    /**
+     * The state of the connection
+     */
+    public enum State {
+        /**
+         * Trying to connect, or waiting to try again
+         */
+        CONNECTING,
+        /**
+         * Connected, messages are being sent
+         */
+        CONNECTED,
+        /**
+         * Closed for good
+         */
+        CLOSED
+    }
+
+    /**
+     * Commands where only the latest message matters, a queued one is replaced by a newer one
+     */
+    private static final Set<String> LATEST_ONLY = Set.of("SCORE", "BOARD", "LIVES", "SCORES", "LIST", "USERS");
+
+    /**
+     * The chat command, the only one which may be dropped when the queue is full
+     */
+    private static final String CHAT = "MSG";
+
+    /**
+     * Most messages kept waiting to be sent
+     */
+    public static final int MAX_QUEUED = 256;
+
+    /**
+     * How long to wait for more messages before flushing, in milliseconds
+     */
+    public static final long BATCH_DELAY = 5;
+
+    /**
+     * Delay before the first reconnect, in milliseconds, doubled with every failure
+     */
+    public static final long MIN_BACKOFF = 500;
+
+    /**
+     * Longest delay between reconnects, in milliseconds
+     */
+    public static final long MAX_BACKOFF = 30_000;
+
+    /**
+     * How long to wait for the server to answer a connect, in milliseconds
+     */
+    public static final int CONNECT_TIMEOUT = 5_000;
+
+    /**
+     * Attached communication listeners listening to messages on this Communicator. Each will be sent any messages.
+     */
+    private final List<CommunicationsListener> handlers = new CopyOnWriteArrayList<>();
+
+    /**
+     * The server to connect to
+     */
+    private final String server;
+
+    /**
+     * Where received messages are handed to the listeners
+     */
+    private final Executor delivery;
+
+    /**
+     * Connects and writes, so nobody else has to wait for the network
+     */
+    private final ScheduledExecutorService worker;
+
+    /**
+     * Messages waiting to be sent, in order. Messages which only report the latest state are keyed by their command,
+     * so a newer one takes the place of the queued one, every other message has a key of its own.
+     */
+    private final Map<Object, String> outbound = new LinkedHashMap<>();
+
+    /**
+     * Hands out the keys of messages which are not replaced
+     */
+    private long sequence = 0;
+
+    /**
+     * Whether a flush is already scheduled
+     */
+    private boolean flushing = false;
+
+    /**
+     * Number of messages dropped or refused because the queue was full
+     */
+    private long dropped = 0;
+
+    /**
+     * Number of messages replaced by a newer one before they were sent
+     */
+    private long coalesced = 0;
+
+    /**
+     * Number of failed attempts to connect since the last success
+     */
+    private int failures = 0;
+
+    /**
+     * The socket, only used on the worker thread
+     */
+    private WebSocket ws = null;
+
+    private volatile State state = State.CONNECTING;
+
+    /**
+     * Create a new communicator to the given web socket server and start connecting in the background. Messages are
+     * handed to the listeners on the Communicator's own thread.
+     *
+     * @param server server to connect to
+     */
+    public Communicator(String server) {
+        this(server, Runnable::run);
+    }
+
+    /**
+     * Create a new communicator to the given web socket server and start connecting in the background
+     *
+     * @param server server to connect to
+     * @param delivery where to hand received messages to the listeners, for example Platform::runLater
+     */
+    public Communicator(String server, Executor delivery) {
+        this.server = server;
+        this.delivery = delivery;
+        this.worker = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "Communicator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worker.execute(this::connect);
+    }
+
+    /** Send a message to the server. The message is queued and sent as soon as there is a connection.
+     *
+     * @param message Message to send
+     * @return false if the message was refused, because the Communicator is closed or the queue is full of messages
+     * which cannot be dropped
+     */
+    public boolean send(String message) {
+        logger.debug("Queueing message: " + message);
+
+        String command = command(message);
+        synchronized (outbound) {
+            if (state == State.CLOSED)
+                return false;
+
+            Object key = LATEST_ONLY.contains(command) ? command : sequence++;
+            //Take the old one out first, so the newer one goes to the back instead of keeping the old one's place
+            if (outbound.remove(key) != null) {
+                coalesced++;
+            } else if (outbound.size() >= MAX_QUEUED && !dropChat()) {
+                logger.error("Outbound queue full, refusing: " + message);
+                dropped++;
+                return false;
+            }
+            outbound.put(key, message);
+
+            if (!flushing && state == State.CONNECTED) {
+                flushing = true;
+                worker.schedule(this::flush, BATCH_DELAY, TimeUnit.MILLISECONDS);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Make room in the full queue by dropping the oldest chat message. Keeping the game going matters more than the
+     * chat, so chat is dropped rather than waiting for the network.
+     * @return whether a message was dropped
+     */
+    private boolean dropChat() {
+        Iterator<String> queued = outbound.values().iterator();
+        while (queued.hasNext()) {
+            String message = queued.next();
+            if (command(message).equals(CHAT)) {
+                logger.warn("Outbound queue full, dropping: " + message);
+                queued.remove();
+                dropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a new listener to receive messages from the server
+     * @param listener the listener to add
+     */
+    public void addListener(CommunicationsListener listener) {
+        this.handlers.add(listener);
+    }
+
+    /**
+     * Clear all current listeners
+     */
+    public void clearListeners() {
+        this.handlers.clear();
+    }
+
+    /**
+     * Get the state of the connection
+     * @return state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Get the number of messages waiting to be sent
+     * @return number of queued messages
+     */
+    public int getQueued() {
+        synchronized (outbound) {
+            return outbound.size();
+        }
+    }
+
+    /**
+     * Get the number of messages dropped because too many were waiting to be sent
+     * @return number of dropped messages
+     */
+    public long getDropped() {
+        synchronized (outbound) {
+            return dropped;
+        }
+    }
+
+    /**
+     * Get the number of messages replaced by a newer one before they were sent
+     * @return number of replaced messages
+     */
+    public long getCoalesced() {
+        synchronized (outbound) {
+            return coalesced;
+        }
+    }
+
+    /**
+     * Close the connection for good. Messages still waiting are not sent.
+     */
+    public void close() {
+        synchronized (outbound) {
+            if (state == State.CLOSED)
+                return;
+            state = State.CLOSED;
+            outbound.clear();
+        }
+        worker.execute(() -> {
+            if (ws != null)
+                ws.disconnect();
+            worker.shutdown();
+        });
+    }
+
+    /**
+     * Try to connect, and try again later if it fails. Runs on the worker thread.
+     */
+    private void connect() {
+        if (state == State.CLOSED)
+            return;
+
+        try {
+            ws = new WebSocketFactory().setConnectionTimeout(CONNECT_TIMEOUT).createSocket(server);
+            ws.setAutoFlush(false);
+            ws.setPingInterval(30_000);
+            ws.addListener(new Listener());
+            ws.connect();
+        } catch (Exception e) {
+            logger.error("Unable to connect to " + server + ": " + e.getMessage());
+            reconnect();
+            return;
+        }
+
+        logger.info("Connected to " + server);
+        failures = 0;
+        synchronized (outbound) {
+            if (state == State.CLOSED) {
+                ws.disconnect();
+                return;
+            }
+            state = State.CONNECTED;
+            //Send whatever was queued while there was no connection
+            flushing = true;
+        }
+        flush();
+    }
+
+    /**
+     * Connect again after a delay, which doubles with every failure, plus some jitter so many clients do not all come
+     * back at once. Runs on the worker thread.
+     */
+    private void reconnect() {
+        synchronized (outbound) {
+            if (state == State.CLOSED)
+                return;
+            state = State.CONNECTING;
+            flushing = false;
+        }
+
+        long backoff = Math.min(MAX_BACKOFF, MIN_BACKOFF << Math.min(failures, 16));
+        backoff += ThreadLocalRandom.current().nextLong(backoff / 4 + 1);
+        failures++;
+        logger.info("Reconnecting to " + server + " in " + backoff + "ms");
+        worker.schedule(this::connect, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write every queued message and flush the socket once. Runs on the worker thread.
+     */
+    private void flush() {
+        List<String> batch;
+        synchronized (outbound) {
+            flushing = false;
+            if (state != State.CONNECTED || outbound.isEmpty())
+                return;
+            batch = new ArrayList<>(outbound.values());
+            outbound.clear();
+        }
+
+        for (String message : batch) {
+            logger.info("Sending message: " + message);
+            ws.sendText(message);
+        }
+        ws.flush();
+    }
+
+    /** Receive a message from the server. Relay to any attached listeners
+     *
+     * @param message the message that was received
+     */
+    private void receive(String message) {
+        logger.info("Received: " + message);
+
+        if (message.startsWith("ERROR"))
+            logger.error(message);
+
+        delivery.execute(() -> {
+            for (CommunicationsListener handler : handlers) {
+                handler.receiveCommunication(message);
+            }
+        });
+    }
+
+    /**
+     * Get the command of a message, the part before the first space
+     * @param message the message
+     * @return its command
+     */
+    private static String command(String message) {
+        int space = message.indexOf(' ');
+        return space < 0 ? message : message.substring(0, space);
+    }
+
+    /**
+     * Listens to the socket, on the socket's own threads
+     */
+    private class Listener extends WebSocketAdapter {
+
+        @Override
+        public void onTextMessage(WebSocket websocket, String message) {
+            receive(message);
+        }
+
+        @Override
+        public void onPingFrame(WebSocket webSocket, WebSocketFrame webSocketFrame) {
+            logger.debug("Ping? Pong!");
+        }
+
+        @Override
+        public void onDisconnected(WebSocket websocket, WebSocketFrame serverCloseFrame,
+                                   WebSocketFrame clientCloseFrame, boolean closedByServer) {
+            logger.warn("Disconnected from " + server + (closedByServer ? " by the server" : ""));
+            if (state == State.CLOSED)
+                return;
+            worker.execute(() -> {
+                //Only reconnect for the socket in use, not for one given up on already
+                if (websocket == ws)
+                    reconnect();
+            });
+        }
+
+        @Override
+        public void handleCallbackError(WebSocket webSocket, Throwable throwable) {
+            logger.error("Callback Error:" + throwable.getMessage());
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, WebSocketException e) {
+            logger.error("Error:" + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package uk.ac.soton.comp1206.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The Lobby plays the part of the TetrECS server: it knows who is connected, what they are called, which channels there
+ * are and who is in them, and answers the text messages of the protocol. It does not know about sockets, whoever runs
+ * it hands it the messages received and it answers through each Client.
+ *
+ * The messages understood, and what is sent back:
+ * <ul>
+ *     <li>LIST: CHANNELS with one channel per line</li>
+ *     <li>CREATE channel: JOIN channel and HOST, the creator hosts the channel</li>
+ *     <li>JOIN channel: JOIN channel, and USERS to everyone in it</li>
+ *     <li>PART: PARTED, and USERS to everyone left behind. If the host left, the next player gets HOST</li>
+ *     <li>NICK name: NICK name, and NICK old:new to everyone else in the channel</li>
+ *     <li>USERS: USERS with one nickname per line</li>
+ *     <li>START, from the host: START to everyone in the channel</li>
+ *     <li>MSG message: MSG nickname:message to everyone in the channel</li>
+ *     <li>SCORE score, LIVES lives, BOARD values, DIE: SCORE nickname:score, LIVES nickname:lives,
+ *     BOARD nickname:values and DIE nickname to everyone in the channel</li>
+ *     <li>SCORES: SCORES with nickname:score:lives per line, for the channel</li>
+ *     <li>PIECE: PIECE with a random piece</li>
+ *     <li>HISCORES: HISCORES with name:score per line; HISCORE name:score: NEWSCORE name:score</li>
+ * </ul>
+ * Anything else, or anything not allowed, is answered with ERROR and a reason.
+ *
+ * A Lobby is not thread safe, it is meant to be used from one thread only, such as the LocalServer's.
+ */
+public class Lobby {
+
+    private static final Logger logger = LogManager.getLogger(Lobby.class);
+
+    /**
+     * Number of high scores kept
+     */
+    public static final int HISCORES = 10;
+
+    /**
+     * Number of different pieces handed out by PIECE
+     */
+    public static final int PIECES = 15;
+
+    /**
+     * Somebody connected to the lobby
+     */
+    public interface Client {
+
+        /**
+         * Send a message to this client
+         * @param message the message
+         */
+        void send(String message);
+    }
+
+    /**
+     * Every connected player, by client
+     */
+    private final Map<Client, Player> players = new HashMap<>();
+
+    /**
+     * Every nickname in use
+     */
+    private final Set<String> nicknames = new HashSet<>();
+
+    /**
+     * Every channel, in the order they were created
+     */
+    private final Map<String, Channel> channels = new LinkedHashMap<>();
+
+    /**
+     * The high scores, best first
+     */
+    private final List<String[]> hiscores = new ArrayList<>();
+
+    private final Random random;
+
+    /**
+     * Numbers the guests
+     */
+    private int guests = 0;
+
+    /**
+     * Create a new, empty lobby
+     * @param seed seed of the pieces handed out
+     */
+    public Lobby(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * A client connected
+     * @param client the client
+     */
+    public void connected(Client client) {
+        String nickname;
+        do {
+            nickname = "Guest" + (++guests);
+        } while (nicknames.contains(nickname));
+        nicknames.add(nickname);
+        players.put(client, new Player(client, nickname));
+    }
+
+    /**
+     * A client disconnected, it leaves its channel
+     * @param client the client
+     */
+    public void disconnected(Client client) {
+        Player player = players.remove(client);
+        if (player == null)
+            return;
+        part(player);
+        nicknames.remove(player.nickname);
+    }
+
+    /**
+     * Get the number of connected players
+     * @return number of players
+     */
+    public int getPlayers() {
+        return players.size();
+    }
+
+    /**
+     * Get the number of channels
+     * @return number of channels
+     */
+    public int getChannels() {
+        return channels.size();
+    }
+
+    /**
+     * Handle a message from a client
+     * @param client the client
+     * @param message the message
+     */
+    public void receive(Client client, String message) {
+        Player player = players.get(client);
+        if (player == null)
+            return;
+
+        int space = message.indexOf(' ');
+        String command = space < 0 ? message : message.substring(0, space);
+        String argument = space < 0 ? "" : message.substring(space + 1).trim();
+
+        switch (command) {
+            case "LIST" -> client.send("CHANNELS " + String.join("\n", channels.keySet()));
+            case "CREATE" -> create(player, argument);
+            case "JOIN" -> join(player, argument);
+            case "PART" -> {
+                part(player);
+                client.send("PARTED");
+            }
+            case "NICK" -> nick(player, argument);
+            case "USERS" -> {
+                if (inChannel(player))
+                    client.send(player.channel.users());
+            }
+            case "START" -> start(player);
+            case "MSG" -> {
+                if (inChannel(player))
+                    player.channel.broadcast("MSG " + player.nickname + ":" + argument);
+            }
+            case "SCORE" -> {
+                if (inChannel(player) && isNumber(player, argument)) {
+                    player.score = Integer.parseInt(argument);
+                    player.channel.broadcast("SCORE " + player.nickname + ":" + player.score);
+                }
+            }
+            case "LIVES" -> {
+                if (inChannel(player) && isNumber(player, argument)) {
+                    player.lives = Integer.parseInt(argument);
+                    player.channel.broadcast("LIVES " + player.nickname + ":" + player.lives);
+                }
+            }
+            case "BOARD" -> {
+                if (inChannel(player))
+                    player.channel.broadcast("BOARD " + player.nickname + ":" + argument);
+            }
+            case "DIE" -> {
+                if (inChannel(player)) {
+                    player.lives = -1;
+                    player.channel.broadcast("DIE " + player.nickname);
+                }
+            }
+            case "SCORES" -> {
+                if (inChannel(player))
+                    client.send(player.channel.scores());
+            }
+            case "PIECE" -> client.send("PIECE " + random.nextInt(PIECES));
+            case "HISCORES" -> client.send(hiscores());
+            case "HISCORE" -> hiscore(player, argument);
+            default -> client.send("ERROR Unknown command " + command);
+        }
+    }
+
+    /**
+     * Create a channel and join it as its host
+     * @param player the player
+     * @param name name of the channel
+     */
+    private void create(Player player, String name) {
+        if (!isName(player, name))
+            return;
+        if (channels.containsKey(name)) {
+            player.client.send("ERROR Channel " + name + " already exists");
+            return;
+        }
+        part(player);
+        Channel channel = new Channel(name);
+        channels.put(name, channel);
+        channel.add(player);
+        player.client.send("JOIN " + name);
+        player.client.send("HOST");
+        logger.debug("{} created {}", player.nickname, name);
+    }
+
+    /**
+     * Join a channel
+     * @param player the player
+     * @param name name of the channel
+     */
+    private void join(Player player, String name) {
+        Channel channel = channels.get(name);
+        if (channel == null) {
+            player.client.send("ERROR No such channel " + name);
+            return;
+        }
+        if (channel.started) {
+            player.client.send("ERROR Channel " + name + " has already started");
+            return;
+        }
+        if (player.channel == channel)
+            return;
+        part(player);
+        channel.add(player);
+        player.client.send("JOIN " + name);
+        channel.broadcast(channel.users());
+    }
+
+    /**
+     * Leave the channel the player is in, if any. An empty channel is removed, and if the host left the longest
+     * waiting player hosts the channel instead.
+     * @param player the player
+     */
+    private void part(Player player) {
+        Channel channel = player.channel;
+        if (channel == null)
+            return;
+        channel.members.remove(player);
+        player.channel = null;
+        player.score = 0;
+        player.lives = 3;
+
+        if (channel.members.isEmpty()) {
+            channels.remove(channel.name);
+            return;
+        }
+        if (channel.host == player) {
+            channel.host = channel.members.get(0);
+            channel.host.client.send("HOST");
+        }
+        channel.broadcast(channel.users());
+    }
+
+    /**
+     * Change the nickname of a player
+     * @param player the player
+     * @param nickname the new nickname
+     */
+    private void nick(Player player, String nickname) {
+        if (!isName(player, nickname) || nickname.equals(player.nickname))
+            return;
+        if (nicknames.contains(nickname)) {
+            player.client.send("ERROR Nickname " + nickname + " is taken");
+            return;
+        }
+        String old = player.nickname;
+        nicknames.remove(old);
+        nicknames.add(nickname);
+        player.nickname = nickname;
+        player.client.send("NICK " + nickname);
+        if (player.channel != null)
+            player.channel.broadcast("NICK " + old + ":" + nickname, player);
+    }
+
+    /**
+     * Start the game in the host's channel
+     * @param player the player, who must be the host
+     */
+    private void start(Player player) {
+        if (!inChannel(player))
+            return;
+        if (player.channel.host != player) {
+            player.client.send("ERROR Only the host can start the game");
+            return;
+        }
+        player.channel.started = true;
+        player.channel.broadcast("START");
+    }
+
+    /**
+     * Submit a high score, it is kept if it is among the best
+     * @param player the player
+     * @param argument name:score
+     */
+    private void hiscore(Player player, String argument) {
+        int colon = argument.lastIndexOf(':');
+        if (colon <= 0 || !isNumber(player, argument.substring(colon + 1)))
+            return;
+        String name = argument.substring(0, colon);
+        int score = Integer.parseInt(argument.substring(colon + 1));
+
+        int rank = 0;
+        while (rank < hiscores.size() && Integer.parseInt(hiscores.get(rank)[1]) >= score)
+            rank++;
+        hiscores.add(rank, new String[]{name, Integer.toString(score)});
+        if (hiscores.size() > HISCORES)
+            hiscores.remove(hiscores.size() - 1);
+        player.client.send("NEWSCORE " + name + ":" + score);
+    }
+
+    /**
+     * Build the HISCORES message
+     * @return the message
+     */
+    private String hiscores() {
+        StringBuilder message = new StringBuilder("HISCORES ");
+        for (int i = 0; i < hiscores.size(); i++) {
+            if (i > 0)
+                message.append('\n');
+            message.append(hiscores.get(i)[0]).append(':').append(hiscores.get(i)[1]);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Check that a player is in a channel, and tell them if not
+     * @param player the player
+     * @return whether they are in a channel
+     */
+    private boolean inChannel(Player player) {
+        if (player.channel != null)
+            return true;
+        player.client.send("ERROR Not in a channel");
+        return false;
+    }
+
+    /**
+     * Check that a name can be used for a channel or a player, and tell them if not
+     * @param player the player
+     * @param name the name
+     * @return whether it can be used
+     */
+    private boolean isName(Player player, String name) {
+        if (!name.isEmpty() && name.indexOf(':') < 0 && name.indexOf('\n') < 0)
+            return true;
+        player.client.send("ERROR Invalid name " + name);
+        return false;
+    }
+
+    /**
+     * Check that an argument is a number, and tell the player if not
+     * @param player the player
+     * @param argument the argument
+     * @return whether it is a number
+     */
+    private boolean isNumber(Player player, String argument) {
+        try {
+            Integer.parseInt(argument);
+            return true;
+        } catch (NumberFormatException e) {
+            player.client.send("ERROR Not a number: " + argument);
+            return false;
+        }
+    }
+
+    /**
+     * A connected player
+     */
+    private static class Player {
+
+        private final Client client;
+        private String nickname;
+        private Channel channel;
+        private int score = 0;
+        private int lives = 3;
+
+        private Player(Client client, String nickname) {
+            this.client = client;
+            this.nickname = nickname;
+        }
+    }
+
+    /**
+     * A channel and the players in it, in the order they joined
+     */
+    private static class Channel {
+
+        private final String name;
+        private final List<Player> members = new ArrayList<>();
+        private Player host;
+        private boolean started = false;
+
+        private Channel(String name) {
+            this.name = name;
+        }
+
+        private void add(Player player) {
+            if (members.isEmpty())
+                host = player;
+            members.add(player);
+            player.channel = this;
+        }
+
+        /**
+         * Send a message to everyone in the channel. The same String goes to every member, so the server can encode
+         * it once for all of them.
+         * @param message the message
+         */
+        private void broadcast(String message) {
+            broadcast(message, null);
+        }
+
+        /**
+         * Send a message to everyone in the channel but one
+         * @param message the message
+         * @param except who not to send it to, or null
+         */
+        private void broadcast(String message, Player except) {
+            //Sending can disconnect a member and so change the members, go through them as they were
+            for (Player member : members.toArray(new Player[0])) {
+                if (member != except)
+                    member.client.send(message);
+            }
+        }
+
+        private String users() {
+            StringBuilder message = new StringBuilder("USERS ");
+            for (int i = 0; i < members.size(); i++) {
+                if (i > 0)
+                    message.append('\n');
+                message.append(members.get(i).nickname);
+            }
+            return message.toString();
+        }
+
+        private String scores() {
+            StringBuilder message = new StringBuilder("SCORES ");
+            for (int i = 0; i < members.size(); i++) {
+                Player member = members.get(i);
+                if (i > 0)
+                    message.append('\n');
+                message.append(member.nickname).append(':').append(member.score).append(':')
+                        .append(member.lives < 0 ? "DEAD" : Integer.toString(member.lives));
+            }
+            return message.toString();
+        }
+    }
+}
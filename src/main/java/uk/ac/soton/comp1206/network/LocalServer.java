@@ -0,0 +1,528 @@
+package uk.ac.soton.comp1206.network;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * A small web socket server which speaks the TetrECS protocol, so the game can be played and tested without the real
+ * server. The protocol itself is the Lobby's, this only carries its messages.
+ *
+ * Everything runs on a single thread around a Selector, with non-blocking sockets, so thousands of clients cost a
+ * buffer each and not a thread each. Messages broadcast to a channel are encoded into a frame once and that frame is
+ * shared by everyone it goes to. A client which stops reading is disconnected once MAX_PENDING bytes are waiting for
+ * it, so it cannot make the server hold on to more and more.
+ *
+ * Only what the protocol needs of web sockets is supported: text messages, possibly fragmented, ping and close.
+ */
+public class LocalServer {
+
+    private static final Logger logger = LogManager.getLogger(LocalServer.class);
+
+    /**
+     * Added to the key of the handshake, from RFC 6455
+     */
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    /**
+     * Largest message accepted, in bytes
+     */
+    public static final int MAX_MESSAGE = 1 << 20;
+
+    /**
+     * Most bytes kept waiting for a client before it is disconnected
+     */
+    public static final int MAX_PENDING = 4 << 20;
+
+    private static final int TEXT = 0x1;
+    private static final int CONTINUATION = 0x0;
+    private static final int CLOSE = 0x8;
+    private static final int PING = 0x9;
+    private static final int PONG = 0xA;
+
+    private final Lobby lobby;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+
+    /**
+     * The last text encoded and its frame, so a broadcast is only encoded once
+     */
+    private String lastText;
+    private ByteBuffer lastFrame;
+
+    private volatile boolean running = true;
+
+    /**
+     * Number of clients connected
+     */
+    private volatile int connections = 0;
+
+    /**
+     * Number of messages received and sent
+     */
+    private volatile long received = 0;
+    private volatile long sent = 0;
+
+    /**
+     * Start a server on the given port of the loopback address
+     * @param port the port, or 0 for any free port
+     * @throws IOException if the port could not be opened
+     */
+    public LocalServer(int port) throws IOException {
+        this(new InetSocketAddress("127.0.0.1", port), new Lobby(System.nanoTime()));
+    }
+
+    /**
+     * Start a server
+     * @param address where to listen
+     * @param lobby the lobby to run, only used from the server's thread from now on
+     * @throws IOException if the address could not be opened
+     */
+    public LocalServer(InetSocketAddress address, Lobby lobby) throws IOException {
+        this.lobby = lobby;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address, 1024);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(this::run, "Local Server");
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Local server listening on " + getAddress());
+    }
+
+    /**
+     * Get the address of the server, to give to a Communicator
+     * @return the address, for example ws://127.0.0.1:9700
+     */
+    public String getAddress() {
+        try {
+            InetSocketAddress address = (InetSocketAddress) server.getLocalAddress();
+            return "ws://" + address.getHostString() + ":" + address.getPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Get the number of clients connected
+     * @return number of connections
+     */
+    public int getConnections() {
+        return connections;
+    }
+
+    /**
+     * Get the number of messages received from all clients
+     * @return number of messages received
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Get the number of messages sent to all clients
+     * @return number of messages sent
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Stop the server and disconnect everyone
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Serve until stopped
+     */
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable())
+                            connection.read();
+                        if (key.isValid() && key.isWritable())
+                            connection.write();
+                    } catch (IOException e) {
+                        logger.debug("Dropping connection: " + e.getMessage());
+                        connection.close();
+                    } catch (RuntimeException e) {
+                        //One client must not take the server down with it
+                        logger.error("Dropping connection after an error: " + e, e);
+                        connection.close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            logger.error("Local server failed: " + e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection)
+                    connection.close();
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                logger.error("Could not close the local server: " + e);
+            }
+            logger.info("Local server stopped");
+        }
+    }
+
+    /**
+     * Accept every waiting connection
+     * @throws IOException if accepting failed
+     */
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    /**
+     * Get the frame of a text message, reusing the last one if the same message is sent again
+     * @param text the message
+     * @return the frame, ready to be written
+     */
+    private ByteBuffer frame(String text) {
+        if (text != lastText) {
+            lastText = text;
+            lastFrame = frame(TEXT, text.getBytes(StandardCharsets.UTF_8));
+        }
+        return lastFrame.duplicate();
+    }
+
+    /**
+     * Build a frame the server sends, which is never masked
+     * @param opcode type of the frame
+     * @param payload its payload
+     * @return the frame, ready to be written
+     */
+    private static ByteBuffer frame(int opcode, byte[] payload) {
+        int length = payload.length;
+        ByteBuffer frame = ByteBuffer.allocate(length + (length < 126 ? 2 : length < 65536 ? 4 : 10));
+        frame.put((byte) (0x80 | opcode));
+        if (length < 126) {
+            frame.put((byte) length);
+        } else if (length < 65536) {
+            frame.put((byte) 126).putShort((short) length);
+        } else {
+            frame.put((byte) 127).putLong(length);
+        }
+        return frame.put(payload).flip().asReadOnlyBuffer();
+    }
+
+    /**
+     * A connected client, from its handshake until it is closed
+     */
+    private class Connection implements Lobby.Client {
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+
+        /**
+         * Bytes received but not handled yet
+         */
+        private ByteBuffer in = ByteBuffer.allocate(4096);
+
+        /**
+         * Frames waiting to be written, and how many bytes they hold
+         */
+        private final ArrayDeque<ByteBuffer> out = new ArrayDeque<>();
+        private int pending = 0;
+
+        /**
+         * A fragmented message being put together
+         */
+        private byte[] fragments;
+
+        private boolean open = false;
+        private boolean closing = false;
+        private boolean closed = false;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void send(String message) {
+            if (!open || closing)
+                return;
+            sent++;
+            queue(frame(message));
+        }
+
+        /**
+         * Read whatever arrived and handle every complete handshake or frame
+         * @throws IOException if reading failed or the client broke the protocol
+         */
+        private void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            //Once the client is being closed nothing it sends counts, a handshake after its CLOSE must not let it in
+            if (closing) {
+                in.clear();
+                return;
+            }
+            in.flip();
+            boolean more = true;
+            while (more && !closed && !closing)
+                more = open ? readFrame() : readHandshake();
+            in.compact();
+
+            //Make room for a frame bigger than the buffer
+            if (!in.hasRemaining()) {
+                if (in.capacity() >= MAX_MESSAGE + 14)
+                    throw new IOException("Message too large");
+                in = ByteBuffer.allocate(in.capacity() * 2).put(in.flip());
+            }
+        }
+
+        /**
+         * Answer the handshake, once it has arrived completely
+         * @return whether it was handled
+         * @throws IOException if it is not a web socket handshake
+         */
+        private boolean readHandshake() throws IOException {
+            int end = -1;
+            for (int i = in.position(); i + 3 < in.limit(); i++) {
+                if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n') {
+                    end = i + 4;
+                    break;
+                }
+            }
+            if (end < 0)
+                return false;
+
+            byte[] request = new byte[end - in.position()];
+            in.get(request);
+            String websocketKey = null;
+            for (String line : new String(request, StandardCharsets.ISO_8859_1).split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().toLowerCase(Locale.ROOT).equals("sec-websocket-key"))
+                    websocketKey = line.substring(colon + 1).trim();
+            }
+            if (websocketKey == null) {
+                closing = true;
+                queue(ByteBuffer.wrap("HTTP/1.1 400 Bad Request\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.ISO_8859_1)));
+                return false;
+            }
+
+            queue(ByteBuffer.wrap(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept(websocketKey) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1)));
+            open = true;
+            connections++;
+            lobby.connected(this);
+            return true;
+        }
+
+        /**
+         * Handle a frame, once it has arrived completely
+         * @return whether one was handled
+         * @throws IOException if the client broke the protocol
+         */
+        private boolean readFrame() throws IOException {
+            int start = in.position();
+            if (in.remaining() < 2)
+                return false;
+            int first = in.get(start) & 0xFF;
+            int second = in.get(start + 1) & 0xFF;
+            boolean fin = (first & 0x80) != 0;
+            int opcode = first & 0x0F;
+            if ((second & 0x80) == 0)
+                throw new IOException("Unmasked frame from a client");
+
+            long length = second & 0x7F;
+            int header = 2;
+            if (length == 126) {
+                if (in.remaining() < 4)
+                    return false;
+                length = in.getShort(start + 2) & 0xFFFF;
+                header = 4;
+            } else if (length == 127) {
+                if (in.remaining() < 10)
+                    return false;
+                length = in.getLong(start + 2);
+                header = 10;
+            }
+            if (length < 0 || length > MAX_MESSAGE)
+                throw new IOException("Message too large");
+            if (in.remaining() < header + 4 + length)
+                return false;
+
+            byte[] payload = new byte[(int) length];
+            int mask = start + header;
+            for (int i = 0; i < payload.length; i++)
+                payload[i] = (byte) (in.get(mask + 4 + i) ^ in.get(mask + (i & 3)));
+            in.position(mask + 4 + (int) length);
+
+            switch (opcode) {
+                case TEXT, CONTINUATION -> message(payload, opcode == TEXT, fin);
+                case PING -> queue(frame(PONG, payload));
+                case CLOSE -> {
+                    leave();
+                    closing = true;
+                    queue(frame(CLOSE, payload));
+                }
+                case PONG -> { }
+                default -> throw new IOException("Unsupported frame " + opcode);
+            }
+            return !closing;
+        }
+
+        /**
+         * Put together a text message and hand it to the lobby once it is complete
+         * @param payload the payload of a frame
+         * @param first whether this is the first frame of the message
+         * @param fin whether this is the last frame of the message
+         * @throws IOException if the fragments do not fit together
+         */
+        private void message(byte[] payload, boolean first, boolean fin) throws IOException {
+            if (first == (fragments != null))
+                throw new IOException("Unexpected fragment");
+            if (fragments != null) {
+                if (fragments.length + payload.length > MAX_MESSAGE)
+                    throw new IOException("Message too large");
+                byte[] joined = new byte[fragments.length + payload.length];
+                System.arraycopy(fragments, 0, joined, 0, fragments.length);
+                System.arraycopy(payload, 0, joined, fragments.length, payload.length);
+                payload = joined;
+            }
+            if (!fin) {
+                fragments = payload;
+                return;
+            }
+            fragments = null;
+            received++;
+            lobby.receive(this, new String(payload, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Queue bytes to be written, writing straight away if nothing else is waiting
+         * @param buffer the bytes
+         */
+        private void queue(ByteBuffer buffer) {
+            if (closed)
+                return;
+            out.add(buffer);
+            pending += buffer.remaining();
+            if (pending > MAX_PENDING) {
+                logger.warn("Client is not reading, disconnecting it");
+                close();
+                return;
+            }
+            if (out.size() == 1) {
+                try {
+                    write();
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Write as much as the socket takes, and wait for it to take more if anything is left
+         * @throws IOException if writing failed
+         */
+        private void write() throws IOException {
+            while (!out.isEmpty()) {
+                ByteBuffer buffer = out.peek();
+                pending -= channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                out.poll();
+            }
+            key.interestOps(SelectionKey.OP_READ);
+            if (closing)
+                close();
+        }
+
+        /**
+         * Leave the lobby, if this client was in it
+         */
+        private void leave() {
+            if (open) {
+                open = false;
+                connections--;
+                lobby.disconnected(this);
+            }
+        }
+
+        /**
+         * Close the connection without waiting for anything still queued
+         */
+        private void close() {
+            if (closed)
+                return;
+            closed = true;
+            leave();
+            out.clear();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.debug("Could not close a connection: " + e);
+            }
+        }
+    }
+
+    /**
+     * Work out the answer to the key of a handshake
+     * @param key the key sent by the client
+     * @return the answer
+     */
+    private static String accept(String key) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest((key + GUID).getBytes(StandardCharsets.ISO_8859_1));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+}
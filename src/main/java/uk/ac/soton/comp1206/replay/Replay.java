@@ -0,0 +1,296 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.PieceSource;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A Replay is everything needed to play a game again exactly: the size of the grid, the settings and seed of its
+ * PieceSource, and every action the player took with the time it was taken at.
+ *
+ * The binary format is a small header followed by one record per action. A record starts with a variable length number
+ * holding the milliseconds since the previous action shifted left by three, with the type of the action in the lowest
+ * three bits, followed by the arguments of the action, one byte each. A placement is usually four bytes, everything
+ * else two.
+ */
+public class Replay {
+
+    /**
+     * The first bytes of every replay
+     */
+    static final int MAGIC = 0x5452504C;
+
+    /**
+     * Version of the format
+     */
+    static final int VERSION = 1;
+
+    /**
+     * End of the replay
+     */
+    public static final int END = 0;
+
+    /**
+     * The current piece was placed, arguments are the column and row
+     */
+    public static final int PLACE = 1;
+
+    /**
+     * The current piece was rotated, argument is the number of quarter turns
+     */
+    public static final int ROTATE = 2;
+
+    /**
+     * The current and following piece were swapped
+     */
+    public static final int SWAP = 3;
+
+    /**
+     * The timer ran out
+     */
+    public static final int TIMEOUT = 4;
+
+    private final int cols;
+    private final int rows;
+    private final long seed;
+    private final int preview;
+    private final boolean bag;
+
+    /**
+     * Number of actions
+     */
+    private int size = 0;
+
+    /**
+     * Time of every action, in milliseconds since the game started
+     */
+    private long[] times = new long[64];
+
+    /**
+     * Type and arguments of every action, packed as type | first argument << 8 | second argument << 16
+     */
+    private int[] actions = new int[64];
+
+    /**
+     * Create a new, empty replay
+     * @param cols number of columns of the grid
+     * @param rows number of rows of the grid
+     * @param seed seed of the PieceSource
+     * @param preview preview depth of the PieceSource
+     * @param bag whether the PieceSource deals from a bag
+     */
+    public Replay(int cols, int rows, long seed, int preview, boolean bag) {
+        this.cols = cols;
+        this.rows = rows;
+        this.seed = seed;
+        this.preview = preview;
+        this.bag = bag;
+    }
+
+    /**
+     * Create a new, empty replay for the given game, which must not have started yet
+     * @param game the game
+     * @return the replay
+     */
+    public static Replay of(Game game) {
+        PieceSource pieceSource = game.getPieceSource();
+        return new Replay(game.getCols(), game.getRows(), pieceSource.getSeed(), pieceSource.getPreview(),
+                pieceSource.isBag());
+    }
+
+    /**
+     * Create a game set up exactly like the recorded one
+     * @param clock clock of the new game
+     * @return the game
+     */
+    public Game createGame(GameClock clock) {
+        return new Game(cols, rows, clock, new PieceSource(seed, preview, bag));
+    }
+
+    /**
+     * Add an action
+     * @param time time of the action since the game started
+     * @param type type of the action
+     * @param first first argument, or 0
+     * @param second second argument, or 0
+     */
+    public void add(long time, int type, int first, int second) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            actions = Arrays.copyOf(actions, size * 2);
+        }
+        times[size] = time;
+        actions[size] = type | (first & 0xFF) << 8 | (second & 0xFF) << 16;
+        size++;
+    }
+
+    /**
+     * Write the header of a replay
+     * @param out where to write to
+     * @throws IOException if writing failed
+     */
+    void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(cols);
+        out.writeByte(rows);
+        out.writeLong(seed);
+        out.writeByte(preview);
+        out.writeBoolean(bag);
+    }
+
+    /**
+     * Write a single action
+     * @param out where to write to
+     * @param delta milliseconds since the previous action
+     * @param type type of the action
+     * @param first first argument
+     * @param second second argument
+     * @throws IOException if writing failed
+     */
+    static void writeAction(DataOutputStream out, long delta, int type, int first, int second) throws IOException {
+        long value = Math.max(delta, 0) << 3 | type;
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+
+        switch (type) {
+            case PLACE -> {
+                out.writeByte(first);
+                out.writeByte(second);
+            }
+            case ROTATE -> out.writeByte(first);
+        }
+    }
+
+    /**
+     * Write this whole replay
+     * @param stream where to write to
+     * @throws IOException if writing failed
+     */
+    public void write(OutputStream stream) throws IOException {
+        var out = new DataOutputStream(stream);
+        writeHeader(out);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeAction(out, times[i] - previous, getType(i), getFirst(i), getSecond(i));
+            previous = times[i];
+        }
+        writeAction(out, 0, END, 0, 0);
+        out.flush();
+    }
+
+    /**
+     * Read a replay. A replay cut off without its end, for example because the game crashed, is read up to the last
+     * complete action.
+     * @param stream where to read from
+     * @return the replay
+     * @throws IOException if reading failed or this is not a replay
+     */
+    public static Replay read(InputStream stream) throws IOException {
+        var in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC)
+            throw new IOException("Not a replay");
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported replay version: " + version);
+
+        var replay = new Replay(in.readUnsignedByte(), in.readUnsignedByte(), in.readLong(), in.readUnsignedByte(),
+                in.readBoolean());
+
+        long time = 0;
+        try {
+            while (true) {
+                long value = 0;
+                int shift = 0;
+                int b;
+                do {
+                    b = in.readUnsignedByte();
+                    value |= (long) (b & 0x7F) << shift;
+                    shift += 7;
+                } while ((b & 0x80) != 0);
+
+                int type = (int) (value & 7);
+                time += value >>> 3;
+                switch (type) {
+                    case END -> {
+                        return replay;
+                    }
+                    case PLACE -> replay.add(time, type, in.readUnsignedByte(), in.readUnsignedByte());
+                    case ROTATE -> replay.add(time, type, in.readUnsignedByte(), 0);
+                    case SWAP, TIMEOUT -> replay.add(time, type, 0, 0);
+                    default -> throw new IOException("Unknown replay action: " + type);
+                }
+            }
+        } catch (EOFException e) {
+            //Recording stopped without an end, keep what we have
+            return replay;
+        }
+    }
+
+    public int getCols() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the number of recorded actions
+     * @return number of actions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the time of an action
+     * @param index number of the action
+     * @return milliseconds since the game started
+     */
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    /**
+     * Get the type of an action
+     * @param index number of the action
+     * @return PLACE, ROTATE, SWAP or TIMEOUT
+     */
+    public int getType(int index) {
+        return actions[index] & 0xFF;
+    }
+
+    /**
+     * Get the first argument of an action
+     * @param index number of the action
+     * @return the column of a placement, or the quarter turns of a rotation
+     */
+    public int getFirst(int index) {
+        return actions[index] >>> 8 & 0xFF;
+    }
+
+    /**
+     * Get the second argument of an action
+     * @param index number of the action
+     * @return the row of a placement
+     */
+    public int getSecond(int index) {
+        return actions[index] >>> 16 & 0xFF;
+    }
+}
@@ -0,0 +1,107 @@
+package uk.ac.soton.comp1206.replay;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GameClock;
+import uk.ac.soton.comp1206.game.ManualClock;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The ReplayPlayer drives a headless game through the actions of a Replay, either as fast as possible or at the speed
+ * they were recorded at. The pieces come from the recorded seed, so the game ends up exactly where the recording did.
+ *
+ * Usage: ReplayPlayer FILE plays a replay as fast as possible and prints the result, for example to verify a score.
+ */
+public class ReplayPlayer {
+
+    /**
+     * The replay being played
+     */
+    private final Replay replay;
+
+    /**
+     * Create a new player for a replay
+     * @param replay the replay
+     */
+    public ReplayPlayer(Replay replay) {
+        this.replay = replay;
+    }
+
+    /**
+     * Play the whole replay as fast as possible on a new game
+     * @return the game after the last action
+     */
+    public Game play() {
+        var clock = new ManualClock(0);
+        var game = replay.createGame(clock);
+        game.start();
+        for (int i = 0; i < replay.size(); i++) {
+            clock.set(replay.getTime(i));
+            apply(game, i);
+        }
+        return game;
+    }
+
+    /**
+     * Play the whole replay on a new game at the speed it was recorded at, blocking the calling thread until done
+     * @param speed how much faster than recorded to play, 1 for the recorded speed
+     * @return the game after the last action
+     * @throws InterruptedException if interrupted while waiting for the next action
+     */
+    public Game playRealTime(double speed) throws InterruptedException {
+        var game = replay.createGame(GameClock.SYSTEM);
+        long start = System.currentTimeMillis();
+        game.start();
+        for (int i = 0; i < replay.size(); i++) {
+            long wait = start + (long) (replay.getTime(i) / speed) - System.currentTimeMillis();
+            if (wait > 0)
+                Thread.sleep(wait);
+            apply(game, i);
+        }
+        return game;
+    }
+
+    /**
+     * Apply a single action to the game
+     * @param game the game
+     * @param index number of the action
+     */
+    private void apply(Game game, int index) {
+        switch (replay.getType(index)) {
+            case Replay.PLACE -> {
+                if (!game.blockClicked(replay.getFirst(index), replay.getSecond(index)))
+                    throw new IllegalStateException("Replay does not match the game at action " + index);
+            }
+            case Replay.ROTATE -> game.rotateCurrentPiece(replay.getFirst(index));
+            case Replay.SWAP -> game.swapCurrentPiece();
+            case Replay.TIMEOUT -> game.gameLoop();
+        }
+    }
+
+    /**
+     * Play a replay file as fast as possible and print where the game ended
+     * @param args the replay file
+     * @throws IOException if the replay could not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1)
+            throw new IllegalArgumentException("Usage: ReplayPlayer FILE");
+
+        Replay replay;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(args[0]))) {
+            replay = Replay.read(in);
+        }
+
+        long start = System.nanoTime();
+        Game game = new ReplayPlayer(replay).play();
+        double millis = (System.nanoTime() - start) / 1e6;
+
+        System.out.printf("%d actions over %.1fs of play, replayed in %.1fms%n", replay.size(),
+                replay.size() == 0 ? 0 : replay.getTime(replay.size() - 1) / 1000.0, millis);
+        System.out.printf("score %d, level %d, lives %d, multiplier %d%n", game.getScore(), game.getLevel(),
+                game.getLives(), game.getMultiplier());
+    }
+}
@@ -0,0 +1,131 @@
+package uk.ac.soton.comp1206.replay;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.event.GameListener;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The ReplayRecorder writes every action of a game to a stream as it happens, in the format described by Replay. Attach
+ * it to a game before the game starts. The stream is flushed whenever a life is lost and closed when the game is over
+ * or stopped, so a recording is usable even if the game never finishes.
+ */
+public class ReplayRecorder implements GameListener {
+
+    private static final Logger logger = LogManager.getLogger(ReplayRecorder.class);
+
+    /**
+     * The game being recorded
+     */
+    private final Game game;
+
+    /**
+     * Where the recording goes
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Time of the previous action, the game's start time at first
+     */
+    private long previous;
+
+    /**
+     * Whether the recording was stopped
+     */
+    private boolean closed = false;
+
+    /**
+     * Start recording a game which has not started yet
+     * @param game the game to record
+     * @param stream where to write the recording to, closed when the recording ends
+     * @throws IOException if the header could not be written
+     */
+    public ReplayRecorder(Game game, OutputStream stream) throws IOException {
+        this.game = game;
+        this.out = new DataOutputStream(new BufferedOutputStream(stream));
+        this.previous = game.getClock().millis();
+
+        Replay.of(game).writeHeader(out);
+        game.addListener(this);
+    }
+
+    /**
+     * Write an action, stopping the recording if that fails
+     * @param type type of the action
+     * @param first first argument
+     * @param second second argument
+     */
+    private void record(int type, int first, int second) {
+        if (closed)
+            return;
+        long now = game.getClock().millis();
+        try {
+            Replay.writeAction(out, now - previous, type, first, second);
+        } catch (IOException e) {
+            logger.error("Unable to record replay: " + e.getMessage());
+            close();
+        }
+        previous = now;
+    }
+
+    @Override
+    public void piecePlaced(GamePiece gamePiece, int x, int y) {
+        record(Replay.PLACE, x, y);
+    }
+
+    @Override
+    public void pieceRotated(GamePiece gamePiece, int rotations) {
+        record(Replay.ROTATE, Math.floorMod(rotations, 4), 0);
+    }
+
+    @Override
+    public void piecesSwapped() {
+        record(Replay.SWAP, 0, 0);
+    }
+
+    @Override
+    public void lifeLost(int lives) {
+        record(Replay.TIMEOUT, 0, 0);
+        try {
+            out.flush();
+        } catch (IOException e) {
+            logger.error("Unable to record replay: " + e.getMessage());
+            close();
+        }
+    }
+
+    @Override
+    public void gameOver() {
+        close();
+    }
+
+    @Override
+    public void gameStopped() {
+        close();
+    }
+
+    /**
+     * Stop recording, end the replay and close the stream
+     */
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            Replay.writeAction(out, 0, Replay.END, 0, 0);
+        } catch (IOException e) {
+            logger.error("Unable to end replay: " + e.getMessage());
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.error("Unable to close replay: " + e.getMessage());
+        }
+    }
+}
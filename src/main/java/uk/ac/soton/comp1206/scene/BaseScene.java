@@ -33,6 +33,12 @@ public abstract class BaseScene {
      */
     public abstract void build();
 
+    /**
+     * Called when the scene is left for another one, to let go of anything it was listening to
+     */
+    public void cleanup() {
+    }
+
     /**
      * Create a new JavaFX scene using the root contained within this scene
      * @return JavaFX scene
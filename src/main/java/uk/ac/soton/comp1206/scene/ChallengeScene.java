@@ -1,6 +1,9 @@
 package uk.ac.soton.comp1206.scene;
 
 import javafx.animation.*;
+import javafx.application.Platform;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.scene.control.Label;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
@@ -9,30 +12,69 @@ import javafx.scene.text.Text;
 import javafx.util.Duration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.ai.Heuristic;
+import uk.ac.soton.comp1206.ai.Hint;
+import uk.ac.soton.comp1206.ai.HintEngine;
+import uk.ac.soton.comp1206.audio.GameSounds;
 import uk.ac.soton.comp1206.audio.Multimedia;
+import uk.ac.soton.comp1206.component.BoardView;
+import uk.ac.soton.comp1206.component.CanvasBoard;
+import uk.ac.soton.comp1206.component.FadeAnimator;
 import uk.ac.soton.comp1206.component.GameBlock;
 import uk.ac.soton.comp1206.component.GameBlockCoordinate;
 import uk.ac.soton.comp1206.component.GameBoard;
 import uk.ac.soton.comp1206.component.PieceBoard;
+import uk.ac.soton.comp1206.event.GameListener;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.GameScheduler;
 import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.LineClear;
+import uk.ac.soton.comp1206.replay.ReplayRecorder;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
-import java.util.Set;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 /**
  * The Single Player challenge scene. Holds the UI for the single player challenge mode in the game.
+ *
+ * The Game itself knows nothing about JavaFX, this scene is the adapter on top of it: it mirrors the game's values into
+ * properties for the UI, runs the game's timer and passes clicks and key presses on to the game.
  */
 public class ChallengeScene extends BaseScene {
 
     private static final Logger logger = LogManager.getLogger(MenuScene.class);
     protected Game game;
-    protected GameBoard gameBoard;
-    private GameBlock aim;
+    protected BoardView gameBoard;
+
+    /**
+     * The block the keyboard aims at
+     */
+    private int aimX;
+    private int aimY;
     private Rectangle gameLoopTimer;
+    private PieceBoard followingPieceBoard;
+
+    /**
+     * Says how to turn the pieces for the last hint, the game's pieces are left as they are
+     */
+    private Text hintText;
+    private ParallelTransition gameLoopAnimation;
     Label highScore;
 
+    private final IntegerProperty score = new SimpleIntegerProperty(0);
+    private final IntegerProperty level = new SimpleIntegerProperty(0);
+    private final IntegerProperty lives = new SimpleIntegerProperty(0);
+    private final IntegerProperty multiplier = new SimpleIntegerProperty(0);
+
+    /**
+     * Works out hints in the background, within one frame
+     */
+    private final HintEngine hintEngine = new HintEngine(Heuristic.DEFAULT, 16);
+
     /**
      * Create a new Single Player challenge scene
      * @param gameWindow the Game Window
@@ -66,21 +108,25 @@ public class ChallengeScene extends BaseScene {
         gameLoopTimer = new Rectangle (gameWindow.getWidth(), 20);
         mainPane.setTop(gameLoopTimer);
 
-        gameBoard = new GameBoard(game.getGrid(),gameWindow.getWidth()/2.0,gameWindow.getWidth()/2.0);
-        aim = gameBoard.getBlock(game.getCols()/2, game.getRows()/2);
+        //Keep the blocks square, whatever the shape of the board
+        double blockSize = gameWindow.getWidth()/2.0 / Math.max(game.getCols(), game.getRows());
+        gameBoard = createBoard(blockSize * game.getCols(), blockSize * game.getRows());
+        aimX = game.getCols()/2;
+        aimY = game.getRows()/2;
         setIndicatorForAim(true);
-        mainPane.setCenter(gameBoard);
+        mainPane.setCenter(gameBoard.getNode());
 
         // adding the small pieceBoard to the scene which shows the next upcoming piece into gamewindow of challengescene
         PieceBoard pieceBoard = new PieceBoard(new Grid(3, 3), gameWindow.getWidth()/4.0,gameWindow.getWidth()/4.0);
-        PieceBoard followingPieceBoard = new PieceBoard(new Grid(3, 3), gameWindow.getWidth()/6.0,gameWindow.getWidth()/6.0);
+        followingPieceBoard = new PieceBoard(new Grid(3, 3), gameWindow.getWidth()/6.0,gameWindow.getWidth()/6.0);
 
 
         //display all the UI values
+        updateValues();
         var scoreText = new Text("score:");
         scoreText.getStyleClass().add("text");
         var score = new Text();
-        score.textProperty().bind(game.scoreProperty().asString());
+        score.textProperty().bind(this.score.asString());
         score.getStyleClass().add("value");
 
         var highScoreText = new Text("highscore:");
@@ -91,28 +137,32 @@ public class ChallengeScene extends BaseScene {
         var levelText = new Text("level:");
         levelText.getStyleClass().add("text");
         var level = new Text();
-        level.textProperty().bind(game.levelProperty().asString());
+        level.textProperty().bind(this.level.asString());
         level.getStyleClass().add("value");
 
         var livesText = new Text("lives:");
         livesText.getStyleClass().add("text");
         var lives = new Text();
-        lives.textProperty().bind(game.livesProperty().asString());
+        lives.textProperty().bind(this.lives.asString());
         lives.getStyleClass().add("value");
 
         var multiplierText = new Text("multiplier:");
         multiplierText.getStyleClass().add("text");
         var multiplier = new Text();
-        multiplier.textProperty().bind(game.multiplierProperty().asString());
+        multiplier.textProperty().bind(this.multiplier.asString());
         multiplier.getStyleClass().add("value");
 
-        VBox pieceBoardsAndScore = new VBox(highScoreText, highScore, scoreText, score, levelText,  level, pieceBoard, followingPieceBoard);
+        hintText = new Text();
+        hintText.getStyleClass().add("text");
+
+        VBox pieceBoardsAndScore = new VBox(highScoreText, highScore, scoreText, score, levelText,  level, pieceBoard,
+                followingPieceBoard, hintText);
         VBox uiValues = new VBox(livesText,  lives, multiplierText, multiplier);
         mainPane.setLeft(uiValues);
         mainPane.setRight(pieceBoardsAndScore);
 
         //Handle block on gameboard grid being clicked
-        gameBoard.setOnBlockClick(this::blockClicked);
+        gameBoard.setOnCellClicked(this::blockClicked);
         pieceBoard.setOnRotate(this::rotateBlock);
         followingPieceBoard.setOnSwap(this::swapPieces);
 
@@ -121,6 +171,39 @@ public class ChallengeScene extends BaseScene {
         game.setFollowingPieceListener(followingPieceBoard::nextPiece);
         game.setLineClearedListener(this::clearLines);
         game.setGameLoopListener(this::startGameLoop);
+        game.addListener(new GameSounds());
+        game.addListener(new GameListener() {
+            @Override
+            public void scoreChanged(int score, int multiplier) {
+                updateValues();
+            }
+
+            @Override
+            public void levelChanged(int level) {
+                updateValues();
+            }
+
+            @Override
+            public void lifeLost(int lives) {
+                updateValues();
+            }
+
+            //a hint is only right for the pieces it was worked out for
+            @Override
+            public void piecePlaced(GamePiece gamePiece, int x, int y) {
+                clearHint();
+            }
+
+            @Override
+            public void pieceRotated(GamePiece gamePiece, int rotations) {
+                clearHint();
+            }
+
+            @Override
+            public void piecesSwapped() {
+                clearHint();
+            }
+        });
 
         //getting a new Piece now, that a NextPieceListener is attached
         game.nextPiece();
@@ -129,16 +212,49 @@ public class ChallengeScene extends BaseScene {
 
     }
 
+    /**
+     * Create the board showing the game's grid. Large boards are painted on a single canvas, since a GameBlock per
+     * block makes the scene graph too big; -Dtetrecs.renderer=blocks or =canvas picks one regardless of the size.
+     * @param width the visual width
+     * @param height the visual height
+     * @return the board
+     */
+    private BoardView createBoard(double width, double height) {
+        String renderer = System.getProperty("tetrecs.renderer", "auto");
+        boolean canvas = switch (renderer) {
+            case "canvas" -> true;
+            case "blocks" -> false;
+            default -> game.getCols() * game.getRows() > 100;
+        };
+        logger.info("Using {} renderer", canvas ? "canvas" : "blocks");
+        if (canvas)
+            return new CanvasBoard(game.getGrid(), width, height);
+        return new GameBoard(game.getGrid(), width, height);
+    }
+
     /**
      * Handle when a block is clicked
-     * @param gameBlock the Game Block that was clocked
+     * @param coordinate the column and row of the block that was clicked
      */
-    private void blockClicked(GameBlock gameBlock) {
-        if (gameBlock.getGameBoard().equals(gameBoard)) {
-            setIndicatorForAim(false);
-            aim = gameBlock;
-        }
-        game.blockClicked(gameBlock);
+    private void blockClicked(GameBlockCoordinate coordinate) {
+        setIndicatorForAim(false);
+        aimX = coordinate.getX();
+        aimY = coordinate.getY();
+        game.blockClicked(aimX, aimY);
+    }
+
+    /**
+     * copy the values of the game into the properties shown in the UI
+     */
+    private void updateValues() {
+        boolean scored = score.get() != game.getScore();
+        score.set(game.getScore());
+        level.set(game.getLevel());
+        lives.set(game.getLives());
+        multiplier.set(game.getMultiplier());
+
+        if (scored && highScore != null && game.getScore() > ScoresScene.getHighScore())
+            highScore.textProperty().bind(score.asString());
     }
 
     /**
@@ -158,30 +274,16 @@ public class ChallengeScene extends BaseScene {
     }
 
     /**
-     * the main thread fades out the blocks while a new one waits this time and only puts in something afterwards
-     * @param blockCoordinates all the blocks that must be erased
+     * fade out the blocks the game just cleared
+     * @param lineClear the lines/rows that were cleared
      */
-    private void clearLines(Set<GameBlockCoordinate> blockCoordinates) {
-        gameBoard.fadeOut(blockCoordinates);
-
-        Thread gridReset = new Thread(() -> {
-            try {
-                Thread.sleep(250);
-                for (GameBlockCoordinate blockCoordinate :
-                        blockCoordinates) {
-                    game.getGrid().set(blockCoordinate.getX(), blockCoordinate.getY(), 0);
-                }
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        });
-        gridReset.start();
-        if (game.getScore() > ScoresScene.getHighScore())
-            highScore.textProperty().bind(game.scoreProperty().asString());
+    private void clearLines(LineClear lineClear) {
+        gameBoard.fadeOut(lineClear);
     }
 
     /**
-     * two Transitions work parallel to shrink it and change color at the same time
+     * two Transitions work parallel to shrink it and change color at the same time.
+     * The game's timer itself runs on the shared GameScheduler, this only shows it.
      * @param timerDelay the Time this Timer should take
      */
     public void startGameLoop(int timerDelay, int lives) {
@@ -189,6 +291,7 @@ public class ChallengeScene extends BaseScene {
             gameWindow.startScores(game);
             return;
         }
+
         final int CYCLE_COUNT = 100;
 
         FillTransition fillTransition = new FillTransition(Duration.millis(timerDelay), Color.GREEN, Color.RED);
@@ -199,15 +302,89 @@ public class ChallengeScene extends BaseScene {
         scaleTransition.setToX(0);
         scaleTransition.setCycleCount(CYCLE_COUNT);
 
-        ParallelTransition parallelTransition = new ParallelTransition(gameLoopTimer, fillTransition, scaleTransition);
-        parallelTransition.play();
+        if (gameLoopAnimation != null)
+            gameLoopAnimation.stop();
+        gameLoopAnimation = new ParallelTransition(gameLoopTimer, fillTransition, scaleTransition);
+        gameLoopAnimation.play();
+    }
+
+    /**
+     * Ask the hint engine for the best move in the background, and show it once it arrives
+     */
+    private void showHint() {
+        //the hint has to see the grid without the lines that are about to go
+        game.flushClear();
+        hintEngine.suggest(game).thenAccept((hint) -> Platform.runLater(() -> showHint(hint)));
+    }
+
+    /**
+     * Show a hint: move the aim to where the piece should go, mark the following piece if it should be swapped in, and
+     * say how to turn it. The pieces themselves are left alone, following the hint is up to the player.
+     * Hints which arrive after the player has already moved on are dropped.
+     * @param hint the hint
+     */
+    private void showHint(Hint hint) {
+        if (hint.getMove() == null || !hint.isFor(game) || game.isOver())
+            return;
+        logger.info("Hint: " + hint);
+
+        var move = hint.getMove();
+        followingPieceBoard.getBlock(1, 1).setHasIndicator(move.isSwap());
+        String turn = move.getRotations() == 0 ? "" : "rotate " + move.getRotations();
+        if (move.isSwap())
+            hintText.setText(turn.isEmpty() ? "hint: swap" : "hint: swap, " + turn);
+        else
+            hintText.setText(turn.isEmpty() ? "hint: place" : "hint: " + turn);
+
+        setIndicatorForAim(false);
+        aimX = move.getX();
+        aimY = move.getY();
+        setIndicatorForAim(true);
+    }
+
+    /**
+     * take the last hint off the piece boards, once the pieces changed
+     */
+    private void clearHint() {
+        if (hintText == null || hintText.getText().isEmpty())
+            return;
+        hintText.setText("");
+        followingPieceBoard.getBlock(1, 1).setHasIndicator(false);
+    }
+
+    /**
+     * Move the aim by the given offset, as long as it stays on the board
+     * @param dx columns to move
+     * @param dy rows to move
+     */
+    private void moveAim(int dx, int dy) {
+        int x = aimX + dx;
+        int y = aimY + dy;
+        if (x < 0 || x >= game.getCols() || y < 0 || y >= game.getRows())
+            return;
+        setIndicatorForAim(false);
+        aimX = x;
+        aimY = y;
     }
 
     /**
      * @param hasIndicator puts a new Indicator for the aim, whenever Keyboard controls are used and out otherwise
      */
     private void setIndicatorForAim(boolean hasIndicator) {
-        this.aim.setHasIndicator(hasIndicator);
+        gameBoard.setIndicator(aimX, aimY, hasIndicator);
+    }
+
+    /**
+     * Leaving the game, by ESCAPE or once it is over: stop the game and let go of its grid, so the boards and their
+     * fades do not outlive the scene
+     */
+    @Override
+    public void cleanup() {
+        if (!game.isOver())
+            game.stop();
+        if (gameLoopAnimation != null)
+            gameLoopAnimation.stop();
+        gameBoard.detach();
     }
 
     /**
@@ -216,8 +393,39 @@ public class ChallengeScene extends BaseScene {
     public void setupGame() {
         logger.info("Starting a new challenge");
 
-        //Start new game
-        game = new Game(5, 5);
+        //Start new game, 5x5 unless another size is asked for with -Dtetrecs.size=COLSxROWS
+        int cols = 5;
+        int rows = 5;
+        String size = System.getProperty("tetrecs.size");
+        if (size != null) {
+            try {
+                String[] dimensions = size.split("x");
+                cols = Integer.parseInt(dimensions[0].trim());
+                rows = Integer.parseInt(dimensions[1].trim());
+                if (cols < 1 || cols > Grid.MAX_SIZE || rows < 1 || rows > Grid.MAX_SIZE)
+                    throw new IllegalArgumentException("must be between 1 and " + Grid.MAX_SIZE);
+            } catch (RuntimeException e) {
+                logger.error("Invalid board size " + size + ": " + e.getMessage());
+                cols = 5;
+                rows = 5;
+            }
+        }
+        game = new Game(cols, rows);
+        //finished lines stay on the board for a moment while they fade, and the fade takes exactly that long
+        game.setClearDelay(250);
+        FadeAnimator.getShared().setDuration(Duration.millis(game.getClearDelay()));
+
+        //Record the game if asked to
+        String replays = System.getProperty("tetrecs.replays");
+        if (replays != null) {
+            var file = new File(replays, "replay-" + System.currentTimeMillis() + ".trpl");
+            try {
+                new ReplayRecorder(game, new FileOutputStream(file));
+                logger.info("Recording replay to " + file);
+            } catch (IOException e) {
+                logger.error("Unable to record replay: " + e.getMessage());
+            }
+        }
     }
 
     /**
@@ -227,6 +435,7 @@ public class ChallengeScene extends BaseScene {
     public void initialise() {
         logger.info("Initialising Challenge");
         Multimedia.playMusic("game.wav");
+        game.schedule(GameScheduler.getShared(), Platform::runLater);
         game.start();
 
         //keyboard events
@@ -235,37 +444,19 @@ public class ChallengeScene extends BaseScene {
                 case E, C, J -> game.rotateCurrentPiece(1);
                 case Q, Z, I -> game.rotateCurrentPiece(3);
                 case SPACE, R -> game.swapCurrentPiece();
-                case W, UP -> {
-                    if (aim.getY() == 0)
-                        return;
-                    aim.setHasIndicator(false);
-                    aim = gameBoard.getBlock(aim.getX(), aim.getY() - 1);
-                }
-                case A, LEFT -> {
-                    if (aim.getX() == 0)
-                        return;
-                    aim.setHasIndicator(false);
-                    aim = gameBoard.getBlock(aim.getX() - 1, aim.getY());
-                }
-                case S, DOWN -> {
-                    if (aim.getY() == 4)
-                        return;
-                    aim.setHasIndicator(false);
-                    aim = gameBoard.getBlock(aim.getX(), aim.getY() + 1);
-                }
-                case D, RIGHT -> {
-                    if (aim.getX() == 4)
-                        return;
-                    aim.setHasIndicator(false);
-                    aim = gameBoard.getBlock(aim.getX() + 1, aim.getY());
-                }
-                case ENTER, X -> this.blockClicked(aim);
+                case W, UP -> moveAim(0, -1);
+                case A, LEFT -> moveAim(-1, 0);
+                case S, DOWN -> moveAim(0, 1);
+                case D, RIGHT -> moveAim(1, 0);
+                case ENTER, X -> game.blockClicked(aimX, aimY);
+                case H -> showHint();
                 case ESCAPE -> {
+                    //leaving the scene stops the game, see cleanup()
                     gameWindow.startMenu();
                     Multimedia.playAudio("transition.wav");
                 }
             }
-            aim.setHasIndicator(true);
+            setIndicatorForAim(true);
         });
     }
 
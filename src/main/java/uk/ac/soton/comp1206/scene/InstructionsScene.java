@@ -1,6 +1,5 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
@@ -8,6 +7,7 @@ import javafx.scene.layout.StackPane;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.audio.Multimedia;
+import uk.ac.soton.comp1206.ui.AssetManager;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 
@@ -50,8 +50,9 @@ public class InstructionsScene extends BaseScene{
         root.getChildren().add(instructionsPane);
 
         //setting the instruction image to fit the gamewindow
-        String toShow =	Multimedia.class.getResource("/images/Instructions.png").toExternalForm();
-        ImageView instructionsImage = new ImageView(new Image(toShow));
+        ImageView instructionsImage = new ImageView();
+        AssetManager.whenLoaded(AssetManager.getShared().image("/images/Instructions.png", AssetManager.Priority.HIGH),
+                instructionsImage::setImage);
         instructionsImage.setFitHeight(gameWindow.getHeight());
         instructionsImage.setFitWidth(gameWindow.getWidth());
         instructionsPane.setCenter(instructionsImage);
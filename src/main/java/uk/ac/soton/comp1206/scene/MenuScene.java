@@ -5,7 +5,6 @@ import javafx.animation.TranslateTransition;
 import javafx.event.ActionEvent;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.*;
@@ -15,6 +14,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.audio.Multimedia;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.ui.AssetManager;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.ScoresList;
@@ -57,7 +57,9 @@ public class MenuScene extends BaseScene {
         menuPane.getChildren().add(mainPane);
 
 
-        title = new ImageView(new Image(this.getClass().getResource("/images/TetrECS.png").toExternalForm()));
+        title = new ImageView();
+        AssetManager.whenLoaded(AssetManager.getShared().image("/images/TetrECS.png", AssetManager.Priority.CRITICAL),
+                title::setImage);
         title.setPreserveRatio(true);
         title.setFitWidth(700);
 
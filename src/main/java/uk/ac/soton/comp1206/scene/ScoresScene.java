@@ -1,33 +1,26 @@
 package uk.ac.soton.comp1206.scene;
 
-import javafx.beans.property.SimpleListProperty;
-import javafx.collections.FXCollections;
-import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
-import javafx.util.Pair;
+import javafx.scene.layout.HBox;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.audio.Multimedia;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.scores.ScoreStore;
 import uk.ac.soton.comp1206.ui.GamePane;
 import uk.ac.soton.comp1206.ui.GameWindow;
 import uk.ac.soton.comp1206.ui.ScoresList;
 
-import java.io.*;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Scanner;
-
 public class ScoresScene extends BaseScene{
 
     private static final Logger logger = LogManager.getLogger(ScoresScene.class);
 
     Game game;
-    SimpleListProperty<Pair<String, Integer>> localScores;
+    ScoresList scoresList;
     TextField playerName;
+    TextField rank;
 
-    static File scoresDataBase = new File("newscores.txt");
     /**
      * Create a new scene, passing in the GameWindow the scene will be displayed in
      *
@@ -38,8 +31,6 @@ public class ScoresScene extends BaseScene{
         super(gameWindow);
         this.game = game;
         logger.info("Creating Scores Scene");
-        List<Pair<String, Integer>> burger = new ArrayList<>();
-        localScores = new SimpleListProperty<>(FXCollections.observableArrayList(burger));
     }
 
     @Override
@@ -49,8 +40,8 @@ public class ScoresScene extends BaseScene{
         this.getScene().setOnKeyPressed(keyEvent -> {
             switch (keyEvent.getCode()) {
                 case ENTER -> {
-                    localScores.get().add(new Pair<>(playerName.getText(), game.getScore()));
-                    writeScores();
+                    //the store writes the scores back in the background
+                    ScoreStore.getShared().add(playerName.getText(), game.getScore());
                     gameWindow.startMenu();
                 }
                 case ESCAPE -> {
@@ -74,80 +65,43 @@ public class ScoresScene extends BaseScene{
         menuPane.getStyleClass().add("menu-background");
         root.getChildren().add(menuPane);
 
-        ScoresList scoresList = new ScoresList();
-        scoresList.scoresProperty().bind(localScores);
-        ListView<Pair<String, Integer>> showingList = scoresList.reveal();
-        showingList.itemsProperty().bind(scoresList.scoresProperty());
-        menuPane.setCenter(showingList);
-
-
-        loadScores();
+        //only the rows on screen are fetched from the store, however long the leaderboard is
+        ScoreStore store = ScoreStore.getShared();
+        scoresList = new ScoresList(store);
+        scoresList.jumpTo(store.rankOf(game.getScore()));
+        menuPane.setCenter(scoresList);
 
         playerName = new TextField();
-        menuPane.setBottom(playerName);
-    }
-
-    /**
-     * reading the Scores from the newscores.txt File
-     */
-    private void loadScores(){
-        Scanner myReader = null;
-        try {
-            myReader = new Scanner(scoresDataBase);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-        assert myReader != null;
-        while (myReader.hasNextLine()) {
-            String line = myReader.nextLine();
-            String [] splitLine = line.split("-");
-            String name = splitLine[0];
-            Integer score = Integer.valueOf(splitLine[1]);
-
-            int i = 0;
-            for (; i < localScores.size(); i++) {
-                if (localScores.get(i).getValue() < score)
-                    break;
-            }
+        playerName.setPromptText("Name");
+
+        rank = new TextField();
+        rank.setPromptText("Go to rank");
+        rank.setOnAction(event -> {
+            jumpTo(rank.getText());
+            //don't let the scene take ENTER as saving the score
+            event.consume();
+        });
 
-            localScores.get().add(i, new Pair<>(name, score));
-        }
+        var bottom = new HBox(playerName, rank);
+        menuPane.setBottom(bottom);
     }
+
     /**
-     * writing the scores to the newscores.txt File
+     * scroll the leaderboard to the rank typed in, if it is a number
+     * @param text the rank typed in
      */
-    private void writeScores() {
-        BufferedWriter fileWriter;
+    private void jumpTo(String text) {
         try {
-            fileWriter = new BufferedWriter(new FileWriter(scoresDataBase));
-            for (Pair<String, Integer> localScore : localScores) {
-                fileWriter.write(localScore.getKey() + "-" + localScore.getValue());
-                fileWriter.newLine();
-            }
-            fileWriter.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+            scoresList.jumpTo(Integer.parseInt(text.trim()));
+        } catch (NumberFormatException e) {
+            logger.info("Not a rank: " + text);
         }
     }
 
     /**
-     * @return the highest Score from the newscores.txt File for the Challenge scene
+     * @return the highest Score for the Challenge scene, straight from the shared ScoreStore
      */
     public static int getHighScore() {
-        int returnValue = 0;
-        Scanner myReader = null;
-        try {
-            myReader = new Scanner(scoresDataBase);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-        }
-        assert myReader != null;
-        while (myReader.hasNextLine()) {
-            String line = myReader.nextLine();
-            String [] splitLine = line.split("-");
-            int score = Integer.parseInt(splitLine[1]);
-            returnValue = Math.max(returnValue, score);
-        }
-        return returnValue;
+        return ScoreStore.getShared().getBest();
     }
 }
@@ -0,0 +1,48 @@
+package uk.ac.soton.comp1206.scores;
+
+/**
+ * A Score is a single entry of the leaderboard: the name of a player and the score they reached
+ */
+public class Score {
+
+    /**
+     * Name of the player
+     */
+    private final String name;
+
+    /**
+     * The score reached
+     */
+    private final int score;
+
+    /**
+     * Create a new Score
+     * @param name name of the player
+     * @param score the score reached
+     */
+    public Score(String name, int score) {
+        this.name = name;
+        this.score = score;
+    }
+
+    /**
+     * Get the name of the player
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the score reached
+     * @return score
+     */
+    public int getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return name + "-" + score;
+    }
+}
@@ -0,0 +1,253 @@
+package uk.ac.soton.comp1206.scores;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A ScoreFile is a leaderboard stored in a binary file which is memory-mapped instead of read, so opening it takes the
+ * same time however many scores it holds. Only the scores which are actually looked at are ever touched.
+ *
+ * The file is laid out as:
+ * <ul>
+ *     <li>a header of HEADER bytes: the magic number, the version, the number of scores and the sequence number of the
+ *     last journal entry the file contains (see ScoreStore)</li>
+ *     <li>one fixed size record of RECORD bytes per score, best first: the score, and the offset and length of the
+ *     name in the name table</li>
+ *     <li>the name table, every name in UTF-8, one after the other</li>
+ * </ul>
+ * Because the records are sorted and all the same size, the score at any rank and the rank of any score are found
+ * without reading anything else. A ScoreFile never changes once written.
+ */
+public class ScoreFile {
+
+    /**
+     * Marks a leaderboard file, "TECS"
+     */
+    public static final int MAGIC = 0x54454353;
+
+    /**
+     * Version of the layout
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Size of the header in bytes
+     */
+    public static final int HEADER = 24;
+
+    /**
+     * Size of a record in bytes
+     */
+    public static final int RECORD = 12;
+
+    /**
+     * A file without any scores
+     */
+    private static final ScoreFile EMPTY = new ScoreFile(ByteBuffer.allocate(0), 0, 0);
+
+    /**
+     * The mapped file, never changed, only read with absolute gets so it can be shared between threads
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of scores
+     */
+    private final int count;
+
+    /**
+     * Sequence number of the last journal entry the file contains
+     */
+    private final long sequence;
+
+    /**
+     * Where the name table starts
+     */
+    private final int names;
+
+    private ScoreFile(ByteBuffer buffer, int count, long sequence) {
+        this.buffer = buffer;
+        this.count = count;
+        this.sequence = sequence;
+        this.names = HEADER + count * RECORD;
+    }
+
+    /**
+     * Get a file without any scores
+     * @return the empty file
+     */
+    public static ScoreFile empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Map a leaderboard file
+     * @param path the file
+     * @return the mapped file
+     * @throws IOException if the file cannot be read or is not a leaderboard file
+     */
+    public static ScoreFile open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER || size > Integer.MAX_VALUE)
+                throw new IOException("Not a leaderboard file: " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.BIG_ENDIAN);
+        }
+
+        if (buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a leaderboard file: " + path);
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unknown leaderboard version " + buffer.getInt(4) + ": " + path);
+        int count = buffer.getInt(8);
+        if (count < 0 || HEADER + (long) count * RECORD > buffer.capacity())
+            throw new IOException("Leaderboard file is cut short: " + path);
+        //The names are written in order, so the last one ends the file
+        int last = HEADER + (count - 1) * RECORD;
+        if (count > 0 && HEADER + (long) count * RECORD + buffer.getInt(last + 4) + buffer.getInt(last + 8)
+                > buffer.capacity())
+            throw new IOException("Leaderboard file is cut short: " + path);
+        return new ScoreFile(buffer, count, buffer.getLong(12));
+    }
+
+    /**
+     * Write a leaderboard file
+     * @param path the file, which is replaced
+     * @param scores the scores, best first
+     * @param count number of scores
+     * @param sequence sequence number of the last journal entry the scores contain
+     * @throws IOException if writing failed
+     */
+    public static void write(Path path, Iterator<Score> scores, int count, long sequence) throws IOException {
+        ByteBuffer records = ByteBuffer.allocate(HEADER + count * RECORD);
+        records.putInt(MAGIC).putInt(VERSION).putInt(count).putLong(sequence).putInt(0);
+
+        ByteArrayOutputStream table = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            Score score = scores.next();
+            byte[] name = score.getName().getBytes(StandardCharsets.UTF_8);
+            records.putInt(score.getScore()).putInt(table.size()).putInt(name.length);
+            table.write(name);
+        }
+        records.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (records.hasRemaining())
+                channel.write(records);
+            ByteBuffer names = ByteBuffer.wrap(table.toByteArray());
+            while (names.hasRemaining())
+                channel.write(names);
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Get the number of scores
+     * @return number of scores
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Get the sequence number of the last journal entry this file contains
+     * @return sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get a score, without reading its name
+     * @param index position of the score, 0 for the best
+     * @return the score
+     */
+    public int getScore(int index) {
+        return buffer.getInt(record(index));
+    }
+
+    /**
+     * Get the name a score was reached by
+     * @param index position of the score, 0 for the best
+     * @return the name
+     */
+    public String getName(int index) {
+        int record = record(index);
+        int offset = buffer.getInt(record + 4);
+        int length = buffer.getInt(record + 8);
+        return StandardCharsets.UTF_8.decode(buffer.slice(names + offset, length)).toString();
+    }
+
+    /**
+     * Get a score and its name
+     * @param index position of the score, 0 for the best
+     * @return the score
+     */
+    public Score get(int index) {
+        return new Score(getName(index), getScore(index));
+    }
+
+    /**
+     * Count the scores at least as good as the given one, with a binary search over the records
+     * @param score the score
+     * @return number of scores greater than or equal to it
+     */
+    public int countAtLeast(int score) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getScore(middle) >= score)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Get a list which reads the scores straight from the file when they are asked for
+     * @return the scores, best first
+     */
+    public List<Score> asList() {
+        return new ScoreList();
+    }
+
+    /**
+     * Find the record of a score
+     * @param index position of the score
+     * @return offset of its record
+     */
+    private int record(int index) {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("No score " + index + " in " + count);
+        return HEADER + index * RECORD;
+    }
+
+    /**
+     * A read only view of the records
+     */
+    private class ScoreList extends AbstractList<Score> implements RandomAccess {
+
+        @Override
+        public Score get(int index) {
+            return ScoreFile.this.get(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
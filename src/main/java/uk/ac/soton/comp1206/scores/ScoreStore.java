@@ -0,0 +1,710 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ScoreStore holds every local score, sorted from best to worst, so nobody asking for a score ever waits for the
+ * disk.
+ *
+ * The scores are split in two: the checkpoint, a memory-mapped ScoreFile which is opened without reading it, and the
+ * scores added since, which are kept in memory. The best score and the score at any rank are found in both by binary
+ * search, so asking for them does not depend on how many scores there are. Equal scores keep the order they were added
+ * in, the checkpoint holds the older ones.
+ *
+ * On disk the scores are kept so that losing power at any moment loses at most the scores which were not written yet:
+ * <ul>
+ *     <li>The checkpoint says which journal entries it already contains. It is never changed in place: every new
+ *     checkpoint is a new generation (scores.1.bin, scores.2.bin, ...), written to a temporary file, synced and
+ *     renamed. The one in use stays mapped, and a mapped file cannot be replaced or deleted on every platform, so
+ *     older generations are deleted once they can be. A scores.bin from before there were generations counts as
+ *     generation 0.</li>
+ *     <li>The journal (scores.bin.journal) gets a "N name-score" line appended for every new score, with a rising
+ *     sequence number N. The score is everything after the last '-', so names may contain '-' themselves. All scores
+ *     added while the previous append was being synced go in one append and one sync.</li>
+ * </ul>
+ * Once the journal holds enough entries, the background thread merges them into a new checkpoint and empties the
+ * journal. On startup the checkpoint is mapped and every complete journal entry after its sequence number is replayed;
+ * a line torn by a crash is cut off.
+ *
+ * The first time the store starts without a checkpoint, the old text leaderboard (newscores.txt, one "name-score" line
+ * per score) and its journal are turned into one, and the text file is renamed so it is not migrated again.
+ */
+public class ScoreStore {
+
+    private static final Logger logger = LogManager.getLogger(ScoreStore.class);
+
+    /**
+     * The file the game keeps its scores in
+     */
+    public static final Path DEFAULT_FILE = Path.of("scores.bin");
+
+    /**
+     * The text file the game used to keep its scores in
+     */
+    public static final Path LEGACY_FILE = Path.of("newscores.txt");
+
+    /**
+     * Number of journal entries after which a new checkpoint is written
+     */
+    public static final int DEFAULT_COMPACT_AFTER = 1000;
+
+    /**
+     * Starts the line of a text checkpoint saying which journal entries it contains
+     */
+    private static final String SEQUENCE_HEADER = "#sequence ";
+
+    /**
+     * Best scores first, a stable sort keeps equal scores in the order they were added
+     */
+    private static final Comparator<Score> BEST_FIRST = (a, b) -> Integer.compare(b.getScore(), a.getScore());
+
+    /**
+     * The store shared by the whole game
+     */
+    private static ScoreStore shared;
+
+    /**
+     * The checkpoint file the generations are named after
+     */
+    private final Path file;
+
+    /**
+     * The text file to migrate from, or null
+     */
+    private final Path legacyFile;
+
+    /**
+     * The journal file
+     */
+    private final Path journalFile;
+
+    /**
+     * Number of journal entries after which a new checkpoint is written
+     */
+    private final int compactAfter;
+
+    /**
+     * The mapped checkpoint
+     */
+    private ScoreFile base = ScoreFile.empty();
+
+    /**
+     * Generation of the mapped checkpoint, only used by the writer once the store is open
+     */
+    private long generation = 0;
+
+    /**
+     * The scores added since the checkpoint, best first
+     */
+    private final List<Entry> recent = new ArrayList<>();
+
+    /**
+     * Journal lines of the scores added but not appended to the journal yet
+     */
+    private final List<String> pending = new ArrayList<>();
+
+    /**
+     * Sequence number of the last score added
+     */
+    private long sequence = 0;
+
+    /**
+     * Number of entries in the journal, only used by the writer
+     */
+    private int journalled = 0;
+
+    /**
+     * The journal, open for appending, only used by the writer
+     */
+    private FileChannel journal;
+
+    /**
+     * Appends to the journal and writes checkpoints, one at a time
+     */
+    private final ExecutorService writer = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "Score Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Whether a write is already queued, which will pick up any score added before it starts
+     */
+    private final AtomicBoolean writeQueued = new AtomicBoolean();
+
+    /**
+     * Create a new store and open the scores in the given checkpoint and its journal, if they exist
+     * @param file the checkpoint file, the journal is next to it
+     */
+    public ScoreStore(Path file) {
+        this(file, null, DEFAULT_COMPACT_AFTER);
+    }
+
+    /**
+     * Create a new store and open the scores in the given checkpoint and its journal, if they exist
+     * @param file the checkpoint file, the journal is next to it
+     * @param legacyFile text file to migrate from when there is no checkpoint yet, or null
+     * @param compactAfter number of journal entries after which a new checkpoint is written
+     */
+    public ScoreStore(Path file, Path legacyFile, int compactAfter) {
+        this.file = file;
+        this.legacyFile = legacyFile;
+        this.journalFile = journalOf(file);
+        this.compactAfter = compactAfter;
+
+        long start = System.nanoTime();
+        if (legacyFile != null && generations().isEmpty() && Files.exists(legacyFile))
+            migrate();
+        openCheckpoint();
+
+        sequence = Math.max(base.getSequence(), replay(journalFile, base.getSequence(), recent));
+        recent.sort(BEST_FIRST);
+        journalled = recent.size();
+        logger.info("Opened {} scores, {} from the journal, in {}ms", size(), journalled,
+                (System.nanoTime() - start) / 1_000_000);
+
+        if (journalled >= compactAfter)
+            requestWrite();
+    }
+
+    /**
+     * Get the store shared by the whole game, opening the scores the first time
+     * @return the shared store
+     */
+    public static synchronized ScoreStore getShared() {
+        if (shared == null)
+            shared = new ScoreStore(DEFAULT_FILE, LEGACY_FILE, DEFAULT_COMPACT_AFTER);
+        return shared;
+    }
+
+    /**
+     * Get the best score
+     * @return the best score, 0 when there are no scores
+     */
+    public synchronized int getBest() {
+        int best = base.size() > 0 ? base.getScore(0) : 0;
+        return recent.isEmpty() ? best : Math.max(best, recent.get(0).getScore());
+    }
+
+    /**
+     * Get the rank a score would get, counting from 1. Scores equal to ones already in the store rank below them.
+     * @param score the score
+     * @return the rank
+     */
+    public synchronized int rankOf(int score) {
+        return base.countAtLeast(score) + insertionPoint(score) + 1;
+    }
+
+    /**
+     * Get the number of scores
+     * @return number of scores
+     */
+    public synchronized int size() {
+        return base.size() + recent.size();
+    }
+
+    /**
+     * Get the score at a rank
+     * @param rank the rank, counting from 1
+     * @return the score
+     */
+    public synchronized Score get(int rank) {
+        if (rank < 1 || rank > size())
+            throw new IndexOutOfBoundsException("No rank " + rank + " in " + size());
+
+        //The score is the later of the last recent and the last checkpoint score among the first rank scores
+        int i = recentBefore(rank);
+        int j = rank - i;
+        if (i == 0)
+            return base.get(j - 1);
+        if (j == 0 || base.getScore(j - 1) >= recent.get(i - 1).getScore())
+            return recent.get(i - 1);
+        return base.get(j - 1);
+    }
+
+    /**
+     * Get the best scores
+     * @param count how many scores to get at most
+     * @return the best scores, best first
+     */
+    public synchronized List<Score> getTop(int count) {
+        return getRange(1, count);
+    }
+
+    /**
+     * Get the scores from a rank on, without going through the better ones
+     * @param rank rank of the first score, counting from 1
+     * @param count how many scores to get at most
+     * @return the scores, best first
+     */
+    public synchronized List<Score> getRange(int rank, int count) {
+        int first = Math.max(rank, 1) - 1;
+        count = Math.max(0, Math.min(count, size() - first));
+        List<Score> range = new ArrayList<>(count);
+        int i = recentBefore(first);
+        Iterator<Score> scores = merge(base, recent, i, first - i);
+        for (int n = 0; n < count; n++)
+            range.add(scores.next());
+        return range;
+    }
+
+    /**
+     * Get every score
+     * @return the scores, best first
+     */
+    public synchronized List<Score> getScores() {
+        return getTop(size());
+    }
+
+    /**
+     * Add a score and append it to the journal in the background
+     * @param name name of the player, line breaks are removed
+     * @param score the score reached
+     * @return the rank of the new score, counting from 1
+     */
+    public int add(String name, int score) {
+        name = name.replaceAll("[\\r\\n]", "");
+        int rank;
+        synchronized (this) {
+            Entry entry = new Entry(name, score, ++sequence);
+            int index = insertionPoint(score);
+            recent.add(index, entry);
+            pending.add(entry.sequence + " " + entry + "\n");
+            rank = base.countAtLeast(score) + index + 1;
+        }
+        requestWrite();
+        return rank;
+    }
+
+    /**
+     * Wait until every score added so far is synced to the journal
+     * @throws Exception if writing failed or was interrupted
+     */
+    public void flush() throws Exception {
+        Future<?> done = writer.submit(() -> { });
+        done.get();
+    }
+
+    /**
+     * Work out how many of the best scores are recent ones. The checkpoint and the recent scores are both sorted, so
+     * this is a binary search over how they interleave.
+     * @param taken number of best scores
+     * @return how many of them are recent, the rest are from the checkpoint
+     */
+    private int recentBefore(int taken) {
+        int low = Math.max(0, taken - base.size());
+        int high = Math.min(taken, recent.size());
+        while (low < high) {
+            int i = (low + high) >>> 1;
+            int j = taken - i;
+            //With i recent ones, recent.get(i) would still come before checkpoint score j - 1: too few
+            if (j > 0 && base.getScore(j - 1) < recent.get(i).getScore())
+                low = i + 1;
+            else
+                high = i;
+        }
+        return low;
+    }
+
+    /**
+     * Find where a score belongs among the recent scores: after every score at least as good
+     * @param score the score
+     * @return index of the first worse recent score
+     */
+    private int insertionPoint(int score) {
+        int low = 0;
+        int high = recent.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (recent.get(middle).getScore() >= score)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Map the newest checkpoint which can be read. A checkpoint which cannot be read is moved out of the way, so it is
+     * not overwritten and can still be looked at, and the one before it is tried: the journal was emptied when the
+     * newer one was written, so the older one is all that is left of those scores.
+     */
+    private void openCheckpoint() {
+        for (long found : generations()) {
+            Path path = generationFile(found);
+            try {
+                base = ScoreFile.open(path);
+                generation = found;
+                deleteOldGenerations();
+                return;
+            } catch (IOException e) {
+                logger.error("Could not open the scores in " + path + ": " + e);
+                try {
+                    Files.move(path, path.resolveSibling(path.getFileName() + ".broken"),
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException moveFailed) {
+                    logger.error("Could not move " + path + " out of the way: " + moveFailed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the checkpoints on disk
+     * @return their generations, newest first
+     */
+    private List<Long> generations() {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String prefix = (dot < 0 ? name : name.substring(0, dot)) + ".";
+        String suffix = dot < 0 ? "" : name.substring(dot);
+
+        List<Long> found = new ArrayList<>();
+        if (Files.exists(file))
+            found.add(0L);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(file.toAbsolutePath().getParent())) {
+            for (Path path : files) {
+                String candidate = path.getFileName().toString();
+                if (candidate.length() <= prefix.length() + suffix.length() || !candidate.startsWith(prefix)
+                        || !candidate.endsWith(suffix))
+                    continue;
+                String number = candidate.substring(prefix.length(), candidate.length() - suffix.length());
+                if (number.chars().allMatch(Character::isDigit) && number.length() < 19)
+                    found.add(Long.parseLong(number));
+            }
+        } catch (IOException e) {
+            logger.error("Could not look for the scores next to " + file + ": " + e);
+        }
+        found.sort(Comparator.reverseOrder());
+        return found;
+    }
+
+    /**
+     * Get the file of a checkpoint generation, scores.bin becomes scores.N.bin
+     * @param generation the generation, 0 for the checkpoint from before there were generations
+     * @return the file
+     */
+    private Path generationFile(long generation) {
+        if (generation == 0)
+            return file;
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0)
+            return file.resolveSibling(name + "." + generation);
+        return file.resolveSibling(name.substring(0, dot) + "." + generation + name.substring(dot));
+    }
+
+    /**
+     * Delete the checkpoints older than the mapped one. An old checkpoint stays mapped until the garbage collector
+     * gets to it, and some platforms refuse to delete a mapped file, so whatever is left is tried again after the next
+     * checkpoint and on the next start.
+     */
+    private void deleteOldGenerations() {
+        for (long old : generations()) {
+            if (old >= generation)
+                continue;
+            try {
+                Files.deleteIfExists(generationFile(old));
+            } catch (IOException e) {
+                logger.debug("Could not delete the old checkpoint " + generationFile(old) + " yet: " + e);
+            }
+        }
+    }
+
+    /**
+     * Turn the text leaderboard and its journal into the first checkpoint, and rename the text file
+     */
+    private void migrate() {
+        long start = System.nanoTime();
+        List<Entry> scores = new ArrayList<>();
+        long checkpoint = readText(legacyFile, scores);
+        Path legacyJournal = journalOf(legacyFile);
+        checkpoint = Math.max(checkpoint, replay(legacyJournal, checkpoint, scores));
+        scores.sort(BEST_FIRST);
+
+        try {
+            writeCheckpoint(1, new ArrayList<Score>(scores).iterator(), scores.size(), checkpoint);
+            Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".migrated"),
+                    StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(legacyJournal);
+            logger.info("Migrated {} scores from {} in {}ms", scores.size(), legacyFile,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            logger.error("Could not migrate the scores in " + legacyFile + ": " + e);
+        }
+    }
+
+    /**
+     * Read every score from a text leaderboard
+     * @param path the text file
+     * @param scores where to add the scores to
+     * @return sequence number of the last journal entry the file contains
+     */
+    private static long readText(Path path, List<Entry> scores) {
+        long checkpoint = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(SEQUENCE_HEADER)) {
+                    checkpoint = Long.parseLong(line.substring(SEQUENCE_HEADER.length()).trim());
+                    continue;
+                }
+                Score score = parse(line);
+                if (score != null)
+                    scores.add(new Entry(score.getName(), score.getScore(), 0));
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.error("Could not read scores from " + path + ": " + e);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Add every complete journal entry after a checkpoint, and cut off a line torn by a crash so later appends start
+     * on a fresh line
+     * @param path the journal
+     * @param checkpoint sequence number of the last entry the checkpoint contains
+     * @param scores where to add the entries to
+     * @return the highest sequence number in the journal
+     */
+    private static long replay(Path path, long checkpoint, List<Entry> scores) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (NoSuchFileException e) {
+            return 0;
+        } catch (IOException e) {
+            logger.error("Could not read the score journal " + path + ": " + e);
+            return 0;
+        }
+
+        long last = 0;
+        int complete = 0;
+        for (int end = 0; end < bytes.length; end++) {
+            if (bytes[end] != '\n')
+                continue;
+            String line = new String(bytes, complete, end - complete, StandardCharsets.UTF_8);
+            complete = end + 1;
+
+            int space = line.indexOf(' ');
+            try {
+                long entry = Long.parseLong(line.substring(0, Math.max(space, 0)));
+                Score score = parse(line.substring(space + 1));
+                if (entry > checkpoint && score != null)
+                    scores.add(new Entry(score.getName(), score.getScore(), entry));
+                last = Math.max(last, entry);
+            } catch (NumberFormatException e) {
+                logger.warn("Skipping broken journal entry: " + line);
+            }
+        }
+
+        if (complete < bytes.length) {
+            logger.warn("Cutting off {} bytes of a torn journal entry", bytes.length - complete);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+                channel.force(true);
+            } catch (IOException e) {
+                logger.error("Could not repair the score journal " + path + ": " + e);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Parse a "name-score" line
+     * @param line the line
+     * @return the score, or null if the line is not a score
+     */
+    static Score parse(String line) {
+        int separator = line.lastIndexOf('-');
+        if (separator < 0) {
+            logger.warn("Skipping score without a '-': " + line);
+            return null;
+        }
+        try {
+            return new Score(line.substring(0, separator), Integer.parseInt(line.substring(separator + 1).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Skipping score which is not a number: " + line);
+            return null;
+        }
+    }
+
+    /**
+     * Get the journal belonging to a checkpoint
+     * @param file the checkpoint
+     * @return the journal
+     */
+    private static Path journalOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".journal");
+    }
+
+    /**
+     * Go through the checkpoint and the recent scores together, best first, checkpoint first for equal scores
+     * @param base the checkpoint
+     * @param recent the recent scores
+     * @param i0 recent score to start at
+     * @param j0 checkpoint score to start at
+     * @return the scores
+     */
+    private static Iterator<Score> merge(ScoreFile base, List<? extends Score> recent, int i0, int j0) {
+        return new Iterator<>() {
+            private int i = i0;
+            private int j = j0;
+
+            @Override
+            public boolean hasNext() {
+                return i < recent.size() || j < base.size();
+            }
+
+            @Override
+            public Score next() {
+                if (j < base.size() && (i == recent.size() || base.getScore(j) >= recent.get(i).getScore()))
+                    return base.get(j++);
+                return recent.get(i++);
+            }
+        };
+    }
+
+    /**
+     * Queue a write, unless one is queued already
+     */
+    private void requestWrite() {
+        if (writeQueued.compareAndSet(false, true))
+            writer.execute(this::write);
+    }
+
+    /**
+     * Append every pending score to the journal with a single sync, and write a new checkpoint once the journal is long
+     * enough
+     */
+    private void write() {
+        writeQueued.set(false);
+        List<String> lines;
+        synchronized (this) {
+            lines = new ArrayList<>(pending);
+            pending.clear();
+        }
+
+        try {
+            if (!lines.isEmpty()) {
+                if (journal == null)
+                    journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                            StandardOpenOption.APPEND);
+                ByteBuffer buffer = ByteBuffer.wrap(String.join("", lines).getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining())
+                    journal.write(buffer);
+                journal.force(false);
+                journalled += lines.size();
+                logger.debug("Journalled {} scores", lines.size());
+            }
+
+            if (journalled >= compactAfter)
+                compact();
+        } catch (IOException e) {
+            logger.error("Could not write scores to " + journalFile + ": " + e);
+        }
+    }
+
+    /**
+     * Merge the recent scores into a new checkpoint, swap it in and empty the journal. Scores added while this runs
+     * stay recent, when they reach the journal afterwards their sequence number is above the checkpoint.
+     * @throws IOException if writing failed, the old checkpoint and the journal are still intact then
+     */
+    private void compact() throws IOException {
+        long start = System.nanoTime();
+        ScoreFile snapshotBase;
+        List<Entry> snapshotRecent;
+        long checkpoint;
+        synchronized (this) {
+            snapshotBase = base;
+            snapshotRecent = new ArrayList<>(recent);
+            checkpoint = sequence;
+        }
+
+        int count = snapshotBase.size() + snapshotRecent.size();
+        //A broken checkpoint which could not be moved away may still be newer than the mapped one
+        List<Long> found = generations();
+        long next = Math.max(generation, found.isEmpty() ? 0 : found.get(0)) + 1;
+        writeCheckpoint(next, merge(snapshotBase, snapshotRecent, 0, 0), count, checkpoint);
+        ScoreFile mapped = ScoreFile.open(generationFile(next));
+        synchronized (this) {
+            base = mapped;
+            generation = next;
+            recent.removeIf((entry) -> entry.sequence <= checkpoint);
+        }
+
+        //Everything in the journal is in the checkpoint now
+        if (journal != null) {
+            journal.truncate(0);
+            journal.force(true);
+        }
+        journalled = 0;
+        deleteOldGenerations();
+        logger.info("Wrote a checkpoint of {} scores in {}ms", count, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Write a checkpoint to a temporary file and rename it to the file of its generation. The current checkpoint is
+     * still mapped, so it is never renamed over.
+     * @param generation the generation of the new checkpoint
+     * @param scores the scores, best first
+     * @param count number of scores
+     * @param checkpoint sequence number of the last journal entry the scores contain
+     * @throws IOException if writing failed, the current checkpoint is still intact then
+     */
+    private void writeCheckpoint(long generation, Iterator<Score> scores, int count, long checkpoint)
+            throws IOException {
+        Path target = generationFile(generation);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        ScoreFile.write(temporary, scores, count, checkpoint);
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    /**
+     * Sync the directory of the checkpoint, so the rename survives a power cut. Not every platform can open a
+     * directory, where it cannot the rename is as safe as the platform makes it.
+     */
+    private void syncDirectory() {
+        Path directory = file.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync " + directory + ": " + e);
+        }
+    }
+
+    /**
+     * A score added since the checkpoint, with its journal sequence number
+     */
+    private static class Entry extends Score {
+
+        private final long sequence;
+
+        private Entry(String name, int score, long sequence) {
+            super(name, score);
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.ai.Heuristic;
+import uk.ac.soton.comp1206.ai.HintEngine;
+import uk.ac.soton.comp1206.event.GameListener;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.LineClear;
+import uk.ac.soton.comp1206.game.ManualClock;
+import uk.ac.soton.comp1206.game.Move;
+import uk.ac.soton.comp1206.game.PieceSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays many games headless and in parallel, using a PlacementPolicy instead of a player, and reports how the scores,
+ * levels and cleared lines are distributed. Each game is seeded, so any single game can be played again on its own.
+ *
+ * Usage: BatchSimulator [--games N] [--seed S] [--policy random|greedy|hint|expectimax] [--threads T]
+ *                       [--size COLSxROWS] [--max-moves M] [--buckets B] [--bag true|false]
+ */
+public class BatchSimulator {
+
+    /**
+     * Number of columns of every game
+     */
+    private final int cols;
+
+    /**
+     * Number of rows of every game
+     */
+    private final int rows;
+
+    /**
+     * The policy playing every game
+     */
+    private final PlacementPolicy policy;
+
+    /**
+     * A game is stopped after this many placed pieces, in case a policy is good enough to never lose
+     */
+    private final int maxMoves;
+
+    /**
+     * Whether pieces are dealt from a shuffled bag
+     */
+    private final boolean bag;
+
+    /**
+     * Create a new simulator
+     * @param cols number of columns of every game
+     * @param rows number of rows of every game
+     * @param policy the policy playing every game
+     * @param maxMoves number of placed pieces after which a game is stopped
+     * @param bag whether pieces are dealt from a shuffled bag
+     */
+    public BatchSimulator(int cols, int rows, PlacementPolicy policy, int maxMoves, boolean bag) {
+        this.cols = cols;
+        this.rows = rows;
+        this.policy = policy;
+        this.maxMoves = maxMoves;
+        this.bag = bag;
+    }
+
+    /**
+     * Work out the seed of one game of a batch. Neighbouring games get unrelated seeds.
+     * @param seed seed of the batch
+     * @param index number of the game in the batch
+     * @return seed of the game
+     */
+    public static long seedOf(long seed, int index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Play a single game until all lives are lost
+     * @param seed seed of the game
+     * @return the result
+     */
+    public SimulationResult play(long seed) {
+        var clock = new ManualClock(0);
+        var game = new Game(cols, rows, clock, new PieceSource(seed, 1, bag));
+        var random = new Random(~seed);
+
+        int[] lines = {0};
+        game.addListener(new GameListener() {
+            @Override
+            public void linesCleared(LineClear lineClear) {
+                lines[0] += lineClear.getLines();
+            }
+        });
+
+        game.start();
+        int moves = 0;
+        while (!game.isOver() && moves < maxMoves) {
+            Move move = policy.choose(game, random);
+            if (move != null && move.play(game)) {
+                moves++;
+            } else {
+                //Nothing fits, wait for the timer to run out
+                clock.set(game.getDeadline());
+                game.tick();
+            }
+        }
+        return new SimulationResult(seed, game.getScore(), game.getLevel(), lines[0], moves);
+    }
+
+    /**
+     * Play a batch of games spread over the given number of threads
+     * @param games number of games
+     * @param seed seed of the batch
+     * @param threads number of threads
+     * @return the results, in the order of the games
+     * @throws InterruptedException if interrupted while waiting for the games
+     * @throws ExecutionException if a game failed
+     */
+    public SimulationResult[] run(int games, long seed, int threads) throws InterruptedException, ExecutionException {
+        SimulationResult[] results = new SimulationResult[games];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            //Every thread takes every n-th game, so no game has to wait for a slow neighbour to be handed out
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int first = thread;
+                tasks.add(() -> {
+                    for (int index = first; index < games; index += threads)
+                        results[index] = play(seedOf(seed, index));
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks))
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Write the report of a batch
+     * @param results results of the games
+     * @param buckets number of histogram buckets
+     * @return the report
+     */
+    public static String report(SimulationResult[] results, int buckets) {
+        int[] scores = new int[results.length];
+        int[] levels = new int[results.length];
+        int[] lines = new int[results.length];
+        int[] moves = new int[results.length];
+        for (int i = 0; i < results.length; i++) {
+            scores[i] = results[i].getScore();
+            levels[i] = results[i].getLevel();
+            lines[i] = results[i].getLines();
+            moves[i] = results[i].getMoves();
+        }
+        return new Distribution("score", scores).report(buckets)
+                + new Distribution("level", levels).report(buckets)
+                + new Distribution("lines", lines).report(buckets)
+                + new Distribution("pieces", moves).report(buckets);
+    }
+
+    /**
+     * Get the policy with the given name
+     * @param name name of the policy
+     * @return the policy
+     */
+    public static PlacementPolicy policy(String name) {
+        return switch (name) {
+            case "random" -> new RandomPolicy();
+            case "greedy" -> new GreedyPolicy();
+            case "hint" -> new HintPolicy(new HintEngine(Heuristic.DEFAULT, Long.MAX_VALUE));
+            case "expectimax" -> new ExpectimaxPolicy(2, 32, 200_000, 16 << 20);
+            default -> throw new IllegalArgumentException("No such policy: " + name);
+        };
+    }
+
+    /**
+     * Run a batch from the command line and print the report
+     * @param args commandline arguments
+     * @throws Exception if the batch failed
+     */
+    public static void main(String[] args) throws Exception {
+        int games = 10_000;
+        long seed = 1;
+        String policy = "greedy";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int cols = 5;
+        int rows = 5;
+        int maxMoves = 100_000;
+        int buckets = 10;
+        boolean bag = false;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games" -> games = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--policy" -> policy = value;
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--size" -> {
+                    String[] size = value.split("x");
+                    cols = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                case "--max-moves" -> maxMoves = Integer.parseInt(value);
+                case "--buckets" -> buckets = Integer.parseInt(value);
+                case "--bag" -> bag = Boolean.parseBoolean(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        var simulator = new BatchSimulator(cols, rows, policy(policy), maxMoves, bag);
+        long start = System.nanoTime();
+        SimulationResult[] results = simulator.run(games, seed, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d games of %dx%d with policy %s on %d threads in %.2fs (%.0f games/s)%n",
+                games, cols, rows, policy, threads, seconds, games / seconds);
+        System.out.print(report(results, buckets));
+    }
+}
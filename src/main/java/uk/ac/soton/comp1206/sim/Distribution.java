@@ -0,0 +1,111 @@
+package uk.ac.soton.comp1206.sim;
+
+import java.util.Arrays;
+
+/**
+ * A Distribution summarises a set of values from many simulated games with their mean, percentiles and a histogram.
+ */
+public class Distribution {
+
+    /**
+     * The percentiles shown in a report
+     */
+    private static final int[] PERCENTILES = {0, 10, 25, 50, 75, 90, 99, 100};
+
+    /**
+     * Width of the longest histogram bar
+     */
+    private static final int BAR_WIDTH = 50;
+
+    /**
+     * What the values are
+     */
+    private final String name;
+
+    /**
+     * The values, sorted
+     */
+    private final int[] values;
+
+    /**
+     * Create a new distribution of the given values
+     * @param name what the values are
+     * @param values the values, which will be sorted in place
+     */
+    public Distribution(String name, int[] values) {
+        this.name = name;
+        this.values = values;
+        Arrays.sort(values);
+    }
+
+    /**
+     * Get the mean of all values
+     * @return mean
+     */
+    public double mean() {
+        long sum = 0;
+        for (int value : values)
+            sum += value;
+        return values.length == 0 ? 0 : (double) sum / values.length;
+    }
+
+    /**
+     * Get a percentile using the nearest rank
+     * @param percent percentile between 0 and 100
+     * @return the value at that percentile
+     */
+    public int percentile(int percent) {
+        if (values.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(percent / 100.0 * values.length);
+        return values[Math.max(rank - 1, 0)];
+    }
+
+    /**
+     * Count the values into equally wide buckets between the smallest and largest value
+     * @param buckets number of buckets
+     * @return count per bucket
+     */
+    public int[] histogram(int buckets) {
+        int[] counts = new int[buckets];
+        if (values.length == 0)
+            return counts;
+        long min = values[0];
+        long range = (long) values[values.length - 1] - min + 1;
+        for (int value : values)
+            counts[(int) ((value - min) * buckets / range)]++;
+        return counts;
+    }
+
+    /**
+     * Write the summary and histogram of this distribution
+     * @param buckets number of histogram buckets
+     * @return the report
+     */
+    public String report(int buckets) {
+        var report = new StringBuilder();
+        report.append(name).append(String.format(": mean %.2f", mean()));
+        for (int percent : PERCENTILES)
+            report.append(", p").append(percent).append(' ').append(percentile(percent));
+        report.append('\n');
+
+        if (values.length == 0)
+            return report.toString();
+
+        int[] counts = histogram(buckets);
+        int most = Arrays.stream(counts).max().orElse(1);
+        long min = values[0];
+        long range = (long) values[values.length - 1] - min + 1;
+        for (int i = 0; i < buckets; i++) {
+            //The values which fall into bucket i, rounding the same way as histogram()
+            long from = min + (range * i + buckets - 1) / buckets;
+            long to = min + (range * (i + 1) + buckets - 1) / buckets - 1;
+            if (to < from)
+                continue;
+            report.append(String.format("  %10d - %-10d %9d ", from, to, counts[i]));
+            report.append("#".repeat((int) ((long) counts[i] * BAR_WIDTH / most)));
+            report.append('\n');
+        }
+        return report.toString();
+    }
+}
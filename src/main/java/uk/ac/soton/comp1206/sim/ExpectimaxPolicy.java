@@ -0,0 +1,37 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.ai.Board;
+import uk.ac.soton.comp1206.ai.ExpectimaxSearch;
+import uk.ac.soton.comp1206.ai.Heuristic;
+import uk.ac.soton.comp1206.ai.TranspositionTable;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Move;
+
+import java.util.Random;
+
+/**
+ * Plays whatever the ExpectimaxSearch finds within a fixed node budget. The simulator already runs one game per
+ * thread, so every thread gets its own search and transposition table, and searches run on the calling thread.
+ */
+public class ExpectimaxPolicy implements PlacementPolicy {
+
+    private final ThreadLocal<ExpectimaxSearch> searches;
+
+    /**
+     * Create a new ExpectimaxPolicy
+     * @param maxDepth the most pieces to look ahead
+     * @param width the number of moves searched further below the first level
+     * @param nodeBudget the number of positions to rate per move
+     * @param tableBytes the memory each thread's transposition table may use
+     */
+    public ExpectimaxPolicy(int maxDepth, int width, long nodeBudget, long tableBytes) {
+        this.searches = ThreadLocal.withInitial(() -> new ExpectimaxSearch(Heuristic.DEFAULT, maxDepth, width,
+                nodeBudget, new TranspositionTable(tableBytes), null));
+    }
+
+    @Override
+    public Move choose(Game game, Random random) {
+        return searches.get().search(Board.of(game.getGrid()), game.getCurrentPiece(), game.getFollowingPiece())
+                .getMove();
+    }
+}
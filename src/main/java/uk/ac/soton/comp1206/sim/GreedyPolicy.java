@@ -0,0 +1,43 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Move;
+
+import java.util.Random;
+
+/**
+ * Places the current or the following piece wherever it finishes the most lines/rows right away. Ties are broken at
+ * random.
+ */
+public class GreedyPolicy implements PlacementPolicy {
+
+    @Override
+    public Move choose(Game game, Random random) {
+        Grid grid = game.getGrid();
+
+        Move chosen = null;
+        int best = -1;
+        int ties = 0;
+        for (int swap = 0; swap < 2; swap++) {
+            GamePiece gamePiece = swap == 0 ? game.getCurrentPiece() : game.getFollowingPiece();
+            for (int rotations = 0; rotations < 4; rotations++) {
+                int shape = gamePiece.rotate(rotations).getIndex();
+                for (int y = 0; y < grid.getRows(); y++)
+                    for (int x = 0; x < grid.getCols(); x++) {
+                        if (!grid.canPlayShape(shape, x, y))
+                            continue;
+                        int lines = grid.linesClearedBy(shape, x, y);
+                        if (lines > best) {
+                            best = lines;
+                            ties = 0;
+                        }
+                        if (lines == best && random.nextInt(++ties) == 0)
+                            chosen = new Move(x, y, rotations, swap == 1);
+                    }
+            }
+        }
+        return chosen;
+    }
+}
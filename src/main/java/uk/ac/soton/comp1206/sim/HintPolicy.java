@@ -0,0 +1,31 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.ai.Board;
+import uk.ac.soton.comp1206.ai.HintEngine;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Move;
+
+import java.util.Random;
+
+/**
+ * Plays whatever the HintEngine suggests. The simulator already runs one game per thread, so the search runs on the
+ * calling thread and without a time limit, which also makes it deterministic.
+ */
+public class HintPolicy implements PlacementPolicy {
+
+    private final HintEngine hintEngine;
+
+    /**
+     * Create a new HintPolicy
+     * @param hintEngine the engine to ask for moves
+     */
+    public HintPolicy(HintEngine hintEngine) {
+        this.hintEngine = hintEngine;
+    }
+
+    @Override
+    public Move choose(Game game, Random random) {
+        return hintEngine.search(Board.of(game.getGrid()), game.getCurrentPiece(), game.getFollowingPiece(), false,
+                Long.MAX_VALUE).getMove();
+    }
+}
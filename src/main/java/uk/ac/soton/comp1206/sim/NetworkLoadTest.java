@@ -0,0 +1,242 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.network.LocalServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Puts a TetrECS server under the load of many simulated players and reports how many messages it moves and how long
+ * they take. Unless a server is given, a LocalServer is started in the same process, so the test runs offline.
+ *
+ * The players are split into channels. In each channel one player creates it, the others join, and the host starts the
+ * game. Then every player sends rate times a second a SCORE and a MSG carrying the time it was sent, which the server
+ * relays to the whole channel. The latency is measured from sending a MSG until it comes back to the same player.
+ *
+ * Usage: NetworkLoadTest [--clients N] [--channel-size K] [--seconds S] [--rate R] [--threads T] [--server URL]
+ */
+public class NetworkLoadTest {
+
+    /**
+     * Messages sent and received by all players
+     */
+    private static final AtomicLong sent = new AtomicLong();
+    private static final AtomicLong received = new AtomicLong();
+
+    /**
+     * Messages the server answered with an error
+     */
+    private static final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Run the test
+     * @param args command line options, see the class description
+     * @throws Exception if the test could not be run
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = 1000;
+        int channelSize = 4;
+        int seconds = 10;
+        int rate = 5;
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        String address = null;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--clients" -> clients = Integer.parseInt(value);
+                case "--channel-size" -> channelSize = Integer.parseInt(value);
+                case "--seconds" -> seconds = Integer.parseInt(value);
+                case "--rate" -> rate = Integer.parseInt(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--server" -> address = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        LocalServer server = null;
+        if (address == null) {
+            server = new LocalServer(0);
+            address = server.getAddress();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, (runnable) -> {
+            Thread thread = new Thread(runnable, "Load Test");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HttpClient http = HttpClient.newBuilder().executor(executor).build();
+
+        //Connect in waves, so the server's backlog is not overrun
+        long start = System.nanoTime();
+        List<Player> players = new ArrayList<>();
+        for (int wave = 0; wave < clients; wave += 256) {
+            List<Player> connecting = new ArrayList<>();
+            for (int i = wave; i < Math.min(clients, wave + 256); i++)
+                connecting.add(new Player(i, http, URI.create(address)));
+            for (Player player : connecting)
+                player.connected.join();
+            players.addAll(connecting);
+        }
+        double connectSeconds = (System.nanoTime() - start) / 1e9;
+
+        //Hosts create their channels first, then everyone else joins and the hosts start
+        for (Player player : players) {
+            if (player.index % channelSize == 0)
+                player.send("CREATE load" + player.index / channelSize);
+        }
+        for (Player player : players) {
+            if (player.index % channelSize == 0)
+                player.joined.join();
+        }
+        for (Player player : players) {
+            if (player.index % channelSize != 0)
+                player.send("JOIN load" + player.index / channelSize);
+        }
+        for (Player player : players)
+            player.joined.join();
+        for (Player player : players) {
+            if (player.index % channelSize == 0)
+                player.send("START");
+        }
+        for (Player player : players)
+            player.started.join();
+
+        //Every tick, every player sends its score and a timed message
+        sent.set(0);
+        received.set(0);
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        long[] ticks = {0};
+        ticker.scheduleAtFixedRate(() -> {
+            ticks[0]++;
+            for (Player player : players) {
+                player.send("SCORE " + ticks[0] * 10);
+                player.send("MSG " + player.index + " " + System.nanoTime());
+            }
+        }, 0, 1_000_000 / rate, TimeUnit.MICROSECONDS);
+
+        start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        ticker.shutdown();
+        ticker.awaitTermination(1, TimeUnit.SECONDS);
+        //Give the last messages time to come back
+        Thread.sleep(500);
+        double runSeconds = (System.nanoTime() - start) / 1e9;
+
+        int count = 0;
+        for (Player player : players)
+            count += player.latencies.size();
+        int[] latencies = new int[count];
+        int i = 0;
+        for (Player player : players) {
+            for (int latency : player.latencies)
+                latencies[i++] = latency;
+        }
+
+        System.out.printf("%d clients in channels of %d, connected in %.2fs%n", clients, channelSize, connectSeconds);
+        System.out.printf("sent %d messages (%.0f/s), received %d (%.0f/s), %d errors%n", sent.get(),
+                sent.get() / runSeconds, received.get(), received.get() / runSeconds, errors.get());
+        if (server != null)
+            System.out.printf("server: %d connections, %d messages in, %d messages out%n", server.getConnections(),
+                    server.getReceived(), server.getSent());
+        System.out.print(new Distribution("latency (us)", latencies).report(10));
+
+        for (Player player : players)
+            player.socket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+        if (server != null)
+            server.stop();
+        executor.shutdownNow();
+    }
+
+    /**
+     * A simulated player
+     */
+    private static class Player implements WebSocket.Listener {
+
+        private final int index;
+        private final CompletableFuture<Void> connected;
+        private final CompletableFuture<Void> joined = new CompletableFuture<>();
+        private final CompletableFuture<Void> started = new CompletableFuture<>();
+
+        /**
+         * Latencies of this player's messages, in microseconds, only added to by the socket's listener
+         */
+        private final List<Integer> latencies = new ArrayList<>();
+
+        /**
+         * Collects the parts of a message
+         */
+        private final StringBuilder text = new StringBuilder();
+
+        private WebSocket socket;
+
+        /**
+         * The last send, a WebSocket only takes one at a time
+         */
+        private CompletableFuture<WebSocket> sending;
+
+        private Player(int index, HttpClient http, URI server) {
+            this.index = index;
+            CompletableFuture<WebSocket> socket = http.newWebSocketBuilder().buildAsync(server, this);
+            this.sending = socket;
+            this.connected = socket.thenAccept((webSocket) -> this.socket = webSocket);
+        }
+
+        /**
+         * Send a message once the one before it is sent
+         * @param message the message
+         */
+        private synchronized void send(String message) {
+            sent.incrementAndGet();
+            sending = sending.thenCompose((webSocket) -> webSocket.sendText(message, true));
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                receive(text.toString());
+                text.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        /**
+         * Handle a message from the server
+         * @param message the message
+         */
+        private void receive(String message) {
+            received.incrementAndGet();
+            if (message.startsWith("JOIN ")) {
+                joined.complete(null);
+            } else if (message.equals("START")) {
+                started.complete(null);
+            } else if (message.startsWith("ERROR")) {
+                errors.incrementAndGet();
+            } else if (message.startsWith("MSG ")) {
+                //MSG nickname:index time
+                String[] parts = message.substring(message.indexOf(':') + 1).split(" ");
+                if (parts.length == 2 && Integer.parseInt(parts[0]) == index)
+                    latencies.add((int) ((System.nanoTime() - Long.parseLong(parts[1])) / 1000));
+            }
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            errors.incrementAndGet();
+            joined.completeExceptionally(error);
+            started.completeExceptionally(error);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.Move;
+
+import java.util.Random;
+
+/**
+ * A Placement Policy decides where a simulated player puts the current piece. Policies are shared between all games of
+ * a batch, so they should keep no state of their own and take any randomness from the generator they are given.
+ */
+public interface PlacementPolicy {
+
+    /**
+     * Pick the next move
+     * @param game the game to pick a move for
+     * @param random random number generator of this game
+     * @return the move, or null when nothing can be placed and the player waits for the timer to run out
+     */
+    public Move choose(Game game, Random random);
+}
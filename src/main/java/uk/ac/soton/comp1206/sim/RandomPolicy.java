@@ -0,0 +1,32 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.Grid;
+import uk.ac.soton.comp1206.game.Move;
+
+import java.util.Random;
+
+/**
+ * Places the current piece in any rotation at a position picked uniformly from all the places it fits.
+ */
+public class RandomPolicy implements PlacementPolicy {
+
+    @Override
+    public Move choose(Game game, Random random) {
+        Grid grid = game.getGrid();
+        GamePiece gamePiece = game.getCurrentPiece();
+
+        //Reservoir sample over every legal placement, so we never need to collect them
+        Move chosen = null;
+        int seen = 0;
+        for (int rotations = 0; rotations < 4; rotations++) {
+            int shape = gamePiece.rotate(rotations).getIndex();
+            for (int y = 0; y < grid.getRows(); y++)
+                for (int x = 0; x < grid.getCols(); x++)
+                    if (grid.canPlayShape(shape, x, y) && random.nextInt(++seen) == 0)
+                        chosen = new Move(x, y, rotations, false);
+        }
+        return chosen;
+    }
+}
@@ -0,0 +1,131 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.component.DirtyBlocks;
+import uk.ac.soton.comp1206.event.GridListener;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GridChange;
+import uk.ac.soton.comp1206.game.ManualClock;
+import uk.ac.soton.comp1206.game.Move;
+import uk.ac.soton.comp1206.game.PieceSource;
+
+import java.util.Random;
+
+/**
+ * Measures how the cost of a move grows with the size of the board. Moves are chosen by the GreedyPolicy outside the
+ * measurement, and two things are timed separately:
+ * <ul>
+ *     <li>playing the move: checking the placement, placing the piece, finding and clearing the finished lines/rows
+ *     and notifying the grid's listeners, one of which counts the blocks that changed</li>
+ *     <li>repainting after it: the grid's changes are marked in the DirtyBlocks the CanvasBoard uses, and the blocks
+ *     it hands out on the next pulse are counted, standing in for drawing their tiles</li>
+ * </ul>
+ * If the cost follows the blocks changed and not the board, the time per changed block and the blocks repainted per
+ * move stay flat from the smallest to the largest board, while the area grows.
+ *
+ * Usage: ScalingBenchmark [--moves N] [--seed S] [--sizes COLSxROWS,COLSxROWS,...]
+ */
+public class ScalingBenchmark {
+
+    /**
+     * Run the benchmark
+     * @param args command line options, see the class description
+     */
+    public static void main(String[] args) {
+        int moves = 20_000;
+        long seed = 1;
+        String sizes = "5x5,8x8,16x16,32x32,64x64,64x8,8x64";
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--moves" -> moves = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--sizes" -> sizes = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        //Warm up on every size first, so the first size measured is not slowed down by the JIT
+        for (String size : sizes.split(",")) {
+            String[] dimensions = size.split("x");
+            measure(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), moves, seed);
+        }
+
+        System.out.printf("%-8s %8s %10s %12s %14s %12s %14s %14s%n", "size", "area", "moves", "ns/move",
+                "changed/move", "ns/changed", "painted/move", "ns/repaint");
+        for (String size : sizes.split(",")) {
+            String[] dimensions = size.split("x");
+            int cols = Integer.parseInt(dimensions[0]);
+            int rows = Integer.parseInt(dimensions[1]);
+            long[] result = measure(cols, rows, moves, seed);
+            long nanos = result[0];
+            long changed = result[1];
+            System.out.printf("%-8s %8d %10d %12.1f %14.2f %12.1f %14.2f %14.1f%n", size, cols * rows, moves,
+                    (double) nanos / moves, (double) changed / moves, (double) nanos / Math.max(changed, 1),
+                    (double) result[3] / moves, (double) result[2] / moves);
+        }
+    }
+
+    /**
+     * Play moves on a board of the given size, starting a new game whenever one gets stuck
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param moves number of moves to play
+     * @param seed seed for the pieces and the policy
+     * @return nanoseconds spent playing the moves, the number of blocks changed, nanoseconds spent working out what
+     * to repaint, and the number of blocks repainted
+     */
+    private static long[] measure(int cols, int rows, int moves, long seed) {
+        var policy = new GreedyPolicy();
+        var random = new Random(seed);
+        long[] changed = {0};
+        GridListener counter = (x, y, value) -> changed[0]++;
+
+        //Marks changes like the CanvasBoard does, nothing fades so nothing is held back
+        var dirty = new DirtyBlocks(rows);
+        long[] held = new long[rows];
+        long[] painted = {0};
+        DirtyBlocks.Painter painter = (x, y) -> painted[0]++;
+        GridListener repaint = new GridListener() {
+            @Override
+            public void cellChanged(int x, int y, int value) {
+                dirty.mark(x, y);
+            }
+
+            @Override
+            public void cellsChanged(GridChange change) {
+                dirty.mark(change);
+            }
+        };
+
+        long nanos = 0;
+        long repaintNanos = 0;
+        Game game = null;
+        for (int played = 0; played < moves; ) {
+            if (game == null) {
+                game = new Game(cols, rows, new ManualClock(0), new PieceSource(seed + played));
+                game.getGrid().addListener(counter);
+                game.getGrid().addListener(repaint);
+                game.start();
+            }
+
+            Move move = policy.choose(game, random);
+            if (move == null) {
+                //Nothing fits any more, carry on with an empty board
+                game = null;
+                continue;
+            }
+
+            long start = System.nanoTime();
+            move.play(game);
+            nanos += System.nanoTime() - start;
+
+            //The next pulse
+            start = System.nanoTime();
+            dirty.paint(held, painter);
+            repaintNanos += System.nanoTime() - start;
+            played++;
+        }
+        return new long[] {nanos, changed[0], repaintNanos, painted[0]};
+    }
+}
@@ -0,0 +1,163 @@
+package uk.ac.soton.comp1206.sim;
+
+import uk.ac.soton.comp1206.ai.Board;
+import uk.ac.soton.comp1206.ai.ExpectimaxSearch;
+import uk.ac.soton.comp1206.ai.Heuristic;
+import uk.ac.soton.comp1206.ai.Hint;
+import uk.ac.soton.comp1206.ai.TranspositionTable;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.GamePiece;
+import uk.ac.soton.comp1206.game.ManualClock;
+import uk.ac.soton.comp1206.game.Move;
+import uk.ac.soton.comp1206.game.PieceSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the fork/join ExpectimaxSearch scales with the number of threads. The same positions, taken from games
+ * played by the GreedyPolicy, are searched to the same depth once on the calling thread and then on a ForkJoinPool of
+ * each size asked for, every run with a fresh transposition table. The node budget is unlimited by default, so every
+ * run does the same work and the speedup is the time on the calling thread over the time on the pool.
+ *
+ * Usage: SearchBenchmark [--positions N] [--seed S] [--depth D] [--width W] [--budget B] [--threads T,T,...]
+ *                        [--size COLSxROWS]
+ */
+public class SearchBenchmark {
+
+    /**
+     * A position to search from
+     */
+    private record Position(Board board, GamePiece currentPiece, GamePiece followingPiece) {
+    }
+
+    /**
+     * Run the benchmark
+     * @param args command line options, see the class description
+     */
+    public static void main(String[] args) {
+        int positions = 20;
+        long seed = 1;
+        int depth = 3;
+        int width = 4;
+        long budget = Long.MAX_VALUE;
+        String threads = null;
+        int cols = 5;
+        int rows = 5;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--positions" -> positions = Integer.parseInt(value);
+                case "--seed" -> seed = Long.parseLong(value);
+                case "--depth" -> depth = Integer.parseInt(value);
+                case "--width" -> width = Integer.parseInt(value);
+                case "--budget" -> budget = Long.parseLong(value);
+                case "--threads" -> threads = value;
+                case "--size" -> {
+                    String[] size = value.split("x");
+                    cols = Integer.parseInt(size[0]);
+                    rows = Integer.parseInt(size[1]);
+                }
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (threads == null) {
+            int cores = Runtime.getRuntime().availableProcessors();
+            StringBuilder counts = new StringBuilder("1");
+            for (int count = 2; count <= cores; count *= 2)
+                counts.append(',').append(count);
+            if (Integer.bitCount(cores) != 1)
+                counts.append(',').append(cores);
+            threads = counts.toString();
+        }
+
+        List<Position> searched = positions(cols, rows, positions, seed);
+        System.out.printf("%d positions on %dx%d, depth %d, width %d, %d cores%n", searched.size(), cols, rows, depth,
+                width, Runtime.getRuntime().availableProcessors());
+
+        //Warm up both ways of searching, so the first runs are not slowed down by the JIT
+        measure(searched, depth, width, budget, null);
+        var warmup = new ForkJoinPool(2);
+        measure(searched, depth, width, budget, warmup);
+        warmup.shutdown();
+
+        System.out.printf("%-12s %10s %14s %14s %10s%n", "threads", "ms", "positions", "positions/s", "speedup");
+        long[] sequential = measure(searched, depth, width, budget, null);
+        print("sequential", sequential, sequential[0]);
+        for (String count : threads.split(",")) {
+            var pool = new ForkJoinPool(Integer.parseInt(count.trim()));
+            long[] result = measure(searched, depth, width, budget, pool);
+            pool.shutdown();
+            print(count.trim(), result, sequential[0]);
+        }
+    }
+
+    /**
+     * Print one line of the report
+     * @param name what was measured
+     * @param result nanoseconds taken and positions rated
+     * @param sequentialNanos nanoseconds taken on the calling thread
+     */
+    private static void print(String name, long[] result, long sequentialNanos) {
+        System.out.printf("%-12s %10.1f %14d %14.0f %10.2f%n", name, result[0] / 1e6, result[1],
+                result[1] / (result[0] / 1e9), (double) sequentialNanos / result[0]);
+    }
+
+    /**
+     * Search every position with a fresh table
+     * @param positions the positions
+     * @param depth the depth to search to
+     * @param width the number of moves searched further below the first level
+     * @param budget the node budget of each search
+     * @param pool the pool to search on, or null for the calling thread
+     * @return nanoseconds taken, and the number of positions rated
+     */
+    private static long[] measure(List<Position> positions, int depth, int width, long budget, ForkJoinPool pool) {
+        var search = new ExpectimaxSearch(Heuristic.DEFAULT, depth, width, budget, new TranspositionTable(64 << 20),
+                pool);
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (Position position : positions) {
+            Hint hint = search.search(position.board(), position.currentPiece(), position.followingPiece());
+            nodes += hint.getEvaluated();
+        }
+        return new long[] {System.nanoTime() - start, nodes};
+    }
+
+    /**
+     * Collect positions from games played by the GreedyPolicy, starting a new game whenever one gets stuck
+     * @param cols number of columns
+     * @param rows number of rows
+     * @param count number of positions
+     * @param seed seed for the pieces and the policy
+     * @return the positions
+     */
+    private static List<Position> positions(int cols, int rows, int count, long seed) {
+        var policy = new GreedyPolicy();
+        var random = new Random(seed);
+        List<Position> positions = new ArrayList<>(count);
+        Game game = null;
+        //Skip a few moves between positions, so they are not all near the start of a game
+        for (int played = 0; positions.size() < count; ) {
+            if (game == null) {
+                game = new Game(cols, rows, new ManualClock(0), new PieceSource(seed + played));
+                game.start();
+            }
+            if (played % 3 == 0)
+                positions.add(new Position(Board.of(game.getGrid()), game.getCurrentPiece(),
+                        game.getFollowingPiece()));
+
+            Move move = policy.choose(game, random);
+            if (move == null) {
+                game = null;
+                continue;
+            }
+            move.play(game);
+            played++;
+        }
+        return positions;
+    }
+}
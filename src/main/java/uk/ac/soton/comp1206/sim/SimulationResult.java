@@ -0,0 +1,49 @@
+package uk.ac.soton.comp1206.sim;
+
+/**
+ * The outcome of a single simulated game
+ */
+public class SimulationResult {
+
+    private final long seed;
+    private final int score;
+    private final int level;
+    private final int lines;
+    private final int moves;
+
+    /**
+     * Create a new result
+     * @param seed the seed the game was played with
+     * @param score final score
+     * @param level final level
+     * @param lines number of lines/rows cleared
+     * @param moves number of pieces placed
+     */
+    public SimulationResult(long seed, int score, int level, int lines, int moves) {
+        this.seed = seed;
+        this.score = score;
+        this.level = level;
+        this.lines = lines;
+        this.moves = moves;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public int getMoves() {
+        return moves;
+    }
+}
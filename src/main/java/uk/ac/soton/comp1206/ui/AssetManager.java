@@ -0,0 +1,301 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.media.Media;
+import javafx.scene.text.Font;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * The AssetManager loads images, fonts, music and anything else the game needs from its resources on a few background
+ * threads, so the JavaFX thread never has to wait for a file to be read or decoded.
+ *
+ * Every asset is loaded once and handed out as a CompletableFuture, keyed by its path. Assets are loaded in order of
+ * their Priority, so everything the first screen needs can be asked for together with everything that is only needed
+ * later, and still comes first. Asking again for a queued asset with a higher priority moves it up. Whoever cannot go
+ * on without an asset can await() it, which loads it on the calling thread if no worker has started on it yet.
+ */
+public class AssetManager {
+
+    private static final Logger logger = LogManager.getLogger(AssetManager.class);
+
+    /**
+     * How soon an asset is needed, assets with a higher priority are loaded first
+     */
+    public enum Priority {
+        /**
+         * Needed for the first frame
+         */
+        CRITICAL,
+        /**
+         * Needed as soon as the first screen is up
+         */
+        HIGH,
+        /**
+         * Needed during play
+         */
+        NORMAL,
+        /**
+         * Only needed on screens the player may never open
+         */
+        LOW
+    }
+
+    /**
+     * The manager shared by the whole game
+     */
+    private static AssetManager shared;
+
+    /**
+     * Runs the loads, in order of priority
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Every asset asked for so far, by key
+     */
+    private final Map<String, Asset<?>> assets = new ConcurrentHashMap<>();
+
+    /**
+     * Hands out the order assets were asked for in, so equal priorities are loaded first come first served
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * When this manager was created, in nanoseconds
+     */
+    private final long created = System.nanoTime();
+
+    /**
+     * Create a new manager
+     * @param threads number of threads to load on
+     */
+    public AssetManager(int threads) {
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>(),
+                (runnable) -> {
+                    Thread thread = new Thread(runnable, "Asset Loader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        //Otherwise each of the first loads starts a thread of its own and skips the queue, whatever its priority
+        executor.prestartAllCoreThreads();
+    }
+
+    /**
+     * Get the manager shared by the whole game. It loads on at least two threads, so reading one file and decoding
+     * another can overlap even on a single core.
+     * @return the shared manager
+     */
+    public static synchronized AssetManager getShared() {
+        if (shared == null)
+            shared = new AssetManager(Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+        return shared;
+    }
+
+    /**
+     * Load an image from the resources, fully decoded
+     * @param path path of the image, for example /images/TetrECS.png
+     * @param priority how soon the image is needed
+     * @return the image, once loaded
+     */
+    public CompletableFuture<Image> image(String path, Priority priority) {
+        return load(path, priority, () -> {
+            Image image = new Image(resource(path).toExternalForm(), false);
+            if (image.isError())
+                throw new IOException("Could not decode " + path, image.getException());
+            return image;
+        });
+    }
+
+    /**
+     * Load a font from the resources, so it can be used by name, for example from the stylesheet
+     * @param path path of the font, for example /style/Orbitron-Regular.ttf
+     * @param size default size of the font
+     * @param priority how soon the font is needed
+     * @return the font, once loaded
+     */
+    public CompletableFuture<Font> font(String path, double size, Priority priority) {
+        return load(path, priority, () -> {
+            try (InputStream stream = resource(path).openStream()) {
+                Font font = Font.loadFont(stream, size);
+                if (font == null)
+                    throw new IOException("Could not load font " + path);
+                return font;
+            }
+        });
+    }
+
+    /**
+     * Load a sound or music file from the resources, ready to be given to a MediaPlayer
+     * @param path path of the file, for example /music/menu.mp3
+     * @param priority how soon the file is needed
+     * @return the media, once loaded
+     */
+    public CompletableFuture<Media> media(String path, Priority priority) {
+        return load(path, priority, () -> new Media(resource(path).toExternalForm()));
+    }
+
+    /**
+     * Load anything. The loader only runs the first time a key is asked for, later calls get the same future.
+     * @param key key of the asset
+     * @param priority how soon the asset is needed
+     * @param loader loads the asset
+     * @param <T> type of the asset
+     * @return the asset, once loaded
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> load(String key, Priority priority, Callable<T> loader) {
+        boolean[] created = {false};
+        Asset<T> asset = (Asset<T>) assets.computeIfAbsent(key, (k) -> {
+            created[0] = true;
+            return new Asset<>(key, priority, loader);
+        });
+
+        //Queue it, or queue it again ahead of where it was if it is needed sooner now
+        if (created[0] || (!asset.claimed.get() && priority.compareTo(asset.priority) < 0)) {
+            asset.priority = priority;
+            executor.execute(new Load(asset, priority, sequence.getAndIncrement()));
+        }
+        return asset.future;
+    }
+
+    /**
+     * Wait for an asset which was asked for before. If no worker started on it yet, it is loaded on this thread instead
+     * of waiting for its turn.
+     * @param key key of the asset
+     * @param <T> type of the asset
+     * @return the asset
+     * @throws IllegalArgumentException if the asset was never asked for
+     * @throws java.util.concurrent.CompletionException if the asset could not be loaded
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T await(String key) {
+        Asset<T> asset = (Asset<T>) assets.get(key);
+        if (asset == null)
+            throw new IllegalArgumentException("No such asset: " + key);
+        asset.run();
+        return asset.future.join();
+    }
+
+    /**
+     * Get the number of assets which are still waiting for a thread to load them
+     * @return number of queued loads
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Hand an asset to the JavaFX thread once it is loaded. When it already is and this is the JavaFX thread, it is
+     * handed over straight away, without waiting for the next pulse. Assets which could not be loaded are not handed
+     * over at all, the failure was already logged.
+     * @param future the asset
+     * @param consumer what to do with it on the JavaFX thread
+     * @param <T> type of the asset
+     */
+    public static <T> void whenLoaded(CompletableFuture<T> future, Consumer<T> consumer) {
+        if (future.isDone() && !future.isCompletedExceptionally() && Platform.isFxApplicationThread()) {
+            consumer.accept(future.join());
+            return;
+        }
+        future.thenAccept((value) -> Platform.runLater(() -> consumer.accept(value)));
+    }
+
+    /**
+     * Find a resource
+     * @param path path of the resource
+     * @return its URL
+     * @throws IOException if there is no such resource
+     */
+    private static URL resource(String path) throws IOException {
+        URL url = AssetManager.class.getResource(path);
+        if (url == null)
+            throw new IOException("No such resource: " + path);
+        return url;
+    }
+
+    /**
+     * An asset and its future. It is loaded by whoever claims it first, a worker or a thread in await().
+     * @param <T> type of the asset
+     */
+    private class Asset<T> implements Runnable {
+
+        private final String key;
+        private final Callable<T> loader;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        /**
+         * The highest priority the asset was asked for with
+         */
+        private volatile Priority priority;
+
+        private Asset(String key, Priority priority, Callable<T> loader) {
+            this.key = key;
+            this.priority = priority;
+            this.loader = loader;
+        }
+
+        /**
+         * Load the asset, unless somebody else already does
+         */
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true))
+                return;
+
+            long start = System.nanoTime();
+            try {
+                future.complete(loader.call());
+                long now = System.nanoTime();
+                logger.info("Loaded {} ({}) in {}ms, {}ms after startup", key, priority,
+                        (now - start) / 1_000_000, (now - created) / 1_000_000);
+            } catch (Exception e) {
+                logger.error("Could not load " + key + ": " + e);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * A queued load of an asset, ordered by priority and then by when it was asked for
+     */
+    private static class Load implements Runnable, Comparable<Load> {
+
+        private final Asset<?> asset;
+        private final Priority priority;
+        private final long sequence;
+
+        private Load(Asset<?> asset, Priority priority, long sequence) {
+            this.asset = asset;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            asset.run();
+        }
+
+        @Override
+        public int compareTo(Load other) {
+            int order = priority.compareTo(other.priority);
+            return order != 0 ? order : Long.compare(sequence, other.sequence);
+        }
+    }
+}
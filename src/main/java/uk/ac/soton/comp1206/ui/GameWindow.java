@@ -4,14 +4,19 @@ import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
-import javafx.scene.text.Font;
 import javafx.stage.Stage;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.ac.soton.comp1206.*;
-//import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.audio.SoundEffects;
 import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.network.Communicator;
+import uk.ac.soton.comp1206.network.LocalServer;
 import uk.ac.soton.comp1206.scene.*;
+import uk.ac.soton.comp1206.scores.ScoreStore;
+
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
 
 /**
  * The GameWindow is the single window for the game where everything takes place. To move between screens in the game,
@@ -32,7 +37,12 @@ public class GameWindow {
     private BaseScene currentScene;
     private Scene scene;
 
-//    final Communicator communicator;
+    final Communicator communicator;
+
+    /**
+     * The server started in this process, if there is one
+     */
+    private LocalServer localServer;
 
     /**
      * Create a new GameWindow attached to the given stage with the specified width and height
@@ -55,23 +65,68 @@ public class GameWindow {
         //Setup default scene
         setupDefaultScene();
 
-        //Setup communicator
-//        communicator = new Communicator("ws://ofb-labs.soton.ac.uk:9700");
+        //Setup communicator, it connects in the background and hands messages to the JavaFX thread
+        communicator = new Communicator(server(), Platform::runLater);
 
         //Go to menu
         startMenu();
     }
 
     /**
-     * Setup the font and any other resources we need
+     * The TetrECS server
+     */
+    private static final String SERVER = "ws://ofb-labs.soton.ac.uk:9700";
+
+    /**
+     * Work out which server to talk to. -Dtetrecs.server=local starts a LocalServer in this process, so multiplayer
+     * works without the real server; any other value is the address of a server.
+     * @return address of the server
+     */
+    private String server() {
+        String server = System.getProperty("tetrecs.server", SERVER);
+        if (!server.equals("local"))
+            return server;
+        try {
+            localServer = new LocalServer(0);
+            return localServer.getAddress();
+        } catch (IOException e) {
+            logger.error("Could not start the local server: " + e);
+            return SERVER;
+        }
+    }
+
+    /**
+     * The fonts the stylesheet uses
+     */
+    private static final String[] FONTS = {
+            "/style/Orbitron-Regular.ttf", "/style/Orbitron-Bold.ttf", "/style/Orbitron-ExtraBold.ttf"
+    };
+
+    /**
+     * Start loading the fonts and any other resources we need in the background, most urgent first, and wait only for
+     * what the first frame cannot do without
      */
     private void setupResources() {
         logger.info("Loading resources");
+        var assets = AssetManager.getShared();
 
         //We need to load fonts here due to the Font loader bug with spaces in URLs in the CSS files
-        Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Regular.ttf"),32);
-        Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-Bold.ttf"),32);
-        Font.loadFont(getClass().getResourceAsStream("/style/Orbitron-ExtraBold.ttf"),32);
+        for (String font : FONTS)
+            assets.font(font, 32, AssetManager.Priority.CRITICAL);
+        assets.image("/images/TetrECS.png", AssetManager.Priority.CRITICAL);
+        assets.media("/music/menu.mp3", AssetManager.Priority.HIGH);
+        SoundEffects.getShared().preload(SoundEffects.EFFECTS);
+        assets.image("/images/Instructions.png", AssetManager.Priority.LOW);
+        assets.load("scores", AssetManager.Priority.NORMAL, ScoreStore::getShared);
+
+        //Text in the first frame has to be in the right font
+        for (String font : FONTS) {
+            try {
+                assets.await(font);
+            } catch (CompletionException e) {
+                logger.error("Carrying on without font " + font);
+            }
+        }
     }
 
     /**
@@ -135,7 +190,9 @@ public class GameWindow {
      */
     public void cleanup() {
         logger.info("Clearing up previous scene");
-//        communicator.clearListeners();
+        if (currentScene != null)
+            currentScene.cleanup();
+        communicator.clearListeners();
     }
 
     /**
@@ -162,15 +219,27 @@ public class GameWindow {
         return this.height;
     }
 
+    /**
+     * Quit the game, the same way as closing the window does
+     */
+    public void shutdown() {
+        App.getInstance().shutdown();
+    }
+
+    /**
+     * Close the connection to the server, and stop the local server if there is one
+     */
+    public void closeNetwork() {
+        communicator.close();
+        if (localServer != null)
+            localServer.stop();
+    }
+
     /**
      * Get the communicator
      * @return communicator
      */
-
-    public void shutdown() {
-        System.exit(0);
+    public Communicator getCommunicator() {
+        return communicator;
     }
-//    public Communicator getCommunicator() {
-//        return communicator;
-//    }
 }
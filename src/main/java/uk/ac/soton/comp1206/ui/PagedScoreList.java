@@ -0,0 +1,135 @@
+package uk.ac.soton.comp1206.ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.ac.soton.comp1206.scores.Score;
+import uk.ac.soton.comp1206.scores.ScoreStore;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read only list of every score in a ScoreStore which does not hold them. Scores are fetched from the store a page at
+ * a time when somebody asks for them, and only the most recently used pages are kept, so the list takes the same memory
+ * whether the store holds ten scores or millions.
+ *
+ * A ListView only asks for the rows it shows, so it only ever pulls in the pages around what is on screen. Whenever a
+ * page has to be fetched, the pages on both sides of it are fetched too, after the current pulse, so scrolling on does
+ * not have to wait for them.
+ *
+ * It shows the scores the store held when it was created, scores added later show up in the next list created.
+ * Only use it from the JavaFX thread.
+ */
+public class PagedScoreList extends ObservableListBase<Score> {
+
+    private static final Logger logger = LogManager.getLogger(PagedScoreList.class);
+
+    /**
+     * Number of scores on a page
+     */
+    public static final int PAGE_SIZE = 64;
+
+    /**
+     * Number of pages kept
+     */
+    public static final int MAX_PAGES = 16;
+
+    /**
+     * Where the scores come from
+     */
+    private final ScoreStore store;
+
+    /**
+     * The pages kept, by number, least recently used first
+     */
+    private final Map<Integer, List<Score>> pages = new LinkedHashMap<>(MAX_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Score>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    /**
+     * Number of scores in the store when the list was created
+     */
+    private final int size;
+
+    /**
+     * Number of pages fetched so far
+     */
+    private long fetched = 0;
+
+    /**
+     * Create a new list of the scores in a store
+     * @param store the store
+     */
+    public PagedScoreList(ScoreStore store) {
+        this.store = store;
+        this.size = store.size();
+    }
+
+    /**
+     * Get the score at a position, fetching its page if it is not kept
+     * @param index position, 0 for the best score
+     * @return the score
+     */
+    @Override
+    public Score get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("No score " + index + " in " + size);
+
+        int page = index / PAGE_SIZE;
+        List<Score> scores = pages.get(page);
+        if (scores == null) {
+            scores = fetch(page);
+            //Fetch the neighbours once this pulse is done, in whichever direction the list is scrolled next
+            Platform.runLater(() -> {
+                prefetch(page + 1);
+                prefetch(page - 1);
+            });
+        }
+        return scores.get(index - page * PAGE_SIZE);
+    }
+
+    /**
+     * Get the number of scores
+     * @return number of scores
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of pages fetched from the store so far
+     * @return number of fetched pages
+     */
+    public long getFetched() {
+        return fetched;
+    }
+
+    /**
+     * Fetch a page from the store, unless it is kept already
+     * @param page the page
+     */
+    private void prefetch(int page) {
+        if (page >= 0 && page * PAGE_SIZE < size && !pages.containsKey(page))
+            fetch(page);
+    }
+
+    /**
+     * Fetch a page from the store and keep it
+     * @param page the page
+     * @return the scores on it
+     */
+    private List<Score> fetch(int page) {
+        List<Score> scores = store.getRange(page * PAGE_SIZE + 1, PAGE_SIZE);
+        pages.put(page, scores);
+        fetched++;
+        logger.debug("Fetched page {} of the scores", page);
+        return scores;
+    }
+}
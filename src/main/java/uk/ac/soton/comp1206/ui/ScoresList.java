@@ -1,40 +1,64 @@
 package uk.ac.soton.comp1206.ui;
 
-import javafx.beans.property.SimpleListProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
-import javafx.util.Pair;
+import uk.ac.soton.comp1206.scores.Score;
+import uk.ac.soton.comp1206.scores.ScoreStore;
 
-public class ScoresList {
-    private SimpleListProperty<Pair<String, Integer>> scores;
+/**
+ * A ListView of every score in a ScoreStore, best first. The scores come from a PagedScoreList, and every row has the
+ * same height so the ListView never has to measure rows it does not show. Together that keeps scrolling smooth and the
+ * memory used the same however many scores there are.
+ */
+public class ScoresList extends ListView<Score> {
 
-    public ScoresList() {
-        scores = new SimpleListProperty<>();
-    }
-
-    public  ScoresList(SimpleListProperty<Pair<String, Integer>> scores) {
-        this.scores = scores;
-    }
+    /**
+     * Height of a row in pixels
+     */
+    public static final double ROW_HEIGHT = 28;
 
     /**
-     * @return the first ten elements as a ListView
+     * The scores shown
      */
-    public ListView<Pair<String, Integer>> reveal(){
-        return new ListView<>(
-                FXCollections.observableArrayList(scores.stream().limit(10).toList()));
+    private final PagedScoreList scores;
 
+    /**
+     * Create a new list of the scores in a store
+     * @param store the store
+     */
+    public ScoresList(ScoreStore store) {
+        this.scores = new PagedScoreList(store);
+        setItems(scores);
+        setFixedCellSize(ROW_HEIGHT);
+        setCellFactory((list) -> new ListCell<>() {
+            @Override
+            protected void updateItem(Score score, boolean empty) {
+                super.updateItem(score, empty);
+                if (empty || score == null)
+                    setText(null);
+                else
+                    setText((getIndex() + 1) + ". " + score.getName() + "  " + score.getScore());
+            }
+        });
     }
 
-    public ObservableList<Pair<String, Integer>> getScores() {
-        return scores.get();
+    /**
+     * Scroll to a rank and select it
+     * @param rank the rank, counting from 1, clamped to the scores there are
+     */
+    public void jumpTo(int rank) {
+        if (scores.isEmpty())
+            return;
+        int index = Math.max(0, Math.min(rank - 1, scores.size() - 1));
+        scrollTo(index);
+        getSelectionModel().select(index);
     }
 
-    public SimpleListProperty<Pair<String, Integer>> scoresProperty() {
+    /**
+     * Get the scores shown
+     * @return the paged list of scores
+     */
+    public PagedScoreList getScores() {
         return scores;
     }
-
-    public void setScores(ObservableList<Pair<String, Integer>> scores) {
-        this.scores.set(scores);
-    }
 }
@@ -0,0 +1,210 @@
+package uk.ac.soton.comp1206.game;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the bitboard Grid and its PlacementTable against the rules worked out block by block
+ */
+public class GridTest {
+
+    /**
+     * Piece numbers used below
+     */
+    private static final int LINE = 0;
+    private static final int DOT = 3;
+    private static final int SQUARE = 4;
+
+    @Test
+    public void piecesFitUpToTheEdges() {
+        Grid grid = new Grid(7, 4);
+        //The dot fits in every corner
+        assertTrue(grid.canPlayPiece(GamePiece.createPiece(DOT), 0, 0));
+        assertTrue(grid.canPlayPiece(GamePiece.createPiece(DOT), 6, 0));
+        assertTrue(grid.canPlayPiece(GamePiece.createPiece(DOT), 0, 3));
+        assertTrue(grid.canPlayPiece(GamePiece.createPiece(DOT), 6, 3));
+        assertFalse(grid.canPlayPiece(GamePiece.createPiece(DOT), 7, 0));
+        assertFalse(grid.canPlayPiece(GamePiece.createPiece(DOT), 0, 4));
+        assertFalse(grid.canPlayPiece(GamePiece.createPiece(DOT), -1, 2));
+
+        //The upright line needs a row above and below its centre, lying down it needs a column either side
+        GamePiece upright = GamePiece.createPiece(LINE);
+        GamePiece flat = upright.rotate();
+        assertFalse(grid.canPlayPiece(upright, 0, 0));
+        assertTrue(grid.canPlayPiece(upright, 0, 1));
+        assertTrue(grid.canPlayPiece(upright, 6, 2));
+        assertFalse(grid.canPlayPiece(upright, 6, 3));
+        assertFalse(grid.canPlayPiece(flat, 0, 0));
+        assertTrue(grid.canPlayPiece(flat, 1, 0));
+        assertTrue(grid.canPlayPiece(flat, 5, 3));
+        assertFalse(grid.canPlayPiece(flat, 6, 3));
+
+        //The square only reaches up and left from its centre
+        assertFalse(grid.canPlayPiece(GamePiece.createPiece(SQUARE), 0, 0));
+        assertTrue(grid.canPlayPiece(GamePiece.createPiece(SQUARE), 6, 3));
+    }
+
+    @Test
+    public void placementsMatchTheBlocksOfEveryPiece() {
+        Random random = new Random(11);
+        int[][] sizes = {{1, 1}, {3, 1}, {1, 5}, {7, 4}, {4, 9}, {64, 3}, {2, 64}};
+        for (int[] size : sizes) {
+            int cols = size[0];
+            int rows = size[1];
+            Grid grid = new Grid(cols, rows);
+            for (int x = 0; x < cols; x++)
+                for (int y = 0; y < rows; y++)
+                    if (random.nextInt(4) == 0)
+                        grid.set(x, y, 1);
+
+            for (int shape = 0; shape < PlacementTable.SHAPES; shape++) {
+                GamePiece piece = GamePiece.fromIndex(shape);
+                for (int x = -1; x <= cols; x++) {
+                    for (int y = -1; y <= rows; y++) {
+                        String where = piece + " at " + x + "," + y + " on " + cols + "x" + rows;
+                        boolean fits = fitsBlockByBlock(grid, piece, x, y);
+                        assertEquals(fits, grid.canPlayPiece(piece, x, y), where);
+                        if (fits)
+                            assertEquals(linesBlockByBlock(grid, piece, x, y), grid.linesClearedBy(shape, x, y),
+                                    where);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void placingFillsTheBlocksAndCounters() {
+        Grid grid = new Grid(5, 3);
+        GamePiece square = GamePiece.createPiece(SQUARE);
+        grid.playPiece(square, 4, 2);
+        for (int x = 0; x < 5; x++) {
+            for (int y = 0; y < 3; y++) {
+                boolean filled = x >= 3 && y >= 1;
+                assertEquals(filled ? square.getValue() : 0, grid.get(x, y), x + "," + y);
+            }
+        }
+        assertEquals(0b11000, grid.getRowMask(1));
+        assertEquals(2, grid.getRowFill(2));
+        assertEquals(2, grid.getColumnFill(4));
+        assertFalse(grid.canPlayPiece(GamePiece.createPiece(DOT), 3, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> grid.playPiece(square, 0, 0));
+    }
+
+    @Test
+    public void crossingRowAndColumnClearTogether() {
+        Grid grid = new Grid(6, 4);
+        //Row 2 and column 3 are full except where they cross
+        for (int x = 0; x < 6; x++)
+            if (x != 3)
+                grid.set(x, 2, 1);
+        for (int y = 0; y < 4; y++)
+            if (y != 2)
+                grid.set(3, y, 1);
+        grid.set(0, 0, 1);
+
+        int dot = GamePiece.createPiece(DOT).getIndex();
+        assertEquals(2, grid.linesClearedBy(dot, 3, 2));
+        grid.playPiece(GamePiece.createPiece(DOT), 3, 2);
+        assertTrue(grid.isRowFull(2));
+        assertTrue(grid.isColumnFull(3));
+
+        LineClear lineClear = new LineClear(1L << 2, 1L << 3, 6, 4);
+        assertEquals(2, lineClear.getLines());
+        assertEquals(6 + 4 - 1, lineClear.getBlocks());
+        assertTrue(lineClear.contains(0, 2));
+        assertTrue(lineClear.contains(3, 0));
+        assertFalse(lineClear.contains(0, 0));
+
+        grid.clearLines(lineClear);
+        assertEquals(1, grid.get(0, 0));
+        for (int x = 0; x < 6; x++)
+            for (int y = 0; y < 4; y++)
+                if (x != 0 || y != 0)
+                    assertEquals(0, grid.get(x, y), x + "," + y);
+        assertEquals(1, grid.getRowFill(0));
+        assertEquals(0, grid.getRowFill(2));
+        assertEquals(0, grid.getColumnFill(3));
+    }
+
+    @Test
+    public void blocksWhereSeveralLinesCrossAreCountedOnce() {
+        //Two rows and two columns of a 4x3 grid: 2 * 4 + 2 * 3 blocks, four of them on both
+        LineClear lineClear = new LineClear(0b101, 0b0110, 4, 3);
+        assertEquals(4, lineClear.getLines());
+        assertEquals(10, lineClear.getBlocks());
+
+        //Every row of a grid, and on a wide grid the last column
+        assertEquals(64 * 3, new LineClear(0b111, 0, 64, 3).getBlocks());
+        assertEquals(2, new LineClear(0, 1L << 63, 64, 2).getBlocks());
+        assertTrue(new LineClear(0, 1L << 63, 64, 2).contains(63, 1));
+    }
+
+    @Test
+    public void blocksOutsideTheGridCannotBeSetOrGot() {
+        Grid grid = new Grid(4, 2);
+        assertThrows(IndexOutOfBoundsException.class, () -> grid.set(4, 0, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> grid.set(0, 2, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> grid.set(-1, 0, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> grid.set(0, -1, 1));
+        assertEquals(-1, grid.get(4, 0));
+        assertEquals(-1, grid.get(0, 2));
+        assertEquals(-1, grid.get(-1, 1));
+        assertEquals(0, grid.getRowFill(0));
+        assertThrows(IllegalArgumentException.class, () -> new Grid(65, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Grid(3, 0));
+    }
+
+    /**
+     * Whether a piece fits, going through its blocks one by one
+     */
+    private static boolean fitsBlockByBlock(Grid grid, GamePiece piece, int x, int y) {
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                if (piece.hasBlock(i, j) && grid.get(x + i - 1, y + j - 1) != 0)
+                    return false;
+        return true;
+    }
+
+    /**
+     * How many rows and columns touched by a piece would be full, going through every block
+     */
+    private static int linesBlockByBlock(Grid grid, GamePiece piece, int x, int y) {
+        boolean[][] filled = new boolean[grid.getCols()][grid.getRows()];
+        for (int i = 0; i < grid.getCols(); i++)
+            for (int j = 0; j < grid.getRows(); j++)
+                filled[i][j] = grid.get(i, j) != 0;
+        boolean[] touchedCols = new boolean[grid.getCols()];
+        boolean[] touchedRows = new boolean[grid.getRows()];
+        for (int i = 0; i < 3; i++)
+            for (int j = 0; j < 3; j++)
+                if (piece.hasBlock(i, j)) {
+                    filled[x + i - 1][y + j - 1] = true;
+                    touchedCols[x + i - 1] = true;
+                    touchedRows[y + j - 1] = true;
+                }
+
+        int lines = 0;
+        for (int i = 0; i < grid.getCols(); i++) {
+            boolean full = touchedCols[i];
+            for (int j = 0; j < grid.getRows() && full; j++)
+                full = filled[i][j];
+            if (full)
+                lines++;
+        }
+        for (int j = 0; j < grid.getRows(); j++) {
+            boolean full = touchedRows[j];
+            for (int i = 0; i < grid.getCols() && full; i++)
+                full = filled[i][j];
+            if (full)
+                lines++;
+        }
+        return lines;
+    }
+}
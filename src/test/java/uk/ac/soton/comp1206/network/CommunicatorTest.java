@@ -0,0 +1,84 @@
+package uk.ac.soton.comp1206.network;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Queues messages on a Communicator while its server is not there yet
+ */
+public class CommunicatorTest {
+
+    @Test
+    public void replacedMessageIsSentAfterEverythingQueuedBeforeIt() throws Exception {
+        int port = freePort();
+        Communicator communicator = new Communicator("ws://127.0.0.1:" + port);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        communicator.addListener(received::add);
+
+        communicator.send("LIST");
+        communicator.send("CREATE room");
+        communicator.send("LIST");
+        assertEquals(2, communicator.getQueued());
+        assertEquals(1, communicator.getCoalesced());
+
+        //The Communicator keeps trying, so it connects once the server is there
+        LocalServer server = new LocalServer(port);
+        try {
+            String channels;
+            do {
+                channels = received.poll(10, TimeUnit.SECONDS);
+            } while (channels != null && !channels.startsWith("CHANNELS"));
+            assertEquals("CHANNELS room", channels);
+        } finally {
+            communicator.close();
+            server.stop();
+        }
+    }
+
+    @Test
+    public void fullQueueDropsChatButNotCommands() throws IOException {
+        Communicator communicator = new Communicator("ws://127.0.0.1:" + freePort());
+        try {
+            assertTrue(communicator.send("MSG first"));
+            assertTrue(communicator.send("SCORE 10"));
+            assertTrue(communicator.send("JOIN room"));
+            for (int i = 3; i < Communicator.MAX_QUEUED; i++)
+                assertTrue(communicator.send("NICK player" + i));
+            assertEquals(Communicator.MAX_QUEUED, communicator.getQueued());
+
+            //The chat message makes room for the next command
+            assertTrue(communicator.send("START"));
+            assertEquals(1, communicator.getDropped());
+
+            //With nothing left to drop, the next message is refused rather than another command lost
+            assertFalse(communicator.send("DIE"));
+            assertFalse(communicator.send("MSG too late"));
+            assertEquals(3, communicator.getDropped());
+            assertEquals(Communicator.MAX_QUEUED, communicator.getQueued());
+
+            //Replacing a queued state update needs no room
+            assertTrue(communicator.send("SCORE 20"));
+            assertEquals(Communicator.MAX_QUEUED, communicator.getQueued());
+        } finally {
+            communicator.close();
+        }
+    }
+
+    /**
+     * Find a port nobody is listening on
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package uk.ac.soton.comp1206.network;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs the LocalServer on a free port and talks to it over real sockets
+ */
+public class LocalServerTest {
+
+    private LocalServer server;
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @BeforeEach
+    public void start() throws IOException {
+        server = new LocalServer(0);
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void relaysMessagesToTheChannel() throws Exception {
+        Client host = new Client();
+        host.send("CREATE room");
+        host.await("HOST");
+
+        Client guest = new Client();
+        guest.send("JOIN room");
+        guest.await("JOIN room");
+        host.send("START");
+        guest.await("START");
+
+        host.send("SCORE 120");
+        assertTrue(guest.await("SCORE ").endsWith(":120"));
+        guest.send("MSG hello");
+        assertTrue(host.await("MSG ").endsWith(":hello"));
+        guest.send("START");
+        assertEquals("ERROR Only the host can start the game", guest.await("ERROR"));
+    }
+
+    @Test
+    public void slowClientIsDroppedWithoutStoppingTheServer() throws Exception {
+        Client host = new Client();
+        host.send("CREATE room");
+        host.await("HOST");
+
+        //A client which joins and then never reads again
+        Socket slow = new Socket();
+        slow.setReceiveBufferSize(4096);
+        slow.connect(new InetSocketAddress("127.0.0.1", port()));
+        handshake(slow);
+        sendMasked(slow.getOutputStream(), "JOIN room");
+        host.await("USERS");
+
+        //Far more than MAX_PENDING, so the slow client is disconnected while a broadcast is going on
+        String board = "BOARD " + "0".repeat(512 * 1024);
+        for (int i = 0; i < 32 && server.getConnections() > 1; i++)
+            host.send(board);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getConnections() > 1 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(1, server.getConnections());
+        slow.close();
+
+        //The server still answers, both the host and somebody new
+        host.send("USERS");
+        assertEquals(1, host.await("USERS").split("\n").length);
+        Client late = new Client();
+        late.send("LIST");
+        assertEquals("CHANNELS room", late.await("CHANNELS"));
+    }
+
+    @Test
+    public void nothingIsReadAfterAClose() throws Exception {
+        Client host = new Client();
+        host.send("CREATE room");
+        host.await("HOST");
+
+        Socket leaving = new Socket();
+        leaving.setReceiveBufferSize(4096);
+        leaving.connect(new InetSocketAddress("127.0.0.1", port()));
+        handshake(leaving);
+        sendMasked(leaving.getOutputStream(), "JOIN room");
+        host.await("USERS");
+
+        //More than the socket takes but less than MAX_PENDING, so the answer to the CLOSE waits behind a backlog and
+        //the connection stays open a while
+        String board = "BOARD " + "0".repeat(512 * 1024);
+        for (int i = 0; i < 12; i++)
+            host.send(board);
+        host.send("USERS");
+        host.await("USERS");
+        OutputStream out = leaving.getOutputStream();
+        out.write(new byte[] {(byte) 0x88, (byte) 0x80, 1, 2, 3, 4});
+        out.flush();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.getConnections() > 1 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(1, server.getConnections());
+
+        //A handshake after the CLOSE is ignored, not taken as a new guest
+        Thread.sleep(100);
+        out.write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: YSB0ZXN0IGtleSAxNmJ5dA==\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        Thread.sleep(200);
+        assertEquals(1, server.getConnections());
+        leaving.close();
+    }
+
+    private int port() {
+        return URI.create(server.getAddress()).getPort();
+    }
+
+    /**
+     * Open a web socket by hand on a plain socket
+     */
+    private void handshake(Socket socket) throws IOException {
+        String key = Base64.getEncoder().encodeToString("a test key 16byt".getBytes(StandardCharsets.ISO_8859_1));
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\nSec-WebSocket-Version: 13\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+
+        InputStream in = socket.getInputStream();
+        StringBuilder response = new StringBuilder();
+        while (!response.toString().endsWith("\r\n\r\n")) {
+            int b = in.read();
+            if (b < 0)
+                fail("Connection closed during the handshake");
+            response.append((char) b);
+        }
+        assertTrue(response.toString().startsWith("HTTP/1.1 101"), response.toString());
+    }
+
+    /**
+     * Send a short text frame, masked as clients have to
+     */
+    private void sendMasked(OutputStream out, String message) throws IOException {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        byte[] mask = {1, 2, 3, 4};
+        byte[] frame = new byte[6 + payload.length];
+        frame[0] = (byte) 0x81;
+        frame[1] = (byte) (0x80 | payload.length);
+        System.arraycopy(mask, 0, frame, 2, 4);
+        for (int i = 0; i < payload.length; i++)
+            frame[6 + i] = (byte) (payload[i] ^ mask[i & 3]);
+        out.write(frame);
+        out.flush();
+    }
+
+    /**
+     * A client which keeps every message it receives
+     */
+    private class Client implements WebSocket.Listener {
+
+        private final BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        private final StringBuilder text = new StringBuilder();
+        private final WebSocket socket;
+
+        private Client() {
+            socket = http.newWebSocketBuilder().buildAsync(URI.create(server.getAddress()), this).join();
+        }
+
+        private void send(String message) {
+            socket.sendText(message, true).join();
+        }
+
+        /**
+         * Wait for the next message starting with a prefix, skipping any others
+         */
+        private String await(String prefix) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (System.nanoTime() < deadline) {
+                String message = messages.poll(100, TimeUnit.MILLISECONDS);
+                if (message != null && message.startsWith(prefix))
+                    return message;
+            }
+            return fail("No " + prefix + " received");
+        }
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            text.append(data);
+            if (last) {
+                messages.add(text.toString());
+                text.setLength(0);
+            }
+            webSocket.request(1);
+            return null;
+        }
+    }
+}
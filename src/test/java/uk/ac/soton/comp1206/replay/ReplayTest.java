@@ -0,0 +1,114 @@
+package uk.ac.soton.comp1206.replay;
+
+import org.junit.jupiter.api.Test;
+import uk.ac.soton.comp1206.game.Game;
+import uk.ac.soton.comp1206.game.ManualClock;
+import uk.ac.soton.comp1206.game.Move;
+import uk.ac.soton.comp1206.game.PieceSource;
+import uk.ac.soton.comp1206.sim.GreedyPolicy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Records games and plays them back
+ */
+public class ReplayTest {
+
+    @Test
+    public void playingARecordingEndsWhereTheGameDid() throws IOException {
+        var clock = new ManualClock(1_000);
+        var game = new Game(5, 5, clock, new PieceSource(7, 3, true));
+        var recording = new ByteArrayOutputStream();
+        new ReplayRecorder(game, recording);
+        game.start();
+
+        //Greedy moves with some thinking time, and every so often the timer runs out instead
+        var policy = new GreedyPolicy();
+        var random = new Random(7);
+        int timeouts = 0;
+        for (int turn = 0; turn < 300 && !game.isOver(); turn++) {
+            Move move = turn % 9 == 8 ? null : policy.choose(game, random);
+            if (move == null) {
+                clock.advance(game.getDeadline() - clock.millis());
+                assertTrue(game.tick());
+                timeouts++;
+            } else {
+                clock.advance(100 + random.nextInt(900));
+                assertTrue(move.play(game));
+            }
+        }
+        if (!game.isOver())
+            game.stop();
+        assertTrue(timeouts > 0);
+
+        Replay replay = Replay.read(new ByteArrayInputStream(recording.toByteArray()));
+        int recordedTimeouts = 0;
+        for (int i = 0; i < replay.size(); i++) {
+            if (replay.getType(i) == Replay.TIMEOUT)
+                recordedTimeouts++;
+        }
+        assertEquals(timeouts, recordedTimeouts);
+
+        Game replayed = new ReplayPlayer(replay).play();
+        assertEquals(game.getScore(), replayed.getScore());
+        assertEquals(game.getLevel(), replayed.getLevel());
+        assertEquals(game.getLives(), replayed.getLives());
+        assertEquals(game.getMultiplier(), replayed.getMultiplier());
+        game.flushClear();
+        replayed.flushClear();
+        for (int x = 0; x < game.getCols(); x++) {
+            for (int y = 0; y < game.getRows(); y++)
+                assertEquals(game.getGrid().get(x, y), replayed.getGrid().get(x, y), "block " + x + "," + y);
+        }
+    }
+
+    @Test
+    public void timesSurviveTheVariableLengthEncoding() throws IOException {
+        long[] times = {0, 15, 31, 31 + 2048, 1L << 40, (1L << 40) + (1L << 57)};
+        var replay = new Replay(8, 6, -3, 2, false);
+        for (int i = 0; i < times.length; i++)
+            replay.add(times[i], i % 2 == 0 ? Replay.PLACE : Replay.ROTATE, 7, 5);
+
+        var out = new ByteArrayOutputStream();
+        replay.write(out);
+        Replay read = Replay.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(8, read.getCols());
+        assertEquals(6, read.getRows());
+        assertEquals(-3, read.getSeed());
+        assertEquals(times.length, read.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], read.getTime(i));
+            assertEquals(replay.getType(i), read.getType(i));
+            assertEquals(7, read.getFirst(i));
+            assertEquals(i % 2 == 0 ? 5 : 0, read.getSecond(i));
+        }
+    }
+
+    @Test
+    public void shortDelaysTakeOneByte() throws IOException {
+        var replay = new Replay(5, 5, 1, 1, false);
+        replay.add(15, Replay.SWAP, 0, 0);
+        replay.add(31, Replay.SWAP, 0, 0);
+        var out = new ByteArrayOutputStream();
+        replay.write(out);
+        byte[] bytes = out.toByteArray();
+
+        //A 15ms delay fits in one byte with the type, 16ms does not, then the end
+        int header = 17;
+        assertEquals(header + 1 + 2 + 1, bytes.length);
+        assertEquals(15 << 3 | Replay.SWAP, bytes[header]);
+
+        //A recording cut off in the middle of an action keeps the actions before it
+        Replay cut = Replay.read(new ByteArrayInputStream(Arrays.copyOf(bytes, header + 2)));
+        assertEquals(1, cut.size());
+        assertEquals(15, cut.getTime(0));
+    }
+}
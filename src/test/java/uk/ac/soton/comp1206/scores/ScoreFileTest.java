@@ -0,0 +1,55 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Writes leaderboard files and reads them back through the mapping
+ */
+public class ScoreFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void readsBackWhatWasWritten() throws IOException {
+        List<Score> scores = List.of(new Score("first-place", 900), new Score("bob", 500),
+                new Score("-", 500), new Score("élodie--x", 10));
+        Path path = directory.resolve("scores.bin");
+        ScoreFile.write(path, scores.iterator(), scores.size(), 42);
+
+        ScoreFile file = ScoreFile.open(path);
+        assertEquals(4, file.size());
+        assertEquals(42, file.getSequence());
+        for (int i = 0; i < scores.size(); i++) {
+            assertEquals(scores.get(i).getName(), file.getName(i));
+            assertEquals(scores.get(i).getScore(), file.getScore(i));
+        }
+        assertEquals(3, file.countAtLeast(500));
+        assertEquals(0, file.countAtLeast(901));
+        assertEquals("-", file.asList().get(2).getName());
+    }
+
+    @Test
+    public void rejectsFilesCutShort() throws IOException {
+        Path path = directory.resolve("scores.bin");
+        ScoreFile.write(path, List.of(new Score("alice", 3), new Score("bob", 2)).iterator(), 2, 0);
+
+        //Cut into the name table, then into the records, then into the header
+        for (long size : new long[] {ScoreFile.HEADER + 2 * ScoreFile.RECORD + 6, ScoreFile.HEADER + 5, 10}) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(size);
+            }
+            assertThrows(IOException.class, () -> ScoreFile.open(path));
+        }
+    }
+}
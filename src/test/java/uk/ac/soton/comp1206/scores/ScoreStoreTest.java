@@ -0,0 +1,119 @@
+package uk.ac.soton.comp1206.scores;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Opens, writes and reopens score stores in a temporary directory, the way the game would across restarts
+ */
+public class ScoreStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void migratesTheTextLeaderboard() throws Exception {
+        Path legacy = directory.resolve("newscores.txt");
+        Files.writeString(legacy, "a-b-5\nc-9\nnot a score\n");
+        Files.writeString(directory.resolve("newscores.txt.journal"), "1 d-7\n");
+
+        ScoreStore store = new ScoreStore(directory.resolve("scores.bin"), legacy, 100);
+        assertEquals(List.of("c-9", "d-7", "a-b-5"), names(store));
+        assertFalse(Files.exists(legacy));
+        assertTrue(Files.exists(directory.resolve("newscores.txt.migrated")));
+        assertFalse(Files.exists(directory.resolve("newscores.txt.journal")));
+        assertTrue(Files.exists(directory.resolve("scores.1.bin")));
+
+        //Not migrated a second time
+        ScoreStore reopened = new ScoreStore(directory.resolve("scores.bin"), legacy, 100);
+        assertEquals(names(store), names(reopened));
+    }
+
+    @Test
+    public void replaysTheJournalAfterACrash() throws Exception {
+        Path file = directory.resolve("scores.bin");
+        ScoreStore store = new ScoreStore(file, null, 100);
+        assertEquals(1, store.add("x-ray", 50));
+        assertEquals(1, store.add("yankee", 80));
+        assertEquals(3, store.add("zulu", 50));
+        store.flush();
+
+        //The game died halfway through appending the next score
+        Path journal = directory.resolve("scores.bin.journal");
+        Files.writeString(journal, "4 torn-1", StandardOpenOption.APPEND);
+
+        ScoreStore reopened = new ScoreStore(file, null, 100);
+        assertEquals(List.of("yankee-80", "x-ray-50", "zulu-50"), names(reopened));
+        assertTrue(Files.readString(journal).endsWith("3 zulu-50\n"));
+
+        //New scores carry on after the last complete entry
+        reopened.add("alpha", 60);
+        reopened.flush();
+        assertEquals(List.of("yankee-80", "alpha-60", "x-ray-50", "zulu-50"),
+                names(new ScoreStore(file, null, 100)));
+    }
+
+    @Test
+    public void compactsTheJournalIntoANewGeneration() throws Exception {
+        Path file = directory.resolve("scores.bin");
+        ScoreFile.write(file, List.of(new Score("old", 40)).iterator(), 1, 0);
+
+        ScoreStore store = new ScoreStore(file, null, 3);
+        for (int i = 0; i < 8; i++) {
+            store.add("p" + i, i * 10);
+            store.flush();
+        }
+        List<String> expected = names(store);
+        assertEquals(9, expected.size());
+        assertEquals(List.of("old-40", "p4-40"), expected.subList(3, 5));
+        assertEquals(70, store.getBest());
+
+        //Two checkpoints were written, each to a new file, the earlier ones are gone
+        assertFalse(Files.exists(file));
+        assertFalse(Files.exists(directory.resolve("scores.1.bin")));
+        assertTrue(Files.exists(directory.resolve("scores.2.bin")));
+        assertEquals(List.of("7 p6-60", "8 p7-70"),
+                Files.readAllLines(directory.resolve("scores.bin.journal"), StandardCharsets.UTF_8));
+
+        assertEquals(expected, names(new ScoreStore(file, null, 3)));
+    }
+
+    @Test
+    public void fallsBackToTheOlderCheckpointWhenTheNewestIsBroken() throws Exception {
+        Path file = directory.resolve("scores.bin");
+        ScoreFile.write(directory.resolve("scores.1.bin"),
+                List.of(new Score("kept", 30), new Score("also-kept", 20)).iterator(), 2, 2);
+        Files.write(directory.resolve("scores.2.bin"), new byte[] {1, 2, 3});
+        Files.writeString(directory.resolve("scores.bin.journal"), "3 after-25\n");
+
+        ScoreStore store = new ScoreStore(file, null, 1);
+        assertEquals(List.of("kept-30", "after-25", "also-kept-20"), names(store));
+        assertTrue(Files.exists(directory.resolve("scores.2.bin.broken")));
+
+        //The next checkpoint keeps everything and only then lets go of the older one
+        store.add("new", 10);
+        store.flush();
+        assertFalse(Files.exists(directory.resolve("scores.1.bin")));
+        assertEquals(List.of("kept-30", "after-25", "also-kept-20", "new-10"),
+                names(new ScoreStore(file, null, 1)));
+    }
+
+    private static List<String> names(ScoreStore store) throws IOException {
+        List<String> names = new ArrayList<>();
+        for (Score score : store.getScores())
+            names.add(score.getName() + "-" + score.getScore());
+        return names;
+    }
+}